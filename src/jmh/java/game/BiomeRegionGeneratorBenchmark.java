@@ -0,0 +1,145 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BiomeRegionGenerator} against the eager generator it replaced, kept here as
+ * {@link Eager}. {@code construct*} builds a generator; {@code lookup*} resolves a
+ * render square of chunks ({@code Warm}: the same square again, as consecutive frames
+ * do; {@code Cold}: a square that moves every invocation, so nothing is cached).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BiomeRegionGeneratorBenchmark {
+    private static final long SEED = 1234L;
+    private static final int RENDER_DIST = 12;
+
+    private BiomeRegionGenerator regions;
+    private Eager eager;
+    private int origin;
+
+    @Setup
+    public void setup() {
+        regions = new BiomeRegionGenerator(SEED);
+        eager = new Eager(SEED);
+    }
+
+    @Benchmark
+    public BiomeRegionGenerator constructHashed() {
+        return new BiomeRegionGenerator(SEED);
+    }
+
+    @Benchmark
+    public Eager constructEager() {
+        return new Eager(SEED);
+    }
+
+    @Benchmark
+    public int lookupHashedWarm() {
+        return lookupSquare(regions, 0);
+    }
+
+    @Benchmark
+    public int lookupHashedCold() {
+        origin = (origin + 2 * RENDER_DIST + 1) % 1000;
+        return lookupSquare(regions, origin);
+    }
+
+    @Benchmark
+    public int lookupEager() {
+        int sum = 0;
+        for (int cx = -RENDER_DIST; cx <= RENDER_DIST; cx++) {
+            for (int cz = -RENDER_DIST; cz <= RENDER_DIST; cz++) {
+                sum += eager.getBiomeAtChunk(cx, cz).ordinal();
+            }
+        }
+        return sum;
+    }
+
+    private static int lookupSquare(BiomeRegionGenerator regions, int originX) {
+        int sum = 0;
+        for (int cx = originX - RENDER_DIST; cx <= originX + RENDER_DIST; cx++) {
+            for (int cz = -RENDER_DIST; cz <= RENDER_DIST; cz++) {
+                sum += regions.getBiomeAtChunk(cx, cz).ordinal();
+            }
+        }
+        return sum;
+    }
+
+    /** The generator before region centres were hashed: 201x201 centres from one Random. */
+    public static final class Eager {
+        private static final int REGION_SIZE = 10;
+        private final Map<Point, BiomeCenter> centers = new HashMap<>();
+
+        Eager(long seed) {
+            Random rand = new Random(seed ^ 0xCAFEBABE);
+            for (int gx = -100; gx <= 100; gx++) {
+                for (int gz = -100; gz <= 100; gz++) {
+                    Biome b = pickRandomBiome(rand);
+                    int offsetX = rand.nextInt(REGION_SIZE) - REGION_SIZE / 2;
+                    int offsetZ = rand.nextInt(REGION_SIZE) - REGION_SIZE / 2;
+                    float influenceRadius = REGION_SIZE * (0.8f + rand.nextFloat() * 0.6f);
+                    centers.put(new Point(gx, gz), new BiomeCenter(b, offsetX, offsetZ, influenceRadius));
+                }
+            }
+        }
+
+        Biome getBiomeAtChunk(int cx, int cz) {
+            int gx = Math.floorDiv(cx, REGION_SIZE);
+            int gz = Math.floorDiv(cz, REGION_SIZE);
+            double minDist = Double.MAX_VALUE;
+            Biome best = Biome.PLAINS;
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    BiomeCenter center = centers.get(new Point(gx + dx, gz + dz));
+                    if (center == null) continue;
+                    int centerX = (gx + dx) * REGION_SIZE + REGION_SIZE / 2 + center.offsetX;
+                    int centerZ = (gz + dz) * REGION_SIZE + REGION_SIZE / 2 + center.offsetZ;
+                    double dist = Math.sqrt(Math.pow(cx - centerX, 2) + Math.pow(cz - centerZ, 2)) / center.influenceRadius;
+                    if (dist < minDist) {
+                        minDist = dist;
+                        best = center.biome;
+                    }
+                }
+            }
+            return best;
+        }
+
+        private static Biome pickRandomBiome(Random rand) {
+            float total = 0f;
+            for (Biome b : Biome.values()) {
+                total += b.spawnChance;
+            }
+            float threshold = rand.nextFloat() * total;
+            float sum = 0f;
+            for (Biome b : Biome.values()) {
+                sum += b.spawnChance;
+                if (sum >= threshold)
+                    return b;
+            }
+            return Biome.PLAINS;
+        }
+
+        private record Point(int x, int z) {}
+
+        private record BiomeCenter(Biome biome, int offsetX, int offsetZ, float influenceRadius) {}
+    }
+}
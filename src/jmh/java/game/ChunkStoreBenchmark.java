@@ -0,0 +1,124 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ChunkStore} against the {@code HashMap<Long, Chunk>} and per-frame
+ * {@code HashSet<Long>} it replaced in {@link TerrainManager}. {@code scan*} looks up
+ * every cell of the render square and collects the needed keys, as a frame's update
+ * did; {@code slide*} moves the square one chunk east and back again, as walking
+ * across chunk boundaries does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChunkStoreBenchmark {
+    @Param({ "6", "16", "32" })
+    public int renderDist;
+
+    private ChunkStore store;
+    private Map<Long, Chunk> map;
+    // Columns -renderDist to renderDist + 1, so sliding never allocates chunks
+    private Chunk[][] columns;
+
+    @Setup
+    public void setup() {
+        int side = 2 * renderDist + 1;
+        columns = new Chunk[side + 1][side];
+        for (int x = 0; x <= side; x++) {
+            for (int z = 0; z < side; z++) {
+                int cx = x - renderDist, cz = z - renderDist;
+                columns[x][z] = new Chunk(new ChunkData(cx, cz, Biome.PLAINS, 0, null, null, List.of(),
+                        List.of(), null, null, 0), 1f, null, null);
+            }
+        }
+
+        store = new ChunkStore(renderDist);
+        map = new HashMap<>();
+        for (int x = 0; x < side; x++) {
+            for (Chunk c : columns[x]) {
+                store.put(c);
+                map.put(ChunkStore.key(c.cx, c.cz), c);
+            }
+        }
+    }
+
+    @Benchmark
+    public int scanStore() {
+        int found = 0;
+        for (int cx = -renderDist; cx <= renderDist; cx++) {
+            for (int cz = -renderDist; cz <= renderDist; cz++) {
+                if (store.get(cx, cz) != null)
+                    found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int scanHashMap() {
+        Set<Long> needed = new HashSet<>();
+        int found = 0;
+        for (int cx = -renderDist; cx <= renderDist; cx++) {
+            for (int cz = -renderDist; cz <= renderDist; cz++) {
+                long key = ChunkStore.key(cx, cz);
+                needed.add(key);
+                if (map.get(key) != null)
+                    found++;
+            }
+        }
+        return found + needed.size();
+    }
+
+    @Benchmark
+    public int slideStore() {
+        int side = 2 * renderDist + 1;
+        for (int z = 0; z < side; z++) {
+            Chunk west = columns[0][z];
+            store.remove(ChunkStore.key(west.cx, west.cz));
+            store.put(columns[side][z]);
+        }
+        for (int z = 0; z < side; z++) {
+            Chunk east = columns[side][z];
+            store.remove(ChunkStore.key(east.cx, east.cz));
+            store.put(columns[0][z]);
+        }
+        return store.size();
+    }
+
+    @Benchmark
+    public int slideHashMap() {
+        int side = 2 * renderDist + 1;
+        for (int z = 0; z < side; z++) {
+            Chunk west = columns[0][z], east = columns[side][z];
+            map.remove(ChunkStore.key(west.cx, west.cz));
+            map.put(ChunkStore.key(east.cx, east.cz), east);
+        }
+        for (int z = 0; z < side; z++) {
+            Chunk west = columns[0][z], east = columns[side][z];
+            map.remove(ChunkStore.key(east.cx, east.cz));
+            map.put(ChunkStore.key(west.cx, west.cz), west);
+        }
+        return map.size();
+    }
+}
@@ -0,0 +1,62 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Noise points per second on one thread, so per core, for each {@link OpenSimplexNoise}
+ * backend. The SIMD backends need {@code src/vector/java} on the benchmark classpath;
+ * without it they report scalar numbers, and {@link #setup} says so.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class NoiseBackendBenchmark {
+    private static final int POINTS = 4096;
+
+    @Param({ "scalar", "simd", "simd-float" })
+    public String backend;
+
+    private OpenSimplexNoise noise;
+    private final double[] xs = new double[POINTS];
+    private final double[] zs = new double[POINTS];
+    private final double[] out = new double[POINTS];
+    private final double[] one = { 1 };
+    private final double[] zero = { 0 };
+
+    @Setup
+    public void setup() {
+        noise = new OpenSimplexNoise(1234L, backend);
+        if (!noise.getBackendName().startsWith(backend))
+            System.err.println("Backend " + backend + " unavailable, measuring " + noise.getBackendName());
+
+        Random random = new Random(1234L);
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = random.nextDouble() * 1000;
+            zs[i] = random.nextDouble() * 1000;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double[] points() {
+        noise.evalFractalPoints(xs, zs, POINTS, one, one, zero, zero, null, out);
+        return out;
+    }
+}
@@ -0,0 +1,81 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point-wise {@link OpenSimplexNoise#eval} loops against the grid methods, over one
+ * chunk's 31x31 vertices: a single octave, then the 4-octave fractal sum that
+ * {@link ChunkGenerator} takes per biome.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenSimplexNoiseBenchmark {
+    private static final int SIZE = 31;
+    private static final double X0 = 30 * 17;
+    private static final double Z0 = -30 * 5;
+
+    private final double[] freq = { 0.01, 0.02, 0.04, 0.08 };
+    private final double[] amp = { 1.0, 0.5, 0.25, 0.125 };
+    private final double[] offsetX = { 0, 100, 200, 300 };
+    private final double[] offsetZ = { 0, 50, 100, 150 };
+
+    private OpenSimplexNoise noise;
+    private double[] out;
+
+    @Setup
+    public void setup() {
+        noise = new OpenSimplexNoise(1234L, "scalar");
+        out = new double[SIZE * SIZE];
+    }
+
+    @Benchmark
+    public double[] pointwise() {
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                out[i * SIZE + j] = noise.eval(X0 + i, Z0 + j);
+            }
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] grid() {
+        noise.evalGrid(X0, Z0, 1, 1, SIZE, SIZE, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] pointwiseFractal() {
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                double x = X0 + i, z = Z0 + j, sum = 0;
+                for (int o = 0; o < freq.length; o++) {
+                    sum += noise.eval((x + offsetX[o]) * freq[o], (z + offsetZ[o]) * freq[o]) * amp[o];
+                }
+                out[i * SIZE + j] = sum;
+            }
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] fractalGrid() {
+        noise.evalFractalGrid(X0, Z0, 1, 1, SIZE, SIZE, freq, amp, offsetX, offsetZ, null, out);
+        return out;
+    }
+}
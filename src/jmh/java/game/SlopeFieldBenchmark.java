@@ -0,0 +1,100 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static game.Chunk.*;
+
+/**
+ * The slope work of generating one chunk, before and after {@link SlopeField}. Per cell,
+ * generation reads the 5x5 average slope around it (lake sites), its own slope (feature
+ * placement) and the slopes of its two triangles' corners (texture choice).
+ * {@code perCellSums} recomputes every one of those slopes from the heights, as the
+ * stages did; {@code slopeField} builds the field once and reads it, with the box
+ * average from the summed-area table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlopeFieldBenchmark {
+    private static final long SEED = 1234L;
+    private static final int LAKE_RADIUS = 2;
+
+    private float[][] heights;
+
+    @Setup
+    public void setup() {
+        OpenSimplexNoise biomeNoise = new OpenSimplexNoise(SEED + 12345);
+        ChunkGenerator generator = new ChunkGenerator(SEED, new BiomeField(biomeNoise, 5e-4), new BiomeBlender(),
+                new TerrainMaterials(name -> 0), new OpenSimplexNoise(SEED), 1f);
+        heights = generator.generate(7, -3, Biome.HILLS, 0).heights;
+    }
+
+    @Benchmark
+    public float perCellSums() {
+        float total = 0f;
+        for (int x = 0; x < SIZE; x++) {
+            for (int z = 0; z < SIZE; z++) {
+                total += averageSurroundingSlope(x, z);
+                total += computeSlope(x, z);
+                total += computeSlope(x, z) + computeSlope(x + 1, z) + computeSlope(x, z + 1);
+                total += computeSlope(x + 1, z) + computeSlope(x + 1, z + 1) + computeSlope(x, z + 1);
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public float slopeField() {
+        SlopeField slopes = new SlopeField(heights);
+        float total = 0f;
+        for (int x = 0; x < SIZE; x++) {
+            for (int z = 0; z < SIZE; z++) {
+                total += slopes.average(x - LAKE_RADIUS, z - LAKE_RADIUS, x + LAKE_RADIUS, z + LAKE_RADIUS);
+                total += slopes.at(x, z);
+                total += slopes.at(x, z) + slopes.at(x + 1, z) + slopes.at(x, z + 1);
+                total += slopes.at(x + 1, z) + slopes.at(x + 1, z + 1) + slopes.at(x, z + 1);
+            }
+        }
+        return total;
+    }
+
+    // LakeGenerator's average before the slope field
+    private float averageSurroundingSlope(int centerX, int centerZ) {
+        int count = 0;
+        float totalSlope = 0;
+        for (int dx = -LAKE_RADIUS; dx <= LAKE_RADIUS; dx++) {
+            for (int dz = -LAKE_RADIUS; dz <= LAKE_RADIUS; dz++) {
+                int x = centerX + dx;
+                int z = centerZ + dz;
+                if (x >= 0 && z >= 0 && x < SIZE && z < SIZE) {
+                    totalSlope += computeSlope(x, z);
+                    count++;
+                }
+            }
+        }
+        return (count > 0) ? totalSlope / count : 1f;
+    }
+
+    // The clamped central difference each stage computed for itself
+    private float computeSlope(int x, int z) {
+        x += APRON;
+        z += APRON;
+        float dx = (heights[x + 1][z] - heights[x - 1][z]) * 0.5f;
+        float dz = (heights[x][z + 1] - heights[x][z - 1]) * 0.5f;
+        return (float) Math.sqrt(dx * dx + dz * dz);
+    }
+}
@@ -0,0 +1,59 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meshing one chunk's heightfield at LOD 0 and LOD 3. Run with {@code -prof gc}: its
+ * {@code gc.alloc.rate.norm} is the bytes allocated per chunk, which should be the
+ * returned texel buffer ({@link TerrainMesher#texelCount} times
+ * {@link TerrainMesher#TEXEL_BYTES}) plus its small fixed overhead and nothing that
+ * grows with the number of triangles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TerrainMesherBenchmark {
+    private static final long SEED = 1234L;
+
+    @Param({ "0", "3" })
+    public int lod;
+
+    private TerrainMesher mesher;
+    private Biome biome;
+    private float[][] heights;
+    private SlopeField slopes;
+    private float[] skirtBottoms;
+
+    @Setup
+    public void setup() {
+        OpenSimplexNoise biomeNoise = new OpenSimplexNoise(SEED + 12345);
+        TerrainMaterials materials = new TerrainMaterials(name -> 0);
+        ChunkGenerator generator = new ChunkGenerator(SEED, new BiomeField(biomeNoise, 5e-4), new BiomeBlender(),
+                materials, new OpenSimplexNoise(SEED), 1f);
+        biome = Biome.HILLS;
+        heights = generator.generate(7, -3, biome, lod).heights;
+        slopes = new SlopeField(heights, lod);
+        skirtBottoms = ChunkGenerator.skirtBottoms(heights);
+        mesher = new TerrainMesher(materials, 1f);
+    }
+
+    @Benchmark
+    public ChunkData.Heightmap build() {
+        return mesher.build(biome, lod, heights, slopes, skirtBottoms);
+    }
+}
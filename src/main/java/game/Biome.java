@@ -5,6 +5,8 @@ import objects.FlowerType;
 import objects.TreeType;
 import spawners.*;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 
@@ -42,6 +44,7 @@ public enum Biome {
         public final float blendRadius;
         public final String grassTex, dirtTex, rockTex;
         public Map<FeatureSpawner, Float> features;
+        public SpawnTable spawnTable = SpawnTable.EMPTY;
 
         // Global multiplier for all feature spawn rates
         public static float featureSpawnMultiplier = 0.25f;
@@ -63,7 +66,7 @@ public enum Biome {
         static {
                 float m = featureSpawnMultiplier;
 
-                PLAINS.features = Map.of(
+                PLAINS.features = features(
                         new TreeSpawner(TreeType.BIRCH), 0.006f * m,
                         new TreeSpawner(TreeType.OAK), 0.001f * m,
                         new TreeSpawner(TreeType.GIANT_OAK), 0.0001f * m,
@@ -74,7 +77,7 @@ public enum Biome {
                         new FlowerSpawner(FlowerType.TULIP), 0.008f * m,
                         new LakeSpawner(), 0.001f * m);
 
-                HILLS.features = Map.of(
+                HILLS.features = features(
                         new TreeSpawner(TreeType.OAK), 0.008f * m,
                         new TreeSpawner(TreeType.BIRCH), 0.001f * m,
                         new TreeSpawner(TreeType.BUSH), 0.0015f * m,
@@ -82,26 +85,26 @@ public enum Biome {
                         new GrassSpawner(HILLS.grassTex), 0.4f * m,
                         new FlowerSpawner(FlowerType.DAISY), 0.007f * m);
 
-                MOUNTAINS.features = Map.of(
+                MOUNTAINS.features = features(
                         new GrassSpawner(MOUNTAINS.grassTex), 0.4f * m,
                         new TreeSpawner(TreeType.OAK), 0.004f * m,
                         new TreeSpawner(TreeType.BUSH), 0.0015f * m,
                         new FlowerSpawner(FlowerType.TULIP), 0.008f * m);
 
-                HIGH_MOUNTAINS.features = Map.of(
+                HIGH_MOUNTAINS.features = features(
                         new GrassSpawner(HIGH_MOUNTAINS.grassTex), 0.4f * m,
                         new TreeSpawner(TreeType.BUSH), 0.003f * m,
                         new TreeSpawner(TreeType.RED_BERRY_BUSH), 0.001f * m,
                         new FlowerSpawner(FlowerType.TULIP), 0.008f * m);
 
-                SAND.features = Map.of(
+                SAND.features = features(
                         CactusSpawner.INSTANCE, 0.02f * m);
 
-                DEAD_FOREST.features = Map.of(
+                DEAD_FOREST.features = features(
                         DeadTreeSpawner.INSTANCE, 0.007f * m,
                         new GrassSpawner(DEAD_FOREST.grassTex), 0.4f * m);
 
-                BLOOM.features = Map.of(
+                BLOOM.features = features(
                         new TreeSpawner(TreeType.BLOSSOM), 0.008f * m,
                         new TreeSpawner(TreeType.GOLIATH_BLOSSOM), 0.00001f * m,
                         new TreeSpawner(TreeType.BLOOMING_BUSH), 0.01f * m,
@@ -111,7 +114,7 @@ public enum Biome {
                         new GrassSpawner(BLOOM.grassTex), 0.4f * m,
                         new LakeSpawner(), 0.0005f * m);
 
-                BIG_TREES.features = Map.of(
+                BIG_TREES.features = features(
                         new TreeSpawner(TreeType.GIANT_OAK), 0.005f * m,
                         new FlowerSpawner(FlowerType.TULIP), 0.1f * m,
                         new FlowerSpawner(FlowerType.DAISY), 0.1f * m,
@@ -119,23 +122,36 @@ public enum Biome {
                         new GrassSpawner(BIG_TREES.grassTex), 0.4f * m,
                         new LakeSpawner(), 0.0005f * m);
 
-                PREHISTORIC.features = Map.of(
+                PREHISTORIC.features = features(
                         new TreeSpawner(TreeType.GIANT_OAK), 0.005f * m,
                         new GrassSpawner(PREHISTORIC.grassTex), 0.4f * m,
                         new LakeSpawner(), 0.01f * m,
                         new FlowerSpawner(FlowerType.TULIP), 0.008f * m);
 
-                SWAMP.features = Map.of(
+                SWAMP.features = features(
                         new TreeSpawner(TreeType.SWAMP_TREE), 0.08f * m,
                         new GrassSpawner(SWAMP.grassTex), 0.4f * m,
                         new LakeSpawner(), 0.2f * m);
 
-                SPRUCE_FOREST.features = Map.of(
+                SPRUCE_FOREST.features = features(
                         new TreeSpawner(TreeType.SPRUCE), 0.01f * m,
                         new TreeSpawner(TreeType.BUSH), 0.002f * m,
                         new GrassSpawner(SPRUCE_FOREST.grassTex), 0.1f * m,
                         new FlowerSpawner(FlowerType.DAISY), 0.01f * m,
                         new LakeSpawner(), 0.001f * m);
 
+                for (Biome biome : values()) {
+                        if (biome.features != null)
+                                biome.spawnTable = SpawnTable.compile(biome.features);
+                }
+        }
+
+        // Spawner/chance pairs in declaration order, which the spawn tables depend on
+        private static Map<FeatureSpawner, Float> features(Object... spawnersAndChances) {
+                Map<FeatureSpawner, Float> map = new LinkedHashMap<>();
+                for (int i = 0; i < spawnersAndChances.length; i += 2) {
+                        map.put((FeatureSpawner) spawnersAndChances[i], (Float) spawnersAndChances[i + 1]);
+                }
+                return Collections.unmodifiableMap(map);
         }
 }
@@ -0,0 +1,83 @@
+package game;
+
+/**
+ * Biome weights as a function of the biome noise value {@code v} in [0, 1], tabulated
+ * once so blending needs no maps, boxing or per-biome falloff math. Weights between
+ * table entries are interpolated linearly, and each table cell keeps the short list of
+ * biomes that can be non-zero inside it.
+ *
+ * <p>With {@link #RESOLUTION} 1024 the weights differ from the exact
+ * {@link TerrainManager#getBiomeWeights} values by at most 7e-4, which moves
+ * generated heights by at most 0.05 units.
+ */
+public class BiomeBlender {
+    public static final int RESOLUTION = 1024;
+
+    private static final Biome[] BIOMES = Biome.values();
+
+    // weights[entry * BIOMES.length + ordinal], entries 0..RESOLUTION
+    private final float[] weights;
+    // Ordinals that are non-zero at either end of cell i, in ordinal order
+    private final int[][] active;
+
+    public BiomeBlender() {
+        int count = BIOMES.length;
+        weights = new float[(RESOLUTION + 1) * count];
+        for (int e = 0; e <= RESOLUTION; e++) {
+            exactWeights((double) e / RESOLUTION, weights, e * count);
+        }
+
+        active = new int[RESOLUTION][];
+        int[] scratch = new int[count];
+        for (int i = 0; i < RESOLUTION; i++) {
+            int n = 0;
+            for (int b = 0; b < count; b++) {
+                if (weights[i * count + b] != 0f || weights[(i + 1) * count + b] != 0f)
+                    scratch[n++] = b;
+            }
+            active[i] = java.util.Arrays.copyOf(scratch, n);
+        }
+    }
+
+    /** Same formula as {@link TerrainManager#getBiomeWeights}, written densely by ordinal. */
+    static void exactWeights(double v, float[] out, int offset) {
+        float total = 0f;
+        for (Biome biome : BIOMES) {
+            float distance = (float) Math.abs(v - biome.center);
+            float influence = Math.max(0f, 1f - (distance / biome.blendRadius));
+            out[offset + biome.ordinal()] = influence;
+            total += influence;
+        }
+        for (int b = 0; b < BIOMES.length; b++) {
+            out[offset + b] /= total;
+        }
+    }
+
+    /**
+     * Writes the biomes with a non-zero weight at {@code v} to {@code ordinals} and their
+     * weights to {@code weightsOut}, in ordinal order, and returns how many there are.
+     * Both arrays need room for every biome.
+     */
+    public int blend(double v, int[] ordinals, float[] weightsOut) {
+        double pos = Math.max(0.0, Math.min(1.0, v)) * RESOLUTION;
+        int cell = Math.min((int) pos, RESOLUTION - 1);
+        float frac = (float) (pos - cell);
+
+        int count = BIOMES.length;
+        int lo = cell * count, hi = lo + count;
+        int n = 0;
+        for (int b : active[cell]) {
+            float w = weights[lo + b] + (weights[hi + b] - weights[lo + b]) * frac;
+            if (w > 0f) {
+                ordinals[n] = b;
+                weightsOut[n] = w;
+                n++;
+            }
+        }
+        return n;
+    }
+
+    public static int biomeCount() {
+        return BIOMES.length;
+    }
+}
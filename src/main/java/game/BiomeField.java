@@ -0,0 +1,128 @@
+package game;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The biome noise value {@code v} in [0, 1], sampled on a coarse world-space lattice and
+ * bilinearly interpolated in between. The biome noise is so low frequency that a few
+ * lattice nodes per chunk are enough. Nodes are computed a tile at a time, and a small
+ * LRU of tiles is shared by all chunk workers, so neighbouring chunks reuse each
+ * other's samples.
+ *
+ * <p>The lattice spacing is derived from the allowed deviation of {@code v} from exact
+ * sampling, using the bilinear error bound {@code h^2 / 8 * (|v_xx| + |v_zz|)}.
+ */
+public class BiomeField {
+    static final double FREQUENCY = 0.001;
+    // Upper bound of |n_xx| + |n_yy| for OpenSimplexNoise.eval, measured as ~74 plus headroom
+    private static final double NOISE_CURVATURE = 80.0;
+    // Lattice intervals along one side of a tile
+    private static final int TILE_NODES = 16;
+    private static final int CACHE_TILES = 64;
+
+    private final OpenSimplexNoise noise;
+    private final double maxDeviation;
+    private final double spacing;
+    private final Map<Long, double[]> tiles = new LinkedHashMap<>(CACHE_TILES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, double[]> eldest) {
+            return size() > CACHE_TILES;
+        }
+    };
+    private long tileHits = 0;
+    private long tileMisses = 0;
+
+    public BiomeField(OpenSimplexNoise noise, double maxDeviation) {
+        this.noise = noise;
+        this.maxDeviation = maxDeviation;
+        this.spacing = spacingFor(maxDeviation);
+    }
+
+    /** Largest lattice spacing in world units whose interpolation error stays within maxDeviation. */
+    static double spacingFor(double maxDeviation) {
+        // v = (n + 1) / 2, so v's curvature is half the noise curvature times frequency squared
+        double curvature = 0.5 * NOISE_CURVATURE * FREQUENCY * FREQUENCY;
+        return Math.max(1.0, Math.sqrt(8.0 * maxDeviation / curvature));
+    }
+
+    /** Exact value at a world position, for comparison and one-off lookups. */
+    public double exact(double wx, double wz) {
+        return (noise.eval(wx * FREQUENCY, wz * FREQUENCY) + 1.0) / 2.0;
+    }
+
+    /** Interpolated value at each world position. Safe to call from several threads. */
+    public void sample(double[] wx, double[] wz, int count, double[] out) {
+        int stride = TILE_NODES + 1;
+        long lastKey = 0;
+        double[] tile = null;
+
+        for (int p = 0; p < count; p++) {
+            double gx = wx[p] / spacing;
+            double gz = wz[p] / spacing;
+            int ix = (int) Math.floor(gx);
+            int iz = (int) Math.floor(gz);
+            double fx = gx - ix, fz = gz - iz;
+
+            int tx = Math.floorDiv(ix, TILE_NODES);
+            int tz = Math.floorDiv(iz, TILE_NODES);
+            long key = ChunkStore.key(tx, tz);
+            if (tile == null || key != lastKey) {
+                tile = tile(tx, tz, key);
+                lastKey = key;
+            }
+
+            int o = (ix - tx * TILE_NODES) * stride + (iz - tz * TILE_NODES);
+            double v00 = tile[o], v01 = tile[o + 1];
+            double v10 = tile[o + stride], v11 = tile[o + stride + 1];
+            double a = v00 + (v10 - v00) * fx;
+            double b = v01 + (v11 - v01) * fx;
+            out[p] = a + (b - a) * fz;
+        }
+    }
+
+    private double[] tile(int tx, int tz, long key) {
+        synchronized (tiles) {
+            double[] tile = tiles.get(key);
+            if (tile != null) {
+                tileHits++;
+                return tile;
+            }
+            tileMisses++;
+        }
+
+        // Built outside the lock; two workers racing for the same tile just compute it twice
+        int stride = TILE_NODES + 1;
+        double[] tile = new double[stride * stride];
+        double step = spacing * FREQUENCY;
+        noise.evalGrid((double) tx * TILE_NODES, (double) tz * TILE_NODES, step, step, stride, stride, tile);
+        for (int i = 0; i < tile.length; i++) {
+            tile[i] = (tile[i] + 1.0) / 2.0;
+        }
+
+        synchronized (tiles) {
+            tiles.put(key, tile);
+        }
+        return tile;
+    }
+
+    public double getMaxDeviation() {
+        return maxDeviation;
+    }
+
+    public double getSpacing() {
+        return spacing;
+    }
+
+    public long getTileHits() {
+        synchronized (tiles) {
+            return tileHits;
+        }
+    }
+
+    public long getTileMisses() {
+        synchronized (tiles) {
+            return tileMisses;
+        }
+    }
+}
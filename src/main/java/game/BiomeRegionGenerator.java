@@ -2,85 +2,90 @@ package game;
 
 
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
+import util.HashRandom;
+
+/**
+ * Voronoi-style biome regions. Every region cell has one centre whose biome, offset and
+ * radius are drawn from a hash of the cell and the seed, so nothing is precomputed and
+ * the world has no edge. Resolved chunks are kept in a small direct-mapped cache.
+ */
 public class BiomeRegionGenerator {
     private static final int REGION_SIZE = 10; // Average region size (in chunks)
-    private final Map<Point, BiomeCenter> centers = new HashMap<>();
-    private final Random rand;
+    // The cache covers a CACHE_SIDE x CACHE_SIDE square of chunks, wrapping around
+    private static final int CACHE_SIDE = 32;
+
+    private static final Biome[] BIOMES = Biome.values();
+    private static final float TOTAL_SPAWN_CHANCE;
+
+    static {
+        float total = 0f;
+        for (Biome b : BIOMES) {
+            total += b.spawnChance;
+        }
+        TOTAL_SPAWN_CHANCE = total;
+    }
+
+    private final long seed;
+    private final long[] cachedKeys = new long[CACHE_SIDE * CACHE_SIDE];
+    private final Biome[] cachedBiomes = new Biome[CACHE_SIDE * CACHE_SIDE];
 
     public BiomeRegionGenerator(long seed) {
-        this.rand = new Random(seed ^ 0xCAFEBABE);
+        this.seed = seed ^ 0xCAFEBABE;
+    }
 
-        // Pre-generate biome centers with random offsets
-        for (int gx = -100; gx <= 100; gx++) {
-            for (int gz = -100; gz <= 100; gz++) {
-                Biome b = pickRandomBiome(rand);
-                int offsetX = rand.nextInt(REGION_SIZE) - REGION_SIZE / 2; // random -32..+32
-                int offsetZ = rand.nextInt(REGION_SIZE) - REGION_SIZE / 2;
-                float influenceRadius = REGION_SIZE * (0.8f + rand.nextFloat() * 0.6f); // random 0.8x..1.4x
+    public Biome getBiomeAtChunk(int cx, int cz) {
+        long key = ChunkStore.key(cx, cz);
+        int slot = Math.floorMod(cx, CACHE_SIDE) * CACHE_SIDE + Math.floorMod(cz, CACHE_SIDE);
+        synchronized (cachedKeys) {
+            if (cachedBiomes[slot] != null && cachedKeys[slot] == key)
+                return cachedBiomes[slot];
+        }
 
-                centers.put(new Point(gx, gz), new BiomeCenter(b, offsetX, offsetZ, influenceRadius));
-            }
+        Biome best = resolve(cx, cz);
+        synchronized (cachedKeys) {
+            cachedKeys[slot] = key;
+            cachedBiomes[slot] = best;
         }
+        return best;
     }
 
-    public Biome getBiomeAtChunk(int cx, int cz) {
+    private Biome resolve(int cx, int cz) {
         int gx = Math.floorDiv(cx, REGION_SIZE);
         int gz = Math.floorDiv(cz, REGION_SIZE);
 
-        // Find nearest center
-        double minDist = Double.MAX_VALUE;
-        Biome best = Biome.PLAINS;
+        // Find nearest center by distance / influenceRadius, compared squared
+        float minDist = Float.MAX_VALUE;
+        long bestCell = 0;
 
         for (int dx = -1; dx <= 1; dx++) {
             for (int dz = -1; dz <= 1; dz++) {
-                Point p = new Point(gx + dx, gz + dz);
-                BiomeCenter center = centers.get(p);
-                if (center == null) continue;
-
-                int centerX = (gx + dx) * REGION_SIZE + REGION_SIZE / 2 + center.offsetX;
-                int centerZ = (gz + dz) * REGION_SIZE + REGION_SIZE / 2 + center.offsetZ;
-                double dist = Math.sqrt(Math.pow(cx - centerX, 2) + Math.pow(cz - centerZ, 2)) / center.influenceRadius;
+                long cell = HashRandom.key(seed, gx + dx, gz + dz, HashRandom.STREAM_REGION);
+                int offsetX = HashRandom.nextInt(cell, 0, REGION_SIZE) - REGION_SIZE / 2;
+                int offsetZ = HashRandom.nextInt(cell, 1, REGION_SIZE) - REGION_SIZE / 2;
+                float influenceRadius = REGION_SIZE * (0.8f + HashRandom.nextFloat(cell, 2) * 0.6f); // random 0.8x..1.4x
+
+                int centerX = (gx + dx) * REGION_SIZE + REGION_SIZE / 2 + offsetX;
+                int centerZ = (gz + dz) * REGION_SIZE + REGION_SIZE / 2 + offsetZ;
+                float ddx = cx - centerX, ddz = cz - centerZ;
+                float dist = (ddx * ddx + ddz * ddz) / (influenceRadius * influenceRadius);
                 if (dist < minDist) {
                     minDist = dist;
-                    best = center.biome;
+                    bestCell = cell;
                 }
             }
         }
 
-        return best;
+        return pickBiome(HashRandom.nextFloat(bestCell, 3));
     }
 
-    private Biome pickRandomBiome(Random rand) {
-        float total = 0f;
-        for (Biome b : Biome.values()) {
-            total += b.spawnChance;
-        }
-
-        float threshold = rand.nextFloat() * total;
+    private static Biome pickBiome(float unit) {
+        float threshold = unit * TOTAL_SPAWN_CHANCE;
         float sum = 0f;
-        for (Biome b : Biome.values()) {
+        for (Biome b : BIOMES) {
             sum += b.spawnChance;
             if (sum >= threshold)
                 return b;
         }
         return Biome.PLAINS;
     }
-
-    private static record Point(int x, int z) {}
-
-    private static class BiomeCenter {
-        final Biome biome;
-        final int offsetX, offsetZ;
-        final float influenceRadius;
-
-        BiomeCenter(Biome biome, int offsetX, int offsetZ, float influenceRadius) {
-            this.biome = biome;
-            this.offsetX = offsetX;
-            this.offsetZ = offsetZ;
-            this.influenceRadius = influenceRadius;
-        }
-    }
 }
@@ -1,191 +1,229 @@
 package game;
-import generators.LakeGenerator;
 import objects.BatchableFeature;
 import objects.Feature;
 import objects.Grass;
 import objects.Lake;
-import spawners.FeatureSpawner;
-import spawners.LakeSpawner;
 import util.BoundingBox;
-import util.FeatureUtil;
-import util.VertexBatchBuilder;
+import util.GlWorkScheduler;
 
 import static org.lwjgl.opengl.GL11.*;
-import static org.lwjgl.opengl.GL15.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.*;
 
 public class Chunk {
     public static final int SIZE = 30;
+    // Extra ring of vertices around the chunk, sampled from noise so slopes and normals need no neighbours
+    public static final int APRON = 1;
+    public static final int HEIGHTS_SIDE = SIZE + 1 + 2 * APRON;
+    // Coarsest LOD is a single quad per chunk
+    public static final int MAX_LOD = 5;
+    private static final int[][] LATTICES = new int[MAX_LOD + 1][];
     public final int cx, cz;
-    private final OpenSimplexNoise terrainNoise;
     private final float scale;
-    private final TerrainManager manager;
     private final Biome biome;
-    private final int lod;
 
-    private final float[][] heights = new float[SIZE + 1][SIZE + 1];
+    // Replaced together by applyLod(), GL thread only
+    private int lod;
+    private float[][] heights;
+    private BoundingBox bounds;
+    private List<ChunkData.FeaturePlacement> placements;
+    private List<Feature> lakes;
     private final List<Feature> features = new ArrayList<>();
-    private final boolean[][] featureMask = new boolean[SIZE][SIZE];
-    private final boolean[][] lakeMask = new boolean[SIZE][SIZE];
+    private final GlWorkScheduler gl;
+    private final ChunkBuffers buffers;
+    private ChunkData pendingUpload;
+    private boolean retired = false;
     private boolean featuresGenerated = false;
-    private final List<TerrainBatch> terrainBatches = new ArrayList<>();
-    private int waterDisplayList = -1;
-    private int grassBatchVbo = -1;
-    private int grassBatchVertexCount = 0;
-    private int grassBatchTexture = 0;
+    private boolean featuresQueued = false;
+    // Ranges of the shared arenas in ChunkBuffers, in units of their texel, instance or vertex size
+    private TerrainRange terrain;
+    private int waterVertexOffset = -1;
+    private int waterVertexCount = 0;
+    // Grass instances, grouped by look and then by variant
+    private int grassBatchOffset = -1;
+    private int grassBatchInstanceCount = 0;
+    private final List<GrassLook> grassBatchLooks = new ArrayList<>();
+    // Cached memory estimates, -1 when they need recomputing
+    private long heapBytes = -1;
+    private long gpuBytes = -1;
+    // Maintained by TerrainManager on the GL thread
+    int visibleScan;
+    boolean offscreen;
+    // Neighbours in ChunkResidency's least-recently-visible list while offscreen
+    Chunk offscreenPrev, offscreenNext;
     public static final float WATER_LEVEL = 4.0f;
     public static final float WATER_SURROUNDING_LEVEL = 5.5f;
     public static final float ABSOLUTE_WATER_BOTTOM_HEIGHT = 1.0f;
 
-    private static final float DIRT_SLOPE_START = 0.65f;
-    private static final float ROCK_SLOPE_START = 1.0f;
+    public static final float DIRT_SLOPE_START = 0.65f;
+    public static final float ROCK_SLOPE_START = 1.0f;
 
 
-    private static final float SNOW_HEIGHT_START = 55f;
-    private static final float SNOW_HEIGHT_FULL = 60f;
+    public static final float SNOW_HEIGHT_START = 55f;
+    public static final float SNOW_HEIGHT_FULL = 60f;
 
-    private static final float FEATURE_MIN_HEIGHT = WATER_SURROUNDING_LEVEL;
-    private static final float FEATURE_MAX_HEIGHT = SNOW_HEIGHT_START;
+    static final float FEATURE_MIN_HEIGHT = WATER_SURROUNDING_LEVEL;
+    static final float FEATURE_MAX_HEIGHT = SNOW_HEIGHT_START;
     public static final float FEATURE_SLOPE_SPAWN_THRESHOLD = DIRT_SLOPE_START;
     public static final float FEATURE_TREE_MAX_HEIGHT = 25f; // example, you can adjust
 
+    static {
+        for (int lod = 0; lod <= MAX_LOD; lod++) {
+            int step = 1 << lod;
+            int[] lattice = new int[2 * APRON + (SIZE + step - 1) / step + 1];
+            int i = 0;
+            for (int a = -APRON; a < 0; a++)
+                lattice[i++] = a;
+            for (int v = 0; v < SIZE; v += step)
+                lattice[i++] = v;
+            for (int v = SIZE; v <= SIZE + APRON; v++)
+                lattice[i++] = v;
+            LATTICES[lod] = lattice;
+        }
+    }
 
+    /**
+     * Vertex coordinates sampled at a LOD along either axis, in ascending order: every
+     * 2^lod-th vertex, the far edge and the apron. The chunk's own vertices are the
+     * entries from {@code APRON} to {@code length - APRON - 1}. Each LOD's lattice
+     * contains every coarser one, so refining only has to fill in the new vertices.
+     */
+    static int[] lattice(int lod) {
+        return LATTICES[lod];
+    }
+
+    /** Index in {@link #lattice} of the lower corner of the lattice cell holding vertex v. */
+    static int latticeCell(int lod, int v) {
+        int cells = LATTICES[lod].length - 2 * APRON - 1;
+        return APRON + Math.max(0, Math.min(cells - 1, v >> lod));
+    }
 
 
-
-
-    public Chunk(int cx, int cz, OpenSimplexNoise terrainNoise, float scale, Biome biome, TerrainManager manager,
-            boolean generateFeatures, int lod) {
-        this.cx = cx;
-        this.cz = cz;
-        this.terrainNoise = terrainNoise;
+    /**
+     * Wraps a finished {@link ChunkData}. Heights are usable straight away; the geometry
+     * is uploaded later by {@link #upload()}, which the GL work scheduler runs.
+     */
+    Chunk(ChunkData data, float scale, GlWorkScheduler gl, ChunkBuffers buffers) {
+        this.cx = data.cx;
+        this.cz = data.cz;
         this.scale = scale;
-        this.manager = manager;
-        this.biome = biome;
-        this.lod = lod;
-        generate(generateFeatures);
+        this.biome = data.biome;
+        this.lod = data.lod;
+        this.heights = data.heights;
+        this.bounds = data.bounds;
+        this.placements = data.placements;
+        this.lakes = data.lakes;
+        this.gl = gl;
+        this.buffers = buffers;
+        this.pendingUpload = data;
+        features.addAll(data.lakes);
     }
 
-    private void generate(boolean generateFeatures) {
-        final int OCTAVES = 4;
-        final double PERSISTENCE = 0.35;
-        final double macroFreq = 0.002;
-        final double macroAmp = 2.0; // Lower to reduce elevation distortion
-
-        for (int x = 0; x <= SIZE; x++) {
-            for (int z = 0; z <= SIZE; z++) {
-                double wx = (cx * SIZE + x) * scale;
-                double wz = (cz * SIZE + z) * scale;
-
-                Map<Biome, Float> weights = manager.getBiomeWeights(wx, wz);
-                double blendedHeight = 0;
-
-                for (Map.Entry<Biome, Float> entry : weights.entrySet()) {
-                    Biome biome = entry.getKey();
-                    float weight = entry.getValue();
-
-                    double freq = biome.frequency;
-                    double amp = biome.amplitude * 0.5; // Reduce noise contribution
-                    double sum = 0;
-
-                    for (int o = 0; o < OCTAVES; o++) {
-                        double offset = o * 100.0;
-                        double val = terrainNoise.eval((wx + offset) * freq, (wz - offset) * freq);
-                        val = (val * val * val) * 1.2;
-                        sum += val * amp;
-                        freq *= 1.7;
-                        amp *= PERSISTENCE;
-                    }
-
-                    double elevationOffset = terrainNoise.eval(wx * macroFreq, wz * macroFreq) * macroAmp;
-
-                    // Biome shaping: baseHeight is now the dominant vertical shift
-                    double biomeHeight = biome.baseHeight + sum + elevationOffset;
-                    blendedHeight += biomeHeight * weight;
-                }
-
-                heights[x][z] = (float) blendedHeight;
-            }
+    /**
+     * Swaps in another LOD of this chunk and uploads it straight away, so the chunk keeps
+     * its place in the store and its residency state. Runs on the GL thread; features
+     * are dropped and reloaded from the new placements. Lakes the new LOD carried over
+     * are kept.
+     */
+    void applyLod(ChunkData data) {
+        for (Feature f : features) {
+            if (!data.lakes.contains(f))
+                f.dispose();
         }
+        features.clear();
+        disposeGrassBatch();
+        featuresGenerated = false;
+        featuresQueued = false;
+
+        this.lod = data.lod;
+        this.heights = data.heights;
+        this.bounds = data.bounds;
+        this.placements = data.placements;
+        this.lakes = data.lakes;
+        features.addAll(data.lakes);
+        pendingUpload = data;
+        upload();
+    }
 
+    /**
+     * Uploads the terrain and water into their arenas. Does nothing if the chunk was
+     * retired before its turn in the queue came up.
+     */
+    void upload() {
+        ChunkData data = pendingUpload;
+        pendingUpload = null;
+        if (data == null || retired)
+            return;
 
-        LakeGenerator.generateLakes(this, biome, heights, featureMask, features, manager);
-        if (generateFeatures)
-            generateFeatures();
-        stitchEdges();
-        buildTerrainBuffers();
-        buildWaterDisplayList();
-        buildGrassBatch();
-
-    }
-
-    public void drawWater() {
-        glEnable(GL_BLEND);
-        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
-        glDisable(GL_TEXTURE_2D);
+        buildTerrainRange(data.terrain, data.lod);
+        buildWaterRange(data.waterQuads, data.waterQuadCount);
+        invalidateFootprint();
+    }
 
-        glDepthMask(false); // Disable depth writing for transparency
+    boolean isUploaded() {
+        return pendingUpload == null;
+    }
 
-        glEnable(GL_FOG); // <<< ADD THIS
-        glColor4f(0.2f, 0.5f, 0.8f, 0.6f); // Water color (already fine)
+    /**
+     * Marks the chunk as no longer in use and queues its GL resources for deletion.
+     */
+    void retire() {
+        if (retired)
+            return;
+        retired = true;
+        featuresQueued = false;
+        gl.submit(GlWorkScheduler.PRIORITY_DISPOSE, this::dispose);
+    }
 
-        if (waterDisplayList != -1) {
-            glCallList(waterDisplayList);
-        }
-
-        glDepthMask(true); // Re-enable depth writing
-
-        glDisable(GL_FOG); // <<< Disable again after drawing water
-        glEnable(GL_TEXTURE_2D);
-        glDisable(GL_BLEND);
+    // Drawn for all visible chunks at once by ChunkBuffers
+    TerrainRange getTerrainRange() {
+        return terrain;
     }
 
+    int getWaterVertexOffset() {
+        return waterVertexOffset;
+    }
 
+    int getWaterVertexCount() {
+        return waterVertexCount;
+    }
 
+    int getGrassOffset() {
+        return grassBatchOffset;
+    }
+
+    // Looks of this chunk's grass, whose instances follow each other from getGrassOffset()
+    List<GrassLook> getGrassLooks() {
+        return grassBatchLooks;
+    }
 
     public void generateFeaturesIfNeeded(int pcx, int pcz, int featureRenderDist) {
-        if (featuresGenerated)
+        if (featuresGenerated || featuresQueued || retired)
             return;
 
-        if (Math.abs(cx - pcx) > featureRenderDist || Math.abs(cz - pcz) > featureRenderDist)
+        int dist = Math.max(Math.abs(cx - pcx), Math.abs(cz - pcz));
+        if (dist > featureRenderDist)
             return;
 
-        generateFeatures();
-        featuresGenerated = true;
+        featuresQueued = true;
+        gl.submit(GlWorkScheduler.PRIORITY_FEATURES + dist, () -> {
+            // Cancelled by an unload or retire while waiting in the queue
+            if (!featuresQueued)
+                return;
+            featuresQueued = false;
+            generateFeatures();
+            featuresGenerated = true;
+        });
     }
 
     public Biome getBiomeType() {
         return biome;
     }
 
-    public void stitchEdges() {
-        Chunk left = manager.getChunk(cx - 1, cz);
-        if (left != null) {
-            for (int z = 0; z <= SIZE; z++) {
-                heights[0][z] = left.heights[SIZE][z];
-            }
-        }
-
-        Chunk top = manager.getChunk(cx, cz - 1);
-        if (top != null) {
-            for (int x = 0; x <= SIZE; x++) {
-                heights[x][0] = top.heights[x][SIZE];
-            }
-        }
-
-        Chunk topLeft = manager.getChunk(cx - 1, cz - 1);
-        if (topLeft != null) {
-            heights[0][0] = topLeft.heights[SIZE][SIZE];
-        }
-    }
-
-    public void drawTerrainAndFeatures() {
-        glEnable(GL_TEXTURE_2D);
+    /** Draws the features other than grass, which ChunkBuffers draws for all chunks at once. */
+    public void drawFeatures() {
         glColor3f(1f, 1f, 1f);
-
-        renderTerrainBuffers();
-        renderGrassBatch();
-
         glDisable(GL_TEXTURE_2D);
 
         // Draw features if they are above water
@@ -201,190 +239,96 @@ public class Chunk {
 
 
 
-    private void buildWaterDisplayList() {
-        waterDisplayList = glGenLists(1);
-        if (waterDisplayList != -1) {
-            glNewList(waterDisplayList, GL_COMPILE);
-            buildWaterGeometry();
-            glEndList();
-        }
-    }
-
-    private void buildTerrainBuffers() {
-        disposeTerrainBuffers();
-        Map<Integer, FloatBuilder> builders = new HashMap<>();
-        float texScale = 0.2f;
-        int step = (int) Math.pow(2, lod);
-        for (int z = 0; z < SIZE; z += step) {
-            for (int x = 0; x < SIZE; x += step) {
-                if (x + step > SIZE || z + step > SIZE)
-                    continue;
-
-                float y00 = heights[x][z];
-                float y10 = heights[x + step][z];
-                float y01 = heights[x][z + step];
-                float y11 = heights[x + step][z + step];
-
-                addTriangle(builders, x, z, x + step, z, x, z + step, y00, y10, y01, texScale);
-                addTriangle(builders, x + step, z, x + step, z + step, x, z + step, y10, y11, y01, texScale);
-            }
-        }
-
-        for (Map.Entry<Integer, FloatBuilder> entry : builders.entrySet()) {
-            FloatBuilder builder = entry.getValue();
-            if (builder.size == 0) {
-                continue;
-            }
-            int vboId = glGenBuffers();
-            glBindBuffer(GL_ARRAY_BUFFER, vboId);
-            glBufferData(GL_ARRAY_BUFFER, builder.toBuffer(), GL_STATIC_DRAW);
-            glBindBuffer(GL_ARRAY_BUFFER, 0);
-            terrainBatches.add(new TerrainBatch(entry.getKey(), vboId, builder.size / STRIDE_FLOATS));
+    private void buildWaterRange(float[] quads, int quadCount) {
+        disposeWaterRange();
+        if (quadCount == 0)
+            return;
+
+        int bytes = quadCount * 4 * ChunkBuffers.WATER_STRIDE_BYTES;
+        FloatBuffer vertices = buffers.stage(buffers.waterVertices, bytes).asFloatBuffer();
+        for (int i = 0; i < quadCount; i++) {
+            int o = i * 4;
+            float wx1 = quads[o], wz1 = quads[o + 1], wx2 = quads[o + 2], wz2 = quads[o + 3];
+            vertices.put(wx1).put(WATER_LEVEL).put(wz1);
+            vertices.put(wx2).put(WATER_LEVEL).put(wz1);
+            vertices.put(wx2).put(WATER_LEVEL).put(wz2);
+            vertices.put(wx1).put(WATER_LEVEL).put(wz2);
         }
+        waterVertexOffset = buffers.commit();
+        waterVertexCount = quadCount * 4;
     }
 
-    private void buildWaterGeometry() {
-        int step = (int) Math.pow(2, lod);
-
-        for (int z = 0; z < SIZE; z += step) {
-            for (int x = 0; x < SIZE; x += step) {
-                if (x + step > SIZE || z + step > SIZE)
-                    continue;
-
-                float y00 = heights[x][z];
-                float y10 = heights[x + step][z];
-                float y01 = heights[x][z + step];
-                float y11 = heights[x + step][z + step];
-
-                boolean needsWater =
-                        y00 < WATER_LEVEL || y10 < WATER_LEVEL || y01 < WATER_LEVEL || y11 < WATER_LEVEL;
-
-                if (needsWater) {
-                    float wx1 = (cx * SIZE + x) * scale;
-                    float wz1 = (cz * SIZE + z) * scale;
-                    float wx2 = (cx * SIZE + x + step) * scale;
-                    float wz2 = (cz * SIZE + z + step) * scale;
-
-                    glBegin(GL_QUADS);
-                    glNormal3f(0f, 1f, 0f);
-                    glVertex3f(wx1, WATER_LEVEL, wz1);
-                    glVertex3f(wx2, WATER_LEVEL, wz1);
-                    glVertex3f(wx2, WATER_LEVEL, wz2);
-                    glVertex3f(wx1, WATER_LEVEL, wz2);
-                    glEnd();
-                }
-            }
-        }
+    private void buildTerrainRange(ChunkData.Heightmap heightmap, int lod) {
+        disposeTerrainRange();
+        buffers.stage(buffers.terrainTexels, heightmap.texels().remaining()).put(heightmap.texels().duplicate());
+        terrain = new TerrainRange(buffers.commit(), lod, heightmap);
     }
 
     private void buildGrassBatch() {
         disposeGrassBatch();
-        VertexBatchBuilder builder = new VertexBatchBuilder();
-        int texture = 0;
+        int count = groupGrass(features, grassBatchLooks);
+        if (count == 0) {
+            return;
+        }
 
+        ByteBuffer instances = buffers.stage(buffers.grassInstances, count * Grass.INSTANCE_STRIDE_BYTES);
+        putGrassInstances(features, grassBatchLooks, instances, cx * SIZE * scale, cz * SIZE * scale);
+        grassBatchOffset = buffers.commit();
+        grassBatchInstanceCount = count;
+    }
+
+    /** Adds the look of every tuft among the features to {@code looks}, counts them by variant and returns the number of tufts. */
+    static int groupGrass(List<Feature> features, List<GrassLook> looks) {
+        int count = 0;
         for (Feature feature : features) {
             if (feature instanceof BatchableFeature) {
                 BatchableFeature batchable = (BatchableFeature) feature;
-                batchable.appendToBatch(builder);
-                texture = batchable.getBatchTextureId();
+                looks.get(lookIndex(looks, batchable)).variantCounts[batchable.getVariant()]++;
+                count++;
             }
         }
-
-        int vertexCount = builder.getVertexCount();
-        if (vertexCount == 0) {
-            return;
-        }
-
-        int vboId = glGenBuffers();
-        glBindBuffer(GL_ARRAY_BUFFER, vboId);
-        glBufferData(GL_ARRAY_BUFFER, builder.toBuffer(), GL_STATIC_DRAW);
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-
-        grassBatchVbo = vboId;
-        grassBatchVertexCount = vertexCount;
-        grassBatchTexture = texture;
+        return count;
     }
 
-    private void renderGrassBatch() {
-        if (grassBatchVbo == -1 || grassBatchVertexCount == 0) {
-            return;
+    /** Writes the instances of the tufts grouped by {@link #groupGrass}, look after look and variant after variant. */
+    static void putGrassInstances(List<Feature> features, List<GrassLook> looks, ByteBuffer instances,
+                                  float originX, float originZ) {
+        // First instance of each look's variants, then advanced past each instance written
+        int[] next = new int[looks.size() * Grass.VARIANTS];
+        int first = 0;
+        for (int look = 0; look < looks.size(); look++) {
+            int[] variantCounts = looks.get(look).variantCounts;
+            for (int variant = 0; variant < Grass.VARIANTS; variant++) {
+                next[look * Grass.VARIANTS + variant] = first;
+                first += variantCounts[variant];
+            }
         }
 
-        glEnable(GL_BLEND);
-        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
-        glEnable(GL_ALPHA_TEST);
-        glAlphaFunc(GL_GREATER, 0.3f);
-        glBindTexture(GL_TEXTURE_2D, grassBatchTexture);
-        glBindBuffer(GL_ARRAY_BUFFER, grassBatchVbo);
-        glEnableClientState(GL_VERTEX_ARRAY);
-        glEnableClientState(GL_TEXTURE_COORD_ARRAY);
-        glVertexPointer(3, GL_FLOAT, 5 * Float.BYTES, 0);
-        glTexCoordPointer(2, GL_FLOAT, 5 * Float.BYTES, 3 * Float.BYTES);
-        glDrawArrays(GL_QUADS, 0, grassBatchVertexCount);
-        glDisableClientState(GL_TEXTURE_COORD_ARRAY);
-        glDisableClientState(GL_VERTEX_ARRAY);
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glDisable(GL_ALPHA_TEST);
-        glDisable(GL_BLEND);
-    }
-
-    private void renderGrassBatchDepth() {
-        if (grassBatchVbo == -1 || grassBatchVertexCount == 0) {
-            return;
+        for (Feature feature : features) {
+            if (feature instanceof BatchableFeature) {
+                BatchableFeature batchable = (BatchableFeature) feature;
+                int slot = lookIndex(looks, batchable) * Grass.VARIANTS + batchable.getVariant();
+                instances.position(next[slot]++ * Grass.INSTANCE_STRIDE_BYTES);
+                batchable.putInstance(instances, originX, originZ);
+            }
         }
-
-        glBindBuffer(GL_ARRAY_BUFFER, grassBatchVbo);
-        glEnableClientState(GL_VERTEX_ARRAY);
-        glVertexPointer(3, GL_FLOAT, 5 * Float.BYTES, 0);
-        glDrawArrays(GL_QUADS, 0, grassBatchVertexCount);
-        glDisableClientState(GL_VERTEX_ARRAY);
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
     }
 
-    private void renderTerrainBuffers() {
-        if (terrainBatches.isEmpty()) {
-            return;
-        }
-
-        glEnableClientState(GL_VERTEX_ARRAY);
-        glEnableClientState(GL_NORMAL_ARRAY);
-        glEnableClientState(GL_TEXTURE_COORD_ARRAY);
-
-        int strideBytes = STRIDE_FLOATS * Float.BYTES;
-        for (TerrainBatch batch : terrainBatches) {
-            glBindTexture(GL_TEXTURE_2D, batch.textureId);
-            glBindBuffer(GL_ARRAY_BUFFER, batch.vboId);
-            glVertexPointer(3, GL_FLOAT, strideBytes, 0);
-            glNormalPointer(GL_FLOAT, strideBytes, 3 * Float.BYTES);
-            glTexCoordPointer(2, GL_FLOAT, strideBytes, 6 * Float.BYTES);
-            glDrawArrays(GL_TRIANGLES, 0, batch.vertexCount);
+    // Index of a tuft's look, which is added if it is new
+    private static int lookIndex(List<GrassLook> looks, BatchableFeature batchable) {
+        int texture = batchable.getBatchTextureId();
+        float[] color = batchable.getBatchColor();
+        for (int i = 0; i < looks.size(); i++) {
+            GrassLook look = looks.get(i);
+            if (look.texture == texture && Arrays.equals(look.color, color))
+                return i;
         }
-
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glDisableClientState(GL_TEXTURE_COORD_ARRAY);
-        glDisableClientState(GL_NORMAL_ARRAY);
-        glDisableClientState(GL_VERTEX_ARRAY);
+        looks.add(new GrassLook(texture, color));
+        return looks.size() - 1;
     }
 
-    public void renderDepth() {
-        if (terrainBatches.isEmpty()) {
-            return;
-        }
-
-        glEnableClientState(GL_VERTEX_ARRAY);
-        int strideBytes = STRIDE_FLOATS * Float.BYTES;
-
-        for (TerrainBatch batch : terrainBatches) {
-            glBindBuffer(GL_ARRAY_BUFFER, batch.vboId);
-            glVertexPointer(3, GL_FLOAT, strideBytes, 0);
-            glDrawArrays(GL_TRIANGLES, 0, batch.vertexCount);
-        }
-
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glDisableClientState(GL_VERTEX_ARRAY);
-
-        renderGrassBatchDepth();
-
+    /** Draws the features other than grass into the shadow map; terrain and grass are drawn by ChunkBuffers. */
+    public void renderFeatureDepth() {
         for (Feature f : features) {
             if (f instanceof Grass) {
                 continue;
@@ -395,200 +339,53 @@ public class Chunk {
         }
     }
 
-    private void addTriangle(Map<Integer, FloatBuilder> builders, int x1, int z1, int x2, int z2, int x3, int z3,
-            float y1, float y2, float y3, float texScale) {
-        float slope = (computeSlope(x1, z1) + computeSlope(x2, z2) + computeSlope(x3, z3)) / 3f;
-        float height = Math.max(y1, Math.max(y2, y3));
-        int tex = pickTexture(height, slope);
-
-        FloatBuilder builder = builders.computeIfAbsent(tex, key -> new FloatBuilder());
-        float[] normal = computeNormal(x1, z1, x2, z2, x3, z3);
-
-        float wx1 = (cx * SIZE + x1) * scale;
-        float wz1 = (cz * SIZE + z1) * scale;
-        float wx2 = (cx * SIZE + x2) * scale;
-        float wz2 = (cz * SIZE + z2) * scale;
-        float wx3 = (cx * SIZE + x3) * scale;
-        float wz3 = (cz * SIZE + z3) * scale;
-
-        builder.putVertex(wx1, y1, wz1, normal, x1 * texScale, z1 * texScale);
-        builder.putVertex(wx2, y2, wz2, normal, x2 * texScale, z2 * texScale);
-        builder.putVertex(wx3, y3, wz3, normal, x3 * texScale, z3 * texScale);
-    }
-
-    private void drawTriangle(int x1, int z1, int x2, int z2, int x3, int z3, float y1, float y2, float y3,
-            float texScale) {
-        float slope = (computeSlope(x1, z1) + computeSlope(x2, z2) + computeSlope(x3, z3)) / 3f;
-        float height = Math.max(y1, Math.max(y2, y3));
-        int tex = pickTexture(height, slope);
-
-        float wx1 = (cx * SIZE + x1) * scale;
-        float wz1 = (cz * SIZE + z1) * scale;
-        float wx2 = (cx * SIZE + x2) * scale;
-        float wz2 = (cz * SIZE + z2) * scale;
-        float wx3 = (cx * SIZE + x3) * scale;
-        float wz3 = (cz * SIZE + z3) * scale;
-
-        glBindTexture(GL_TEXTURE_2D, tex);
-        glBegin(GL_TRIANGLES);
-        float[] normal = computeNormal(x1, z1, x2, z2, x3, z3);
-        glNormal3f(normal[0], normal[1], normal[2]);
-        glTexCoord2f(x1 * texScale, z1 * texScale);
-        glVertex3f(wx1, y1, wz1);
-        glTexCoord2f(x2 * texScale, z2 * texScale);
-        glVertex3f(wx2, y2, wz2);
-        glTexCoord2f(x3 * texScale, z3 * texScale);
-        glVertex3f(wx3, y3, wz3);
-        glEnd();
-    }
-
     public List<Feature> getFeatures() {
         return features;
     }
 
     public void unloadFeaturesIfOutOfRange(int pcx, int pcz, int featureRenderDist) {
-        if (!featuresGenerated)
+        if (!featuresGenerated && !featuresQueued)
             return;
 
         // Check if the chunk is out of feature render distance
         if (Math.abs(cx - pcx) > featureRenderDist || Math.abs(cz - pcz) > featureRenderDist) {
+            featuresQueued = false;
+            if (!featuresGenerated)
+                return;
+
             // Remove only non-lake features
-            features.removeIf(f -> !(f instanceof Lake));
+            List<Feature> removed = new ArrayList<>();
+            features.removeIf(f -> {
+                if (f instanceof Lake)
+                    return false;
+                removed.add(f);
+                return true;
+            });
             featuresGenerated = false;
-            disposeGrassBatch();
-
-            for (int x = 0; x < SIZE; x++) {
-                Arrays.fill(featureMask[x], false);
-                // lakeMask[x][z] is NOT cleared so lakes persist
-            }
+            invalidateFootprint();
+
+            int grassOffset = grassBatchOffset;
+            grassBatchOffset = -1;
+            clearGrassBatch();
+            gl.submit(GlWorkScheduler.PRIORITY_DISPOSE, () -> {
+                for (Feature f : removed) {
+                    f.dispose();
+                }
+                if (grassOffset != -1) {
+                    buffers.grassInstances.free(grassOffset);
+                }
+            });
         }
     }
 
     private void generateFeatures() {
-        if (biome.features == null || biome.features.isEmpty())
-            return;
-
-        long chunkSeed = FeatureUtil.hashSeed(cx, 0, cz, manager.getSeed());
-        Random rand = new Random(chunkSeed);
-
-        for (int x = 0; x < SIZE; x++) {
-            for (int z = 0; z < SIZE; z++) {
-                if (featureMask[x][z] || lakeMask[x][z])
-                    continue;
-
-                float height = heights[x][z];
-                float slope = computeSlope(x, z);
-
-                if (height < FEATURE_MIN_HEIGHT || height > FEATURE_MAX_HEIGHT)
-                    continue;
-
-                if (height > FEATURE_MAX_HEIGHT || slope > FEATURE_SLOPE_SPAWN_THRESHOLD)
-                    continue;
-
-
-                float wx = (cx * SIZE + x + 0.5f) * scale;
-                float wz = (cz * SIZE + z + 0.5f) * scale;
-
-                // --- Adjust feature height DOWNWARD based on slope ---
-                float slopeAdjustment = slope * 2.0f; // You can tweak 2.0f to make it stronger/weaker
-                float wy = height - slopeAdjustment;
-
-                for (Map.Entry<FeatureSpawner, Float> entry : biome.features.entrySet()) {
-                    if (entry.getKey() instanceof LakeSpawner)
-                        continue;
-                    if (entry.getKey().getClass().getSimpleName().contains("TreeSpawner")) {
-                        if (height > FEATURE_TREE_MAX_HEIGHT)
-                            continue;
-                    }
-
-                    if (rand.nextFloat() < entry.getValue()) {
-                        int ix = cx * SIZE + x;
-                        int iz = cz * SIZE + z;
-                        int iy = Math.round(height * 1000);
-                        long seed = FeatureUtil.hashSeed(ix, iy, iz, manager.getSeed());
-
-                        Feature f = entry.getKey().spawn(wx, wy, wz, seed);
-                        features.add(f);
-                        featureMask[x][z] = true;
-                        break;
-                    }
-                }
-            }
+        for (ChunkData.FeaturePlacement placement : placements) {
+            features.add(placement.spawn());
         }
         buildGrassBatch();
+        invalidateFootprint();
     }
 
-    private float averageSurroundingSlope(int centerX, int centerZ, int radius) {
-        int count = 0;
-        float totalSlope = 0;
-
-        for (int dx = -radius; dx <= radius; dx++) {
-            for (int dz = -radius; dz <= radius; dz++) {
-                int x = centerX + dx;
-                int z = centerZ + dz;
-
-                if (x >= 0 && z >= 0 && x < SIZE && z < SIZE) {
-                    totalSlope += computeSlope(x, z);
-                    count++;
-                }
-            }
-        }
-
-        return (count > 0) ? totalSlope / count : 1f; // 1f is max slope fallback
-    }
-
-    private float computeSlope(int x, int z) {
-        int x0 = Math.max(0, x - 1);
-        int x1 = Math.min(SIZE, x + 1);
-        int z0 = Math.max(0, z - 1);
-        int z1 = Math.min(SIZE, z + 1);
-
-        float hL = heights[x0][z];
-        float hR = heights[x1][z];
-        float hD = heights[x][z0];
-        float hU = heights[x][z1];
-
-        float dx = (hR - hL) * 0.5f;
-        float dz = (hU - hD) * 0.5f;
-        return (float) Math.sqrt(dx * dx + dz * dz);
-    }
-
-    private int pickTexture(float height, float slope) {
-        Random rand = new Random((int)(height * 1000 + slope * 1000));
-
-
-        // --- Absolute bottom zone ---
-        if (height <= ABSOLUTE_WATER_BOTTOM_HEIGHT) {
-            return manager.getWaterBottomAbsTexture();
-        }
-        // --- Water surrounding zone ---
-        else if (height <= WATER_SURROUNDING_LEVEL) {
-            return manager.getWaterBottomTexture();
-        }
-
-        // --- Snow zone ---
-        if (height >= SNOW_HEIGHT_START) {
-            float snowChance = (height - SNOW_HEIGHT_START) / (SNOW_HEIGHT_FULL - SNOW_HEIGHT_START);
-            snowChance = Math.min(Math.max(snowChance, 0f), 1f);
-
-            if (rand.nextFloat() < snowChance) {
-                return manager.getSnowTexture();
-            }
-        }
-
-        // --- Slope-based textures ---
-        if (slope > ROCK_SLOPE_START) {
-            return manager.getTexture(biome.rockTex);
-        }
-        if (slope > DIRT_SLOPE_START) {
-            return manager.getTexture(biome.dirtTex);
-        }
-
-        return manager.getTexture(biome.grassTex);
-    }
-
-
-
     public float getHeight(float wx, float wz) {
         float lx = wx / scale - cx * SIZE;
         float lz = wz / scale - cz * SIZE;
@@ -596,11 +393,16 @@ public class Chunk {
         if (ix < 0 || iz < 0 || ix >= SIZE || iz >= SIZE)
             return 0f;
 
-        float fx = lx - ix, fz = lz - iz;
-        float h00 = heights[ix][iz];
-        float h10 = heights[ix + 1][iz];
-        float h01 = heights[ix][iz + 1];
-        float h11 = heights[ix + 1][iz + 1];
+        // Interpolate within the lattice cell, which is a single vertex cell at LOD 0
+        int[] lattice = lattice(lod);
+        int i = latticeCell(lod, ix), j = latticeCell(lod, iz);
+        int x0 = lattice[i], x1 = lattice[i + 1];
+        int z0 = lattice[j], z1 = lattice[j + 1];
+        float fx = (lx - x0) / (x1 - x0), fz = (lz - z0) / (z1 - z0);
+        float h00 = heights[x0 + APRON][z0 + APRON];
+        float h10 = heights[x1 + APRON][z0 + APRON];
+        float h01 = heights[x0 + APRON][z1 + APRON];
+        float h11 = heights[x1 + APRON][z1 + APRON];
 
         float a = h00 + (h10 - h00) * fx;
         float b = h01 + (h11 - h01) * fx;
@@ -608,35 +410,53 @@ public class Chunk {
     }
 
     public BoundingBox getBoundingBox() {
-        float minX = cx * SIZE * scale;
-        float minZ = cz * SIZE * scale;
-        float maxX = (cx + 1) * SIZE * scale;
-        float maxZ = (cz + 1) * SIZE * scale;
-        float minY = Float.MAX_VALUE;
-        float maxY = Float.MIN_VALUE;
-
-        for (int x = 0; x <= SIZE; x++) {
-            for (int z = 0; z <= SIZE; z++) {
-                float h = heights[x][z];
-                minY = Math.min(minY, h);
-                maxY = Math.max(maxY, h);
+        return bounds;
+    }
+
+    /** Rough heap footprint: heights, placements, instantiated features and any heightmap still waiting for upload. */
+    long estimateHeapBytes() {
+        if (heapBytes < 0) {
+            long bytes = (long) HEIGHTS_SIDE * (HEIGHTS_SIDE * Float.BYTES + ARRAY_OVERHEAD_BYTES);
+            bytes += (long) placements.size() * PLACEMENT_BYTES;
+            bytes += (long) features.size() * FEATURE_BYTES;
+            ChunkData data = pendingUpload;
+            if (data != null) {
+                bytes += data.terrain.texels().capacity();
+                bytes += (long) data.waterQuads.length * Float.BYTES;
             }
+            heapBytes = bytes;
+        }
+        return heapBytes;
+    }
+
+    /** Size of the arena ranges this chunk owns on the GPU. */
+    long estimateGpuBytes() {
+        if (gpuBytes < 0) {
+            int texels = terrain != null ? TerrainMesher.texelCount(terrain.lod) : 0;
+            gpuBytes = gpuBytes(texels, grassBatchInstanceCount, waterVertexCount);
         }
+        return gpuBytes;
+    }
 
-        return new BoundingBox(minX, minY, minZ, maxX, maxY, maxZ);
+    /** Arena bytes taken by the given numbers of terrain texels, grass instances and water vertices. */
+    static long gpuBytes(int terrainTexels, int grassInstances, int waterVertices) {
+        return (long) terrainTexels * TerrainMesher.TEXEL_BYTES
+                + (long) grassInstances * Grass.INSTANCE_STRIDE_BYTES
+                + (long) waterVertices * ChunkBuffers.WATER_STRIDE_BYTES;
+    }
+
+    private void invalidateFootprint() {
+        heapBytes = -1;
+        gpuBytes = -1;
     }
 
     public void dispose() {
         for (Feature f : features) {
             f.dispose(); // let each feature release OpenGL textures/resources
         }
-        disposeTerrainBuffers();
-        disposeWaterDisplayList();
+        disposeTerrainRange();
+        disposeWaterRange();
         disposeGrassBatch();
-    }
-
-    public OpenSimplexNoise getTerrainNoise() {
-        return terrainNoise;
     }
 
     public float getScale() {
@@ -647,90 +467,76 @@ public class Chunk {
         return lod;
     }
 
-    private void disposeTerrainBuffers() {
-        for (TerrainBatch batch : terrainBatches) {
-            glDeleteBuffers(batch.vboId);
-        }
-        terrainBatches.clear();
+    // Neither is written after construction or applyLod(), so workers may read them
+    float[][] getHeights() {
+        return heights;
     }
 
-    private void disposeWaterDisplayList() {
-        if (waterDisplayList != -1) {
-            glDeleteLists(waterDisplayList, 1);
-            waterDisplayList = -1;
-        }
+    List<Feature> getLakes() {
+        return lakes;
     }
 
-    private void disposeGrassBatch() {
-        if (grassBatchVbo != -1) {
-            glDeleteBuffers(grassBatchVbo);
-            grassBatchVbo = -1;
+    private void disposeTerrainRange() {
+        if (terrain != null) {
+            buffers.terrainTexels.free(terrain.texelOffset);
+            terrain = null;
         }
-        grassBatchVertexCount = 0;
-        grassBatchTexture = 0;
     }
 
-    private float[] computeNormal(int x1, int z1, int x2, int z2, int x3, int z3) {
-        float[] p1 = { (cx * SIZE + x1) * scale, heights[x1][z1], (cz * SIZE + z1) * scale };
-        float[] p2 = { (cx * SIZE + x2) * scale, heights[x2][z2], (cz * SIZE + z2) * scale };
-        float[] p3 = { (cx * SIZE + x3) * scale, heights[x3][z3], (cz * SIZE + z3) * scale };
-
-        float[] u = { p2[0] - p1[0], p2[1] - p1[1], p2[2] - p1[2] };
-        float[] v = { p3[0] - p1[0], p3[1] - p1[1], p3[2] - p1[2] };
-
-        float nx = u[1] * v[2] - u[2] * v[1];
-        float ny = u[2] * v[0] - u[0] * v[2];
-        float nz = u[0] * v[1] - u[1] * v[0];
-
-        float len = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
-        if (len == 0f) {
-            return new float[] { 0f, 1f, 0f };
+    private void disposeWaterRange() {
+        if (waterVertexOffset != -1) {
+            buffers.waterVertices.free(waterVertexOffset);
+            waterVertexOffset = -1;
         }
-        return new float[] { nx / len, ny / len, nz / len };
+        waterVertexCount = 0;
     }
 
-    private static final int STRIDE_FLOATS = 8;
-
-    private static final class TerrainBatch {
-        private final int textureId;
-        private final int vboId;
-        private final int vertexCount;
-
-        private TerrainBatch(int textureId, int vboId, int vertexCount) {
-            this.textureId = textureId;
-            this.vboId = vboId;
-            this.vertexCount = vertexCount;
+    private void disposeGrassBatch() {
+        if (grassBatchOffset != -1) {
+            buffers.grassInstances.free(grassBatchOffset);
+            grassBatchOffset = -1;
         }
+        clearGrassBatch();
     }
 
-    private static final class FloatBuilder {
-        private float[] data = new float[8192];
-        private int size = 0;
+    private void clearGrassBatch() {
+        grassBatchInstanceCount = 0;
+        grassBatchLooks.clear();
+    }
 
-        private void putVertex(float x, float y, float z, float[] normal, float u, float v) {
-            ensureCapacity(STRIDE_FLOATS);
-            data[size++] = x;
-            data[size++] = y;
-            data[size++] = z;
-            data[size++] = normal[0];
-            data[size++] = normal[1];
-            data[size++] = normal[2];
-            data[size++] = u;
-            data[size++] = v;
-        }
-
-        private void ensureCapacity(int floats) {
-            int needed = size + floats;
-            if (needed > data.length) {
-                int newSize = Math.max(needed, data.length * 2);
-                data = Arrays.copyOf(data, newSize);
-            }
+    private static final int ARRAY_OVERHEAD_BYTES = 16;
+    private static final int PLACEMENT_BYTES = 48;
+    private static final int FEATURE_BYTES = 96;
+
+    /**
+     * Grass drawn with one texture, or untextured when it is -1, and one colour, which
+     * multiplies the texture. Its instances follow each other by variant.
+     */
+    static final class GrassLook {
+        final int texture;
+        final float[] color;
+        final int[] variantCounts = new int[Grass.VARIANTS];
+
+        private GrassLook(int texture, float[] color) {
+            this.texture = texture;
+            this.color = color;
         }
+    }
 
-        private java.nio.FloatBuffer toBuffer() {
-            java.nio.FloatBuffer buffer = org.lwjgl.BufferUtils.createFloatBuffer(size);
-            buffer.put(data, 0, size).flip();
-            return buffer;
+    /** The chunk's heightmap texels, drawn as one instance of its LOD's grid. */
+    static final class TerrainRange {
+        final int texelOffset;
+        final int lod;
+        final int grassLayer;
+        final int dirtLayer;
+        final int rockLayer;
+
+        private TerrainRange(int texelOffset, int lod, ChunkData.Heightmap heightmap) {
+            this.texelOffset = texelOffset;
+            this.lod = lod;
+            this.grassLayer = heightmap.grassLayer();
+            this.dirtLayer = heightmap.dirtLayer();
+            this.rockLayer = heightmap.rockLayer();
         }
     }
 }
@@ -0,0 +1,346 @@
+package game;
+
+import objects.Grass;
+import org.lwjgl.BufferUtils;
+import renderers.ShadowRenderer;
+import util.BufferArena;
+import util.UploadRing;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL13.*;
+import static org.lwjgl.opengl.GL14.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.opengl.GL33.*;
+
+/**
+ * The arenas every chunk's GPU data lives in, one per format, so streaming chunks in
+ * and out allocates and frees ranges rather than buffer objects. Contents are staged
+ * through one {@link UploadRing}. GL thread only.
+ *
+ * <p>Terrain is a heightmap per chunk (see {@link TerrainMesher}) in an arena read by
+ * the terrain shaders as a buffer texture, over one static grid per LOD. The visible
+ * chunks at each LOD are one instanced draw of its grid, each instance naming its
+ * chunk, heightmap and layers. Grass is instanced from a few shared tufts, one draw
+ * per chunk and variant. Water of all visible chunks is one multi-draw.
+ */
+final class ChunkBuffers {
+    // Position of each corner of a water quad
+    static final int WATER_STRIDE_BYTES = 3 * Float.BYTES;
+    // Per terrain instance: first texel, chunk x and z as ints, then grass, dirt and rock layers as bytes
+    static final int INSTANCE_STRIDE_BYTES = 16;
+    static final int INSTANCE_LAYERS_OFFSET_BYTES = 12;
+
+    final BufferArena terrainTexels = new BufferArena("terrain heightmaps", TerrainMesher.TEXEL_BYTES, 1 << 17);
+    final BufferArena grassInstances = new BufferArena("grass", Grass.INSTANCE_STRIDE_BYTES, 1 << 14);
+    final BufferArena waterVertices = new BufferArena("water", WATER_STRIDE_BYTES, 1 << 12);
+    // A frame's uploads are bounded by the GL work budget; a few chunks fit easily
+    private final UploadRing uploads = new UploadRing(1 << 20);
+
+    // Range reserved by the last stage() and waiting for commit()
+    private BufferArena stagedArena;
+    private int stagedOffset;
+
+    // Integer RGBA16 view of terrainTexels, re-attached when the arena grows into a new buffer
+    private final int heightmapTexture = glGenTextures();
+    private int heightmapBuffer = 0;
+
+    // Every LOD's grid in one vertex and one index buffer, by LOD
+    private final int gridVertices = glGenBuffers();
+    private final int gridIndices = glGenBuffers();
+    private final int[] gridBaseVertex = new int[Chunk.MAX_LOD + 1];
+    private final int[] gridFirstIndex = new int[Chunk.MAX_LOD + 1];
+    private final int[] gridIndexCount = new int[Chunk.MAX_LOD + 1];
+
+    // Every grass variant's tuft, one after the other
+    private final int grassTufts = glGenBuffers();
+
+    // Terrain instances, written each draw and grouped by LOD
+    private final int instanceBuffer = glGenBuffers();
+    private ByteBuffer instances = BufferUtils.createByteBuffer(256 * INSTANCE_STRIDE_BYTES);
+    private final int[] lodInstanceCount = new int[Chunk.MAX_LOD + 1];
+
+    // Water multi-draw arguments, reused from frame to frame
+    private IntBuffer counts = BufferUtils.createIntBuffer(256);
+    private IntBuffer firsts = BufferUtils.createIntBuffer(256);
+
+    ChunkBuffers() {
+        TerrainMesher.Grid[] grids = new TerrainMesher.Grid[Chunk.MAX_LOD + 1];
+        int vertexCount = 0, indexCount = 0;
+        for (int lod = 0; lod <= Chunk.MAX_LOD; lod++) {
+            grids[lod] = TerrainMesher.grid(lod);
+            gridBaseVertex[lod] = vertexCount;
+            gridFirstIndex[lod] = indexCount;
+            gridIndexCount[lod] = grids[lod].indices().length;
+            vertexCount += grids[lod].vertexCount();
+            indexCount += gridIndexCount[lod];
+        }
+        ByteBuffer vertices = BufferUtils.createByteBuffer(vertexCount * TerrainMesher.GRID_STRIDE_BYTES);
+        ShortBuffer indices = BufferUtils.createShortBuffer(indexCount);
+        for (TerrainMesher.Grid grid : grids) {
+            vertices.put(grid.vertices().duplicate());
+            indices.put(grid.indices());
+        }
+        glBindBuffer(GL_ARRAY_BUFFER, gridVertices);
+        glBufferData(GL_ARRAY_BUFFER, vertices.flip(), GL_STATIC_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, gridIndices);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices.flip(), GL_STATIC_DRAW);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+
+        ByteBuffer tufts = Grass.buildTufts();
+        glBindBuffer(GL_ARRAY_BUFFER, grassTufts);
+        glBufferData(GL_ARRAY_BUFFER, BufferUtils.createByteBuffer(tufts.remaining()).put(tufts).flip(), GL_STATIC_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Reserves a range of the arena for the given number of bytes and returns staging
+     * memory for its contents, in native byte order; {@link #commit()} sends them.
+     */
+    ByteBuffer stage(BufferArena arena, int bytes) {
+        stagedArena = arena;
+        stagedOffset = arena.allocate(bytes);
+        return uploads.stage(bytes);
+    }
+
+    /** Copies the staged contents into place and returns the range's offset in units of its arena. */
+    int commit() {
+        uploads.commit(stagedArena.getBufferId(), stagedArena.byteOffset(stagedOffset));
+        stagedArena = null;
+        return stagedOffset;
+    }
+
+    /** Fences this frame's uploads; call once per frame after the GL work has run. */
+    void endFrame() {
+        uploads.endFrame();
+    }
+
+    /**
+     * Draws the terrain of the given chunks, one instanced draw per LOD in use. The
+     * terrain shader, or the terrain depth shader when {@code depthOnly}, must already
+     * be bound; its heightmap sampler reads {@link ShadowRenderer#TERRAIN_HEIGHTMAP_UNIT}.
+     */
+    void drawTerrain(List<Chunk> chunks, boolean depthOnly) {
+        if (!writeInstances(chunks))
+            return;
+
+        glBindBuffer(GL_ARRAY_BUFFER, instanceBuffer);
+        glBufferData(GL_ARRAY_BUFFER, instances, GL_STREAM_DRAW);
+        bindHeightmaps();
+
+        int stride = TerrainMesher.GRID_STRIDE_BYTES;
+        glBindBuffer(GL_ARRAY_BUFFER, gridVertices);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, gridIndices);
+        glEnableClientState(GL_VERTEX_ARRAY);
+        glVertexPointer(2, GL_SHORT, stride, 0);
+        glEnableVertexAttribArray(ShadowRenderer.TERRAIN_TEXELS_ATTRIB);
+        glVertexAttribIPointer(ShadowRenderer.TERRAIN_TEXELS_ATTRIB, 2, GL_UNSIGNED_SHORT, stride,
+                TerrainMesher.GRID_TEXELS_OFFSET_BYTES);
+
+        glBindBuffer(GL_ARRAY_BUFFER, instanceBuffer);
+        glEnableVertexAttribArray(ShadowRenderer.TERRAIN_CHUNK_ATTRIB);
+        glVertexAttribDivisor(ShadowRenderer.TERRAIN_CHUNK_ATTRIB, 1);
+        if (!depthOnly) {
+            glEnableVertexAttribArray(ShadowRenderer.TERRAIN_LAYERS_ATTRIB);
+            glVertexAttribDivisor(ShadowRenderer.TERRAIN_LAYERS_ATTRIB, 1);
+        }
+
+        long first = 0;
+        for (int lod = 0; lod <= Chunk.MAX_LOD; lod++) {
+            int count = lodInstanceCount[lod];
+            if (count == 0)
+                continue;
+            // Instances of this LOD follow those of the finer ones
+            long offset = first * INSTANCE_STRIDE_BYTES;
+            glVertexAttribIPointer(ShadowRenderer.TERRAIN_CHUNK_ATTRIB, 3, GL_INT, INSTANCE_STRIDE_BYTES, offset);
+            if (!depthOnly) {
+                glVertexAttribPointer(ShadowRenderer.TERRAIN_LAYERS_ATTRIB, 3, GL_UNSIGNED_BYTE, false,
+                        INSTANCE_STRIDE_BYTES, offset + INSTANCE_LAYERS_OFFSET_BYTES);
+            }
+            glDrawElementsInstancedBaseVertex(GL_TRIANGLES, gridIndexCount[lod], GL_UNSIGNED_SHORT,
+                    (long) gridFirstIndex[lod] * Short.BYTES, count, gridBaseVertex[lod]);
+            first += count;
+        }
+
+        if (!depthOnly) {
+            glVertexAttribDivisor(ShadowRenderer.TERRAIN_LAYERS_ATTRIB, 0);
+            glDisableVertexAttribArray(ShadowRenderer.TERRAIN_LAYERS_ATTRIB);
+        }
+        glVertexAttribDivisor(ShadowRenderer.TERRAIN_CHUNK_ATTRIB, 0);
+        glDisableVertexAttribArray(ShadowRenderer.TERRAIN_CHUNK_ATTRIB);
+        glDisableVertexAttribArray(ShadowRenderer.TERRAIN_TEXELS_ATTRIB);
+        glDisableClientState(GL_VERTEX_ARRAY);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glActiveTexture(GL_TEXTURE0 + ShadowRenderer.TERRAIN_HEIGHTMAP_UNIT);
+        glBindTexture(GL_TEXTURE_BUFFER, 0);
+        glActiveTexture(GL_TEXTURE0);
+    }
+
+    /**
+     * Draws the grass of the given chunks, each variant of each look of a chunk's tufts
+     * one instanced draw, in the chunk's frame. The grass shader, or the grass depth shader when
+     * {@code depthOnly}, must already be bound.
+     */
+    void drawGrass(List<Chunk> chunks, boolean depthOnly) {
+        glBindBuffer(GL_ARRAY_BUFFER, grassTufts);
+        glEnableClientState(GL_VERTEX_ARRAY);
+        glVertexPointer(3, GL_FLOAT, Grass.TUFT_STRIDE_BYTES, 0);
+        if (!depthOnly) {
+            glEnableClientState(GL_TEXTURE_COORD_ARRAY);
+            glTexCoordPointer(2, GL_FLOAT, Grass.TUFT_STRIDE_BYTES, Grass.TUFT_TEXCOORD_OFFSET_BYTES);
+            glEnable(GL_TEXTURE_2D);
+            glEnable(GL_BLEND);
+            glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+            glEnable(GL_ALPHA_TEST);
+            glAlphaFunc(GL_GREATER, 0.3f);
+        }
+        glBindBuffer(GL_ARRAY_BUFFER, grassInstances.getBufferId());
+        glEnableVertexAttribArray(ShadowRenderer.GRASS_OFFSET_ATTRIB);
+        glEnableVertexAttribArray(ShadowRenderer.GRASS_SHAPE_ATTRIB);
+        glVertexAttribDivisor(ShadowRenderer.GRASS_OFFSET_ATTRIB, 1);
+        glVertexAttribDivisor(ShadowRenderer.GRASS_SHAPE_ATTRIB, 1);
+
+        for (Chunk c : chunks) {
+            if (c.getGrassOffset() == -1)
+                continue;
+            glPushMatrix();
+            glTranslatef(c.cx * Chunk.SIZE * c.getScale(), 0f, c.cz * Chunk.SIZE * c.getScale());
+            long first = c.getGrassOffset();
+            for (Chunk.GrassLook look : c.getGrassLooks()) {
+                if (!depthOnly) {
+                    // Untextured grass is drawn in its colour rather than with texture 0
+                    boolean textured = look.texture >= 0;
+                    if (textured)
+                        glBindTexture(GL_TEXTURE_2D, look.texture);
+                    ShadowRenderer.setGrassUseTexture(textured);
+                    glColor3f(look.color[0], look.color[1], look.color[2]);
+                }
+                for (int variant = 0; variant < Grass.VARIANTS; variant++) {
+                    int count = look.variantCounts[variant];
+                    if (count == 0)
+                        continue;
+                    long offset = first * Grass.INSTANCE_STRIDE_BYTES;
+                    glVertexAttribPointer(ShadowRenderer.GRASS_OFFSET_ATTRIB, 3, GL_FLOAT, false,
+                            Grass.INSTANCE_STRIDE_BYTES, offset);
+                    glVertexAttribPointer(ShadowRenderer.GRASS_SHAPE_ATTRIB, 2, GL_UNSIGNED_BYTE, false,
+                            Grass.INSTANCE_STRIDE_BYTES, offset + Grass.INSTANCE_SHAPE_OFFSET_BYTES);
+                    glDrawArraysInstanced(GL_QUADS, variant * Grass.TUFT_VERTICES, Grass.TUFT_VERTICES, count);
+                    first += count;
+                }
+            }
+            glPopMatrix();
+        }
+
+        glVertexAttribDivisor(ShadowRenderer.GRASS_SHAPE_ATTRIB, 0);
+        glVertexAttribDivisor(ShadowRenderer.GRASS_OFFSET_ATTRIB, 0);
+        glDisableVertexAttribArray(ShadowRenderer.GRASS_SHAPE_ATTRIB);
+        glDisableVertexAttribArray(ShadowRenderer.GRASS_OFFSET_ATTRIB);
+        if (!depthOnly) {
+            ShadowRenderer.setGrassUseTexture(true);
+            glColor3f(1f, 1f, 1f);
+            glDisable(GL_ALPHA_TEST);
+            glDisable(GL_BLEND);
+            glDisableClientState(GL_TEXTURE_COORD_ARRAY);
+        }
+        glDisableClientState(GL_VERTEX_ARRAY);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    /** Draws the water quads of the given chunks in one call, with the current colour and state. */
+    void drawWater(List<Chunk> chunks) {
+        reserve(chunks.size());
+        for (Chunk c : chunks) {
+            if (c.getWaterVertexCount() > 0) {
+                firsts.put(c.getWaterVertexOffset());
+                counts.put(c.getWaterVertexCount());
+            }
+        }
+        firsts.flip();
+        counts.flip();
+        if (!counts.hasRemaining())
+            return;
+
+        glNormal3f(0f, 1f, 0f);
+        glBindBuffer(GL_ARRAY_BUFFER, waterVertices.getBufferId());
+        glEnableClientState(GL_VERTEX_ARRAY);
+        glVertexPointer(3, GL_FLOAT, WATER_STRIDE_BYTES, 0);
+        glMultiDrawArrays(GL_QUADS, firsts, counts);
+        glDisableClientState(GL_VERTEX_ARRAY);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    /** One line of occupancy and fragmentation per arena, then the upload path. */
+    List<String> describe() {
+        return List.of(terrainTexels.toString(), grassInstances.toString(), waterVertices.toString(),
+                uploads.toString());
+    }
+
+    void dispose() {
+        terrainTexels.dispose();
+        glDeleteTextures(heightmapTexture);
+        glDeleteBuffers(gridVertices);
+        glDeleteBuffers(gridIndices);
+        glDeleteBuffers(grassTufts);
+        glDeleteBuffers(instanceBuffer);
+        grassInstances.dispose();
+        waterVertices.dispose();
+        uploads.dispose();
+    }
+
+    // Clears the argument buffers, growing them to hold one draw per chunk
+    private void reserve(int draws) {
+        if (counts.capacity() < draws) {
+            int capacity = Math.max(draws, counts.capacity() * 2);
+            counts = BufferUtils.createIntBuffer(capacity);
+            firsts = BufferUtils.createIntBuffer(capacity);
+        }
+        counts.clear();
+        firsts.clear();
+    }
+
+    // Fills the instance buffer with the chunks that have terrain, grouped by LOD; false if there are none
+    private boolean writeInstances(List<Chunk> chunks) {
+        int needed = chunks.size() * INSTANCE_STRIDE_BYTES;
+        if (instances.capacity() < needed)
+            instances = BufferUtils.createByteBuffer(Math.max(needed, instances.capacity() * 2));
+        instances.clear();
+        boolean any = false;
+        for (int lod = 0; lod <= Chunk.MAX_LOD; lod++) {
+            int count = 0;
+            for (Chunk c : chunks) {
+                Chunk.TerrainRange range = c.getTerrainRange();
+                if (range == null || range.lod != lod)
+                    continue;
+                instances.putInt(range.texelOffset).putInt(c.cx).putInt(c.cz);
+                instances.put((byte) range.grassLayer).put((byte) range.dirtLayer).put((byte) range.rockLayer)
+                        .put((byte) 0);
+                count++;
+            }
+            lodInstanceCount[lod] = count;
+            any |= count > 0;
+        }
+        instances.flip();
+        return any;
+    }
+
+    // Binds the heightmap arena's buffer texture, following the arena into a new buffer when it has grown
+    private void bindHeightmaps() {
+        glActiveTexture(GL_TEXTURE0 + ShadowRenderer.TERRAIN_HEIGHTMAP_UNIT);
+        glBindTexture(GL_TEXTURE_BUFFER, heightmapTexture);
+        if (heightmapBuffer != terrainTexels.getBufferId()) {
+            heightmapBuffer = terrainTexels.getBufferId();
+            glTexBuffer(GL_TEXTURE_BUFFER, GL_RGBA16I, heightmapBuffer);
+        }
+        glActiveTexture(GL_TEXTURE0);
+    }
+}
@@ -0,0 +1,63 @@
+package game;
+
+import objects.Feature;
+import spawners.FeatureSpawner;
+import util.BoundingBox;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * CPU-only result of generating a chunk. Built on a worker thread by
+ * {@link ChunkGenerator}; the GL thread turns it into a {@link Chunk} by
+ * uploading the packed heightmap and water.
+ */
+final class ChunkData {
+    final int cx, cz;
+    final Biome biome;
+    final int lod;
+
+    // Vertex (x, z) is at heights[x + Chunk.APRON][z + Chunk.APRON]
+    final float[][] heights;
+    final BoundingBox bounds;
+    final List<Feature> lakes;
+    final List<FeaturePlacement> placements;
+
+    final Heightmap terrain;
+    // x1, z1, x2, z2 per water quad (world space)
+    final float[] waterQuads;
+    final int waterQuadCount;
+
+    ChunkData(int cx, int cz, Biome biome, int lod, float[][] heights, BoundingBox bounds, List<Feature> lakes,
+              List<FeaturePlacement> placements, Heightmap terrain,
+              float[] waterQuads, int waterQuadCount) {
+        this.cx = cx;
+        this.cz = cz;
+        this.biome = biome;
+        this.lod = lod;
+        this.heights = heights;
+        this.bounds = bounds;
+        this.lakes = lakes;
+        this.placements = placements;
+        this.terrain = terrain;
+        this.waterQuads = waterQuads;
+        this.waterQuadCount = waterQuadCount;
+    }
+
+    /**
+     * A feature that was placed during generation but not yet instantiated.
+     * Features own GL resources, so they are only created on the GL thread.
+     */
+    record FeaturePlacement(FeatureSpawner spawner, float x, float y, float z, long seed) {
+        Feature spawn() {
+            return spawner.spawn(x, y, z, seed);
+        }
+    }
+
+    /**
+     * Terrain texels, one per lattice vertex and one per skirt (see {@link TerrainMesher}),
+     * and the texture array layers of the chunk's biome.
+     */
+    record Heightmap(ByteBuffer texels, int grassLayer, int dirtLayer, int rockLayer) {
+    }
+}
@@ -0,0 +1,354 @@
+package game;
+
+import generators.LakeGenerator;
+import objects.Feature;
+import spawners.FeatureSpawner;
+import spawners.SpawnTable;
+import util.BoundingBox;
+import util.HashRandom;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+
+import static game.Chunk.*;
+
+/**
+ * Produces {@link ChunkData} without touching OpenGL, so it can run on any thread.
+ * Everything read here (noise permutations, biome tables, texture ids) is immutable
+ * after {@link TerrainManager} construction.
+ */
+public class ChunkGenerator {
+    private static final int OCTAVES = 4;
+    private static final double PERSISTENCE = 0.35;
+    private static final double MACRO_FREQ = 0.002;
+    private static final double MACRO_AMP = 2.0; // Lower to reduce elevation distortion
+    // How far skirts hang below the lowest vertex on their edge
+    private static final float SKIRT_MARGIN = 4f;
+
+    private final long seed;
+    private final BiomeField biomeField;
+    private final BiomeBlender biomeBlender;
+    private final OpenSimplexNoise terrainNoise;
+    private final float scale;
+    private final TerrainMesher mesher;
+
+    public ChunkGenerator(TerrainManager manager, OpenSimplexNoise terrainNoise, float scale) {
+        this(manager.getSeed(), manager.getBiomeField(), manager.getBiomeBlender(),
+                new TerrainMaterials(manager::getTerrainLayer), terrainNoise, scale);
+    }
+
+    /** Takes what it reads from {@link TerrainManager} directly, so it can be built without GL. */
+    ChunkGenerator(long seed, BiomeField biomeField, BiomeBlender biomeBlender, TerrainMaterials materials,
+                   OpenSimplexNoise terrainNoise, float scale) {
+        this.seed = seed;
+        this.biomeField = biomeField;
+        this.biomeBlender = biomeBlender;
+        this.terrainNoise = terrainNoise;
+        this.scale = scale;
+        this.mesher = new TerrainMesher(materials, scale);
+    }
+
+    /**
+     * Depends only on the coordinates, biome and seed: shared edges come out identical
+     * whichever chunk is generated first, so any set of chunks can be built in parallel.
+     */
+    ChunkData generate(int cx, int cz, Biome biome, int lod) {
+        return generate(cx, cz, biome, lod, null, 0, List.of());
+    }
+
+    /**
+     * Generates the chunk at a LOD, sampling noise only at that LOD's {@link Chunk#lattice}
+     * vertices. {@code known} is the heights array of the same chunk at another LOD, and
+     * the vertices it holds are copied rather than sampled again; coarsening samples
+     * nothing at all. Lakes and features need every vertex, so they are only placed at
+     * LOD 0. A coarser LOD keeps {@code knownLakes}, since it keeps the heights they
+     * carved; for the same reason carved heights are not reused when refining.
+     */
+    ChunkData generate(int cx, int cz, Biome biome, int lod, float[][] known, int knownLod,
+                       List<Feature> knownLakes) {
+        boolean carved = !knownLakes.isEmpty();
+        if (carved && lod < knownLod)
+            known = null;
+        float[][] heights = generateHeights(cx, cz, lod, known, knownLod);
+        checkCancelled();
+
+        // Kept current by LakeGenerator as it carves, so later stages see the final terrain
+        SlopeField slopes = new SlopeField(heights, lod);
+        List<Feature> lakes = new ArrayList<>();
+        List<ChunkData.FeaturePlacement> placements = new ArrayList<>();
+        if (lod == 0) {
+            boolean[][] featureMask = new boolean[SIZE][SIZE];
+            LakeGenerator.generateLakes(cx, cz, scale, biome, heights, slopes, featureMask, lakes, seed);
+            checkCancelled();
+            placements = placeFeatures(cx, cz, biome, heights, slopes, featureMask);
+        } else if (carved && known != null) {
+            lakes.addAll(knownLakes);
+        }
+
+        BoundingBox bounds = computeBounds(cx, cz, lod, heights);
+        ChunkData.Heightmap terrain = mesher.build(biome, lod, heights, slopes, skirtBottoms(heights));
+
+        float[] water = new float[16 * 4];
+        int waterCount = 0;
+        int[] lattice = lattice(lod);
+        int last = lattice.length - APRON - 1;
+        for (int j = APRON; j < last; j++) {
+            for (int i = APRON; i < last; i++) {
+                int x = lattice[i], z = lattice[j];
+                int x2 = lattice[i + 1], z2 = lattice[j + 1];
+                boolean needsWater = heights[x + APRON][z + APRON] < WATER_LEVEL
+                        || heights[x2 + APRON][z + APRON] < WATER_LEVEL
+                        || heights[x + APRON][z2 + APRON] < WATER_LEVEL
+                        || heights[x2 + APRON][z2 + APRON] < WATER_LEVEL;
+                if (!needsWater)
+                    continue;
+
+                if ((waterCount + 1) * 4 > water.length)
+                    water = Arrays.copyOf(water, water.length * 2);
+                int o = waterCount++ * 4;
+                water[o] = (cx * SIZE + x) * scale;
+                water[o + 1] = (cz * SIZE + z) * scale;
+                water[o + 2] = (cx * SIZE + x2) * scale;
+                water[o + 3] = (cz * SIZE + z2) * scale;
+            }
+        }
+
+        return new ChunkData(cx, cz, biome, lod, heights, bounds, lakes, placements, terrain, water, waterCount);
+    }
+
+    /**
+     * Per edge (north, south, west, east), how far down that edge's skirt hangs: below
+     * every vertex on the edge. Neighbours at any LOD meet this edge along lines through
+     * some of those vertices, so the skirts from both sides close every crack.
+     */
+    static float[] skirtBottoms(float[][] heights) {
+        float[] bottoms = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+        for (int v = APRON; v <= SIZE + APRON; v++) {
+            bottoms[0] = Math.min(bottoms[0], heights[v][APRON]);
+            bottoms[1] = Math.min(bottoms[1], heights[v][SIZE + APRON]);
+            bottoms[2] = Math.min(bottoms[2], heights[APRON][v]);
+            bottoms[3] = Math.min(bottoms[3], heights[SIZE + APRON][v]);
+        }
+        for (int i = 0; i < bottoms.length; i++) {
+            bottoms[i] -= SKIRT_MARGIN;
+        }
+        return bottoms;
+    }
+
+    private BoundingBox computeBounds(int cx, int cz, int lod, float[][] heights) {
+        float minY = Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        int[] lattice = lattice(lod);
+        for (int i = APRON; i < lattice.length - APRON; i++) {
+            for (int j = APRON; j < lattice.length - APRON; j++) {
+                float h = heights[lattice[i] + APRON][lattice[j] + APRON];
+                minY = Math.min(minY, h);
+                maxY = Math.max(maxY, h);
+            }
+        }
+        return new BoundingBox(cx * SIZE * scale, minY, cz * SIZE * scale,
+                (cx + 1) * SIZE * scale, maxY, (cz + 1) * SIZE * scale);
+    }
+
+    /**
+     * Worker jobs are cancelled by interrupting their thread; bail out between stages.
+     */
+    private static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted())
+            throw new CancellationException();
+    }
+
+    /**
+     * Raw blended noise heightfield before lake carving, including the apron, at the
+     * vertices of the LOD's lattice and every vertex on the chunk's edges; other entries
+     * stay zero. Vertices that {@code known} holds (its lattice and edges) are copied
+     * rather than sampled. Biome weights come from the {@link BiomeBlender} table, and
+     * each biome's octave stack is only evaluated at the vertices where that biome has a
+     * non-zero weight.
+     */
+    float[][] generateHeights(int cx, int cz, int lod, float[][] known, int knownLod) {
+        float[][] heights = new float[HEIGHTS_SIDE][HEIGHTS_SIDE];
+        int[] lattice = lattice(lod);
+        boolean[] onLattice = new boolean[HEIGHTS_SIDE];
+        for (int v : lattice)
+            onLattice[v + APRON] = true;
+        boolean[] onKnown = new boolean[HEIGHTS_SIDE];
+        if (known != null) {
+            for (int v : lattice(knownLod))
+                onKnown[v + APRON] = true;
+        }
+
+        // Array index of every vertex wanted, x-major like heights[x][z]. The edges are
+        // sampled in full so skirts can reach below whatever LOD the neighbours use.
+        int side = lattice.length;
+        int[] ax = new int[side * side + 4 * (SIZE + 1)];
+        int[] az = new int[ax.length];
+        int wanted = 0;
+        for (int x : lattice) {
+            for (int z : lattice) {
+                ax[wanted] = x + APRON;
+                az[wanted++] = z + APRON;
+            }
+        }
+        for (int v = 0; v <= SIZE; v++) {
+            if (onLattice[v + APRON])
+                continue;
+            int a = v + APRON;
+            ax[wanted] = a;
+            az[wanted++] = APRON;
+            ax[wanted] = a;
+            az[wanted++] = SIZE + APRON;
+            ax[wanted] = APRON;
+            az[wanted++] = a;
+            ax[wanted] = SIZE + APRON;
+            az[wanted++] = a;
+        }
+
+        // Copy what is known, and compact the rest into the vertices to sample
+        double[] px = new double[wanted];
+        double[] pz = new double[wanted];
+        int count = 0;
+        for (int i = 0; i < wanted; i++) {
+            int x = ax[i], z = az[i];
+            boolean edge = x == APRON || z == APRON || x == SIZE + APRON || z == SIZE + APRON;
+            if (known != null && ((onKnown[x] && onKnown[z]) || edge)) {
+                heights[x][z] = known[x][z];
+                continue;
+            }
+            ax[count] = x;
+            az[count] = z;
+            px[count] = (cx * SIZE + x - APRON) * scale;
+            pz[count] = (cz * SIZE + z - APRON) * scale;
+            count++;
+        }
+        if (count == 0)
+            return heights;
+
+        int biomeCount = BiomeBlender.biomeCount();
+        Biome[] biomes = Biome.values();
+
+        double[] biomeValue = new double[count];
+        biomeField.sample(px, pz, count, biomeValue);
+
+        // Per biome: the vertices it touches and its weight at each of them
+        int[][] vertices = new int[biomeCount][count];
+        float[][] weights = new float[biomeCount][count];
+        int[] touched = new int[biomeCount];
+        int[] ordinals = new int[biomeCount];
+        float[] blend = new float[biomeCount];
+        for (int i = 0; i < count; i++) {
+            int active = biomeBlender.blend(biomeValue[i], ordinals, blend);
+            for (int k = 0; k < active; k++) {
+                int b = ordinals[k];
+                vertices[b][touched[b]] = i;
+                weights[b][touched[b]] = blend[k];
+                touched[b]++;
+            }
+        }
+
+        // Biome independent, so evaluated once rather than per biome
+        double[] macro = new double[count];
+        double[] zero = { 0.0 };
+        terrainNoise.evalFractalPoints(px, pz, count, new double[] { MACRO_FREQ }, new double[] { 1.0 },
+                zero, zero, null, macro);
+
+        double[] blended = new double[count];
+        double[] bx = new double[count];
+        double[] bz = new double[count];
+        double[] sum = new double[count];
+        double[] freq = new double[OCTAVES];
+        double[] amp = new double[OCTAVES];
+        double[] offsetX = new double[OCTAVES];
+        double[] offsetZ = new double[OCTAVES];
+        for (int o = 0; o < OCTAVES; o++) {
+            offsetX[o] = o * 100.0;
+            offsetZ[o] = -(o * 100.0);
+        }
+
+        // Biomes in ordinal order, so each vertex sums its biomes in the same order as before
+        for (Biome biome : biomes) {
+            int b = biome.ordinal();
+            int m = touched[b];
+            if (m == 0)
+                continue;
+
+            double f = biome.frequency;
+            double a = biome.amplitude * 0.5; // Reduce noise contribution
+            for (int o = 0; o < OCTAVES; o++) {
+                freq[o] = f;
+                amp[o] = a;
+                f *= 1.7;
+                a *= PERSISTENCE;
+            }
+
+            int[] idx = vertices[b];
+            for (int k = 0; k < m; k++) {
+                bx[k] = px[idx[k]];
+                bz[k] = pz[idx[k]];
+            }
+            terrainNoise.evalFractalPoints(bx, bz, m, freq, amp, offsetX, offsetZ,
+                    ChunkGenerator::shapeOctave, sum);
+
+            float[] w = weights[b];
+            for (int k = 0; k < m; k++) {
+                int i = idx[k];
+                // Biome shaping: baseHeight is now the dominant vertical shift
+                double biomeHeight = biome.baseHeight + sum[k] + macro[i] * MACRO_AMP;
+                blended[i] += biomeHeight * w[k];
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            heights[ax[i]][az[i]] = (float) blended[i];
+        }
+        return heights;
+    }
+
+    private static double shapeOctave(double val) {
+        return (val * val * val) * 1.2;
+    }
+
+    private List<ChunkData.FeaturePlacement> placeFeatures(int cx, int cz, Biome biome, float[][] heights,
+                                                           SlopeField slopes, boolean[][] featureMask) {
+        List<ChunkData.FeaturePlacement> placements = new ArrayList<>();
+        SpawnTable table = biome.spawnTable;
+        if (table.isEmpty())
+            return placements;
+
+        for (int x = 0; x < SIZE; x++) {
+            for (int z = 0; z < SIZE; z++) {
+                if (featureMask[x][z])
+                    continue;
+
+                float height = heights[x + APRON][z + APRON];
+                float slope = slopes.at(x, z);
+
+                if (height < FEATURE_MIN_HEIGHT || height > FEATURE_MAX_HEIGHT)
+                    continue;
+
+                if (height > FEATURE_MAX_HEIGHT || slope > FEATURE_SLOPE_SPAWN_THRESHOLD)
+                    continue;
+
+                float wx = (cx * SIZE + x + 0.5f) * scale;
+                float wz = (cz * SIZE + z + 0.5f) * scale;
+
+                // --- Adjust feature height DOWNWARD based on slope ---
+                float slopeAdjustment = slope * 2.0f; // You can tweak 2.0f to make it stronger/weaker
+                float wy = height - slopeAdjustment;
+
+                int ix = cx * SIZE + x;
+                int iz = cz * SIZE + z;
+                long cellKey = HashRandom.key(this.seed, ix, iz, HashRandom.STREAM_PLACEMENT);
+                FeatureSpawner spawner = table.pick(HashRandom.nextFloat(cellKey, 0), height <= FEATURE_TREE_MAX_HEIGHT);
+                if (spawner == null)
+                    continue;
+
+                long seed = HashRandom.key(this.seed, ix, iz, HashRandom.STREAM_FEATURE);
+
+                placements.add(new ChunkData.FeaturePlacement(spawner, wx, wy, wz, seed));
+                featureMask[x][z] = true;
+            }
+        }
+        return placements;
+    }
+}
@@ -0,0 +1,128 @@
+package game;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Chunks waiting to be handed to the worker pool, best first. Requests are keyed by
+ * chunk so re-offering a chunk only updates its priority. On every rescan the caller
+ * re-offers everything it still wants; {@link #dropStale()} then removes the rest.
+ */
+public class ChunkRequestQueue {
+    // How much a chunk directly behind the camera is pushed back, in chunks of distance
+    private static final float ANGLE_WEIGHT = 4f;
+    private static final float LOD_WEIGHT = 0.5f;
+
+    private final PriorityQueue<ChunkRequest> heap = new PriorityQueue<>();
+    private final Map<Long, ChunkRequest> byKey = new HashMap<>();
+    private int frame = 0;
+    private long sequence = 0;
+
+    /**
+     * Priority of a chunk: Chebyshev distance from the player's chunk, plus a penalty
+     * that grows with the angle between the view direction and the chunk, plus a small
+     * LOD term. Lower is more urgent.
+     */
+    public static float priority(int cx, int cz, float wx, float wz, float viewX, float viewZ,
+                                 int pcx, int pcz, float chunkWorldSize, int lod) {
+        int dist = Math.max(Math.abs(cx - pcx), Math.abs(cz - pcz));
+        if (dist == 0)
+            return 0f;
+
+        float dx = (cx + 0.5f) * chunkWorldSize - wx;
+        float dz = (cz + 0.5f) * chunkWorldSize - wz;
+        float len = (float) Math.sqrt(dx * dx + dz * dz);
+        float viewLen = (float) Math.sqrt(viewX * viewX + viewZ * viewZ);
+        float angle = 0f;
+        if (len > 0f && viewLen > 0f) {
+            float cos = (dx * viewX + dz * viewZ) / (len * viewLen);
+            angle = (float) Math.acos(Math.max(-1f, Math.min(1f, cos)));
+        }
+        return dist + ANGLE_WEIGHT * (angle / (float) Math.PI) + LOD_WEIGHT * lod;
+    }
+
+    public void beginFrame() {
+        frame++;
+    }
+
+    public void offer(long key, int cx, int cz, int lod, float priority) {
+        ChunkRequest existing = byKey.get(key);
+        if (existing != null) {
+            existing.frame = frame;
+            if (existing.lod == lod && existing.priority == priority)
+                return;
+            heap.remove(existing);
+            existing.lod = lod;
+            existing.priority = priority;
+            heap.add(existing);
+            return;
+        }
+
+        ChunkRequest request = new ChunkRequest(key, cx, cz, lod, priority, sequence++);
+        request.frame = frame;
+        byKey.put(key, request);
+        heap.add(request);
+    }
+
+    public boolean contains(long key) {
+        return byKey.containsKey(key);
+    }
+
+    public ChunkRequest poll() {
+        ChunkRequest request = heap.poll();
+        if (request != null) {
+            byKey.remove(request.key);
+        }
+        return request;
+    }
+
+    /** Removes requests that were not offered again since the last {@link #beginFrame()}. */
+    public int dropStale() {
+        int before = byKey.size();
+        byKey.values().removeIf(r -> r.frame != frame);
+        heap.removeIf(r -> r.frame != frame);
+        return before - byKey.size();
+    }
+
+    public void clear() {
+        heap.clear();
+        byKey.clear();
+    }
+
+    public int size() {
+        return byKey.size();
+    }
+
+    public static final class ChunkRequest implements Comparable<ChunkRequest> {
+        public final long key;
+        public final int cx, cz;
+        private final long order;
+        private int lod;
+        private float priority;
+        private int frame;
+
+        private ChunkRequest(long key, int cx, int cz, int lod, float priority, long order) {
+            this.key = key;
+            this.cx = cx;
+            this.cz = cz;
+            this.lod = lod;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        public int getLOD() {
+            return lod;
+        }
+
+        public float getPriority() {
+            return priority;
+        }
+
+        @Override
+        public int compareTo(ChunkRequest other) {
+            int c = Float.compare(priority, other.priority);
+            return c != 0 ? c : Long.compare(order, other.order);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package game;
+
+/**
+ * Keeps generated chunks that are in range but off-screen instead of throwing them
+ * away, so looking around does not regenerate the terrain behind the camera.
+ * Off-screen chunks are kept in a list, least-recently-visible first, threaded
+ * through the chunks themselves so tracking them never allocates. They are unloaded
+ * once they are further than the render distance plus a hysteresis ring, or
+ * evicted oldest first while the resident set is over its heap or GPU budget.
+ * Visible chunks are never evicted.
+ */
+public class ChunkResidency {
+    // Oldest and newest off-screen chunks
+    private Chunk head;
+    private Chunk tail;
+    private int offscreenCount = 0;
+    private long heapBudgetBytes;
+    private long gpuBudgetBytes;
+    private int hysteresis;
+
+    private long heapBytes = 0;
+    private long gpuBytes = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long unloads = 0;
+
+    public ChunkResidency(long heapBudgetBytes, long gpuBudgetBytes, int hysteresis) {
+        this.heapBudgetBytes = heapBudgetBytes;
+        this.gpuBudgetBytes = gpuBudgetBytes;
+        this.hysteresis = Math.max(0, hysteresis);
+    }
+
+    /** A needed chunk is resident. Counts as a hit if it came back from the off-screen cache. */
+    void markVisible(Chunk chunk) {
+        if (chunk.offscreen) {
+            unlink(chunk);
+            hits++;
+        }
+    }
+
+    /** A needed chunk was not resident and has to be generated. */
+    void recordMiss() {
+        misses++;
+    }
+
+    void markOffscreen(Chunk chunk) {
+        if (!chunk.offscreen) {
+            chunk.offscreen = true;
+            chunk.offscreenPrev = tail;
+            chunk.offscreenNext = null;
+            if (tail != null)
+                tail.offscreenNext = chunk;
+            else
+                head = chunk;
+            tail = chunk;
+            offscreenCount++;
+        }
+    }
+
+    /** Drops a chunk that was replaced or unloaded by someone else. */
+    void forget(Chunk chunk) {
+        if (chunk.offscreen) {
+            unlink(chunk);
+        }
+    }
+
+    private void unlink(Chunk chunk) {
+        if (chunk.offscreenPrev != null)
+            chunk.offscreenPrev.offscreenNext = chunk.offscreenNext;
+        else
+            head = chunk.offscreenNext;
+        if (chunk.offscreenNext != null)
+            chunk.offscreenNext.offscreenPrev = chunk.offscreenPrev;
+        else
+            tail = chunk.offscreenPrev;
+        chunk.offscreenPrev = null;
+        chunk.offscreenNext = null;
+        chunk.offscreen = false;
+        offscreenCount--;
+    }
+
+    /** Whether a chunk at this distance from the player should stay loaded at all. */
+    boolean isRetained(int cx, int cz, int pcx, int pcz, int renderDist) {
+        int dist = Math.max(Math.abs(cx - pcx), Math.abs(cz - pcz));
+        return dist <= renderDist + hysteresis;
+    }
+
+    /**
+     * Unloads off-screen chunks outside the hysteresis ring, then evicts the least
+     * recently visible ones until the resident set fits the budget.
+     */
+    void evict(ChunkStore chunks, int pcx, int pcz, int renderDist) {
+        for (Chunk c = head, next; c != null; c = next) {
+            next = c.offscreenNext;
+            if (!isRetained(c.cx, c.cz, pcx, pcz, renderDist)) {
+                unlink(c);
+                chunks.remove(ChunkStore.key(c.cx, c.cz));
+                c.retire();
+                unloads++;
+            }
+        }
+
+        heapBytes = 0;
+        gpuBytes = 0;
+        for (Chunk c : chunks) {
+            heapBytes += c.estimateHeapBytes();
+            gpuBytes += c.estimateGpuBytes();
+        }
+
+        while (head != null && (heapBytes > heapBudgetBytes || gpuBytes > gpuBudgetBytes)) {
+            Chunk c = head;
+            unlink(c);
+            chunks.remove(ChunkStore.key(c.cx, c.cz));
+            heapBytes -= c.estimateHeapBytes();
+            gpuBytes -= c.estimateGpuBytes();
+            c.retire();
+            evictions++;
+        }
+    }
+
+    public void setBudget(long heapBudgetBytes, long gpuBudgetBytes) {
+        this.heapBudgetBytes = heapBudgetBytes;
+        this.gpuBudgetBytes = gpuBudgetBytes;
+    }
+
+    public void setHysteresis(int hysteresis) {
+        this.hysteresis = Math.max(0, hysteresis);
+    }
+
+    public int getHysteresis() {
+        return hysteresis;
+    }
+
+    public long getHeapBudgetBytes() {
+        return heapBudgetBytes;
+    }
+
+    public long getGpuBudgetBytes() {
+        return gpuBudgetBytes;
+    }
+
+    public long getHeapBytes() {
+        return heapBytes;
+    }
+
+    public long getGpuBytes() {
+        return gpuBytes;
+    }
+
+    public int getOffscreenCount() {
+        return offscreenCount;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getUnloads() {
+        return unloads;
+    }
+
+    void clear() {
+        while (head != null) {
+            unlink(head);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package game;
+
+import util.LongObjectMap;
+
+import java.util.Iterator;
+
+/**
+ * Resident chunks by coordinate. Backed by a {@link LongObjectMap} so lookups do not
+ * box keys. GL thread only.
+ */
+public class ChunkStore implements Iterable<Chunk> {
+    private final LongObjectMap<Chunk> chunks;
+
+    public ChunkStore(int renderDist) {
+        int side = 2 * renderDist + 1;
+        this.chunks = new LongObjectMap<>(side * side);
+    }
+
+    public static long key(int cx, int cz) {
+        return (((long) cx) << 32) | (cz & 0xffffffffL);
+    }
+
+    public Chunk get(long key) {
+        return chunks.get(key);
+    }
+
+    public Chunk get(int cx, int cz) {
+        return chunks.get(key(cx, cz));
+    }
+
+    public boolean contains(long key) {
+        return chunks.containsKey(key);
+    }
+
+    /** Adds or replaces the chunk at its coordinate and returns the one it replaced. */
+    public Chunk put(Chunk chunk) {
+        return chunks.put(key(chunk.cx, chunk.cz), chunk);
+    }
+
+    public Chunk remove(long key) {
+        return chunks.remove(key);
+    }
+
+    public int size() {
+        return chunks.size();
+    }
+
+    public void clear() {
+        chunks.clear();
+    }
+
+    /** Must not be used while chunks are added or removed. */
+    @Override
+    public Iterator<Chunk> iterator() {
+        return chunks.iterator();
+    }
+}
@@ -0,0 +1,158 @@
+package game;
+
+import objects.Feature;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link ChunkGenerator} on background threads. Requests are made and results
+ * are collected on the GL thread; only the generation itself happens off-thread.
+ * Only a few jobs are handed to the executor at a time so that the ordering of
+ * {@link ChunkRequestQueue} decides what gets built next.
+ */
+public class ChunkWorkerPool {
+    private final ChunkGenerator generator;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final Queue<Result> completed = new ConcurrentLinkedQueue<>();
+    // GL-thread only
+    private final Map<Long, Job> pending = new HashMap<>();
+    private long nextTicket = 0;
+    private int frame = 0;
+    private int cancelledCount = 0;
+
+    public ChunkWorkerPool(ChunkGenerator generator, int threads) {
+        this.generator = generator;
+        this.maxInFlight = threads * 2;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "chunk-worker-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+    }
+
+    public static int defaultThreadCount() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    public boolean isPending(long key) {
+        return pending.containsKey(key);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public boolean hasCapacity() {
+        return pending.size() < maxInFlight;
+    }
+
+    public int getCancelledCount() {
+        return cancelledCount;
+    }
+
+    void submit(long key, int cx, int cz, Biome biome, int lod) {
+        submit(key, cx, cz, biome, lod, null, 0, List.of());
+    }
+
+    /**
+     * Queues generation at a LOD. A non-null {@code known} is the heights array of the
+     * resident chunk at {@code knownLod}, with its lakes; both are only read, so the chunk
+     * can keep using them.
+     */
+    void submit(long key, int cx, int cz, Biome biome, int lod, float[][] known, int knownLod,
+                List<Feature> knownLakes) {
+        if (pending.containsKey(key))
+            return;
+        long ticket = nextTicket++;
+        Future<?> future = executor.submit(() -> {
+            try {
+                completed.add(new Result(key, ticket, cx, cz,
+                        generator.generate(cx, cz, biome, lod, known, knownLod, knownLakes), null));
+            } catch (CancellationException e) {
+                // Dropped by cancelStale() while running
+            } catch (RuntimeException e) {
+                completed.add(new Result(key, ticket, cx, cz, null, e));
+            }
+        });
+        Job job = new Job(ticket, future);
+        job.frame = frame;
+        pending.put(key, job);
+    }
+
+    public void beginFrame() {
+        frame++;
+    }
+
+    /** Marks an in-flight chunk as still wanted this frame. */
+    public void touch(long key) {
+        Job job = pending.get(key);
+        if (job != null) {
+            job.frame = frame;
+        }
+    }
+
+    /**
+     * Cancels every in-flight job that was not touched since {@link #beginFrame()}.
+     * Jobs still queued in the executor never start; running ones stop at the next
+     * stage boundary in {@link ChunkGenerator}.
+     */
+    public int cancelStale() {
+        int cancelled = 0;
+        for (Iterator<Job> it = pending.values().iterator(); it.hasNext();) {
+            Job job = it.next();
+            if (job.frame != frame) {
+                job.future.cancel(true);
+                it.remove();
+                cancelled++;
+            }
+        }
+        cancelledCount += cancelled;
+        return cancelled;
+    }
+
+    /**
+     * Returns the next finished or failed job, or null. Results of cancelled or
+     * superseded jobs are skipped. A failed job is no longer pending, so the caller
+     * decides whether to request it again.
+     */
+    Result poll() {
+        Result result;
+        while ((result = completed.poll()) != null) {
+            Job job = pending.get(result.key);
+            if (job == null || job.ticket != result.ticket)
+                continue;
+            pending.remove(result.key);
+            return result;
+        }
+        return null;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        pending.clear();
+        completed.clear();
+    }
+
+    private static final class Job {
+        private final long ticket;
+        private final Future<?> future;
+        private int frame;
+
+        private Job(long ticket, Future<?> future) {
+            this.ticket = ticket;
+            this.future = future;
+        }
+    }
+
+    /** A finished job: {@code data} on success, otherwise the {@code failure} it threw. */
+    record Result(long key, long ticket, int cx, int cz, ChunkData data, RuntimeException failure) {}
+}
@@ -61,6 +61,23 @@ public class Frustum {
         }
     }
 
+    /**
+     * Whether this frustum differs noticeably from another one: any plane turned by
+     * more than the angle whose cosine is {@code minCos}, or shifted by more than
+     * {@code maxShift} world units.
+     */
+    public boolean differsFrom(Frustum other, float minCos, float maxShift) {
+        for (int i = 0; i < 6; i++) {
+            float[] p = planes[i];
+            float[] q = other.planes[i];
+            if (p[0] * q[0] + p[1] * q[1] + p[2] * q[2] < minCos)
+                return true;
+            if (Math.abs(p[3] - q[3]) > maxShift)
+                return true;
+        }
+        return false;
+    }
+
     public boolean isBoxVisible(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
         for (int i = 0; i < 6; i++) {
             float[] p = planes[i];
@@ -11,6 +11,8 @@ import renderers.UIRenderer;
 import util.TextureLoader;
 
 import java.nio.*;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.lwjgl.glfw.Callbacks.*;
 import static org.lwjgl.glfw.GLFW.*;
@@ -36,13 +38,18 @@ public class Main {
 
         glfwDefaultWindowHints();
         glfwWindowHint(GLFW_RESIZABLE, GLFW_TRUE);
+        // The shaders still use the fixed-function matrices, lights and fog, so the
+        // context must be a compatibility profile one
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 3);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 3);
+        glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_COMPAT_PROFILE);
         window = glfwCreateWindow(windowedWidth, windowedHeight, "Chunked Terrain", NULL, NULL);
         if (window == NULL)
-            throw new RuntimeException("Failed to create window");
+            throw new RuntimeException("Failed to create window: an OpenGL 3.3 compatibility profile context is required");
 
         glfwMakeContextCurrent(window);
         glfwSwapInterval(1);
-        GL.createCapabilities();
+        checkCapabilities(GL.createCapabilities());
 
         try (MemoryStack stack = MemoryStack.stackPush()) {
             IntBuffer w = stack.mallocInt(1), h = stack.mallocInt(1);
@@ -68,6 +75,27 @@ public class Main {
 
         shadowRenderer = new ShadowRenderer(2048);
     }
+
+    /**
+     * Fails with a list of what is missing unless the context can run the renderer:
+     * instanced draws with attribute divisors and base vertices, RGBA16I buffer textures,
+     * and GLSL 1.40 shaders reading compatibility built-ins.
+     */
+    private static void checkCapabilities(GLCapabilities caps) {
+        List<String> missing = new ArrayList<>();
+        if (!caps.OpenGL31)
+            missing.add("OpenGL 3.1 (RGBA16I buffer textures, GLSL 1.40)");
+        if (!caps.OpenGL32)
+            missing.add("OpenGL 3.2 (glDrawElementsInstancedBaseVertex)");
+        if (!caps.OpenGL33)
+            missing.add("OpenGL 3.3 (glVertexAttribDivisor)");
+        if (caps.OpenGL32 && (glGetInteger(GL32.GL_CONTEXT_PROFILE_MASK) & GL32.GL_CONTEXT_COMPATIBILITY_PROFILE_BIT) == 0)
+            missing.add("the compatibility profile (fixed-function built-ins in shaders)");
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Unsupported OpenGL context " + glGetString(GL_VERSION)
+                    + " (" + glGetString(GL_RENDERER) + "), missing: " + String.join(", ", missing));
+        }
+    }
 
     private void setupProjection() {
         glMatrixMode(GL_PROJECTION);
@@ -174,7 +202,7 @@ public class Main {
 
             player.update(window, dt);
             Frustum frustum = Frustum.fromOpenGL();
-            terrain.update(player.getX(), player.getZ(), frustum);
+            terrain.update(player.getX(), player.getZ(), player.getViewDirX(), player.getViewDirZ(), frustum);
             sky.update(dt);
 
             float[] lightDir = sky.getShadowDirection();
@@ -224,6 +252,7 @@ public class Main {
     public void run() {
         init();
         loop();
+        terrain.shutdown();
         TextureLoader.disposeAll();
         glfwFreeCallbacks(window);
         glfwDestroyWindow(window);
@@ -0,0 +1,12 @@
+package game;
+
+/**
+ * Evaluates 2D OpenSimplex noise for a batch of points. {@link OpenSimplexNoise}
+ * routes its grid methods through one of these so the backend can be swapped.
+ */
+interface NoiseKernel {
+    /** Writes the noise value at {@code (xs[k], ys[k])} to {@code out[k]} for {@code k < count}. */
+    void eval(double[] xs, double[] ys, int count, double[] out);
+
+    String name();
+}
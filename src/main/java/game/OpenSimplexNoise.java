@@ -1,10 +1,32 @@
-
 package game;
+
+import java.util.function.DoubleUnaryOperator;
+
 public class OpenSimplexNoise {
-    private static final int PSIZE = 256;
+    /**
+     * Grid backend: {@code scalar} (default), {@code simd} (Vector API, double lanes,
+     * same results as scalar) or {@code simd-float} (float lanes, approximate). The SIMD
+     * backends live in {@code src/vector/java}, which is compiled separately with
+     * {@code --add-modules jdk.incubator.vector}. They need that class on the classpath
+     * and the module at run time; without either they fall back to scalar.
+     */
+    public static final String BACKEND_PROPERTY = "terrain.noise";
+
+    static final int PSIZE = 256;
+    static final double SQRT3 = 1.7320508075688772;
+    static final double F2 = 0.5 * (SQRT3 - 1.0);
+    static final double G2 = (3.0 - SQRT3) / 6.0;
+
     private final short[] perm = new short[PSIZE * 2];
+    // perm[k] % 12, so the grid paths skip the modulo
+    private final byte[] permMod12 = new byte[PSIZE * 2];
+    private final NoiseKernel kernel;
 
     public OpenSimplexNoise(long seed) {
+        this(seed, System.getProperty(BACKEND_PROPERTY, "scalar"));
+    }
+
+    OpenSimplexNoise(long seed, String backend) {
         short[] source = new short[PSIZE];
         for (short i = 0; i < PSIZE; i++)
             source[i] = i;
@@ -15,16 +37,45 @@ public class OpenSimplexNoise {
             source[i] = source[r];
             source[r] = tmp;
         }
-        for (int i = 0; i < PSIZE * 2; i++)
+        for (int i = 0; i < PSIZE * 2; i++) {
             perm[i] = source[i & (PSIZE - 1)];
+            permMod12[i] = (byte) (perm[i] % 12);
+        }
+        kernel = createKernel(backend);
+    }
+
+    public String getBackendName() {
+        return kernel.name();
+    }
+
+    private NoiseKernel createKernel(String backend) {
+        if (backend.equals("simd") || backend.equals("simd-float")) {
+            try {
+                // Loaded reflectively, so the main sources build and run without the incubator module
+                return (NoiseKernel) Class.forName("game.VectorNoiseKernel")
+                        .getDeclaredConstructor(short[].class, byte[].class, boolean.class)
+                        .newInstance(perm, permMod12, backend.equals("simd-float"));
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.err.println("Vector API unavailable, using scalar noise: " + e);
+            }
+        }
+        return new NoiseKernel() {
+            @Override
+            public void eval(double[] xs, double[] ys, int count, double[] out) {
+                for (int k = 0; k < count; k++) {
+                    out[k] = evalFast(xs[k], ys[k]);
+                }
+            }
+
+            @Override
+            public String name() {
+                return "scalar";
+            }
+        };
     }
 
     // 2D OpenSimplex
     public double eval(double x, double y) {
-        final double SQRT3 = 1.7320508075688772;
-        final double F2 = 0.5 * (SQRT3 - 1.0);
-        final double G2 = (3.0 - SQRT3) / 6.0;
-
         double s = (x + y) * F2;
         double xs = x + s, ys = y + s;
         int i = fastFloor(xs);
@@ -65,6 +116,134 @@ public class OpenSimplexNoise {
         return t * t * t * t * grad;
     }
 
+    /**
+     * Fills {@code out[i * nz + j]} with {@code eval((x0 + i) * dx, (z0 + j) * dz)} for
+     * {@code i < nx, j < nz}. With the scalar and {@code simd} backends the results are
+     * bit-identical to calling {@link #eval} per point.
+     */
+    public void evalGrid(double x0, double z0, double dx, double dz, int nx, int nz, double[] out) {
+        double[] xs = new double[nx];
+        double[] zs = new double[nz];
+        for (int i = 0; i < nx; i++)
+            xs[i] = (x0 + i) * dx;
+        for (int j = 0; j < nz; j++)
+            zs[j] = (z0 + j) * dz;
+
+        double[] px = new double[nx * nz];
+        double[] pz = new double[nx * nz];
+        expand(xs, zs, px, pz);
+        kernel.eval(px, pz, nx * nz, out);
+    }
+
+    // Lays the row and column coordinates out as one point per grid sample
+    private static void expand(double[] xs, double[] zs, double[] px, double[] pz) {
+        int nz = zs.length;
+        for (int i = 0; i < xs.length; i++) {
+            java.util.Arrays.fill(px, i * nz, (i + 1) * nz, xs[i]);
+            System.arraycopy(zs, 0, pz, i * nz, nz);
+        }
+    }
+
+    /**
+     * Fused fractal sum over a grid laid out like {@link #evalGrid}. For each octave
+     * {@code o}, every sample adds
+     * {@code shape(eval((x + offsetX[o]) * freq[o], (z + offsetZ[o]) * freq[o])) * amp[o]}
+     * in octave order, where {@code x = (x0 + i) * dx} and {@code z = (z0 + j) * dz}.
+     * {@code shape} may be null for the raw value. Bit-identical to the equivalent
+     * point-wise loop, except with the {@code simd-float} backend.
+     */
+    public void evalFractalGrid(double x0, double z0, double dx, double dz, int nx, int nz,
+                                double[] freq, double[] amp, double[] offsetX, double[] offsetZ,
+                                DoubleUnaryOperator shape, double[] out) {
+        double[] xs = new double[nx];
+        double[] zs = new double[nz];
+        for (int i = 0; i < nx; i++)
+            xs[i] = (x0 + i) * dx;
+        for (int j = 0; j < nz; j++)
+            zs[j] = (z0 + j) * dz;
+
+        double[] px = new double[nx * nz];
+        double[] pz = new double[nx * nz];
+        expand(xs, zs, px, pz);
+        evalFractalPoints(px, pz, nx * nz, freq, amp, offsetX, offsetZ, shape, out);
+    }
+
+    /**
+     * Fractal sum at arbitrary points: {@code out[p]} becomes the sum over octaves of
+     * {@code shape(eval((xs[p] + offsetX[o]) * freq[o], (zs[p] + offsetZ[o]) * freq[o])) * amp[o]},
+     * accumulated in octave order.
+     */
+    public void evalFractalPoints(double[] xs, double[] zs, int count,
+                                  double[] freq, double[] amp, double[] offsetX, double[] offsetZ,
+                                  DoubleUnaryOperator shape, double[] out) {
+        java.util.Arrays.fill(out, 0, count, 0.0);
+
+        double[] px = new double[count];
+        double[] pz = new double[count];
+        double[] values = new double[count];
+        for (int o = 0; o < freq.length; o++) {
+            double f = freq[o], a = amp[o], ox = offsetX[o], oz = offsetZ[o];
+            for (int p = 0; p < count; p++) {
+                px[p] = (xs[p] + ox) * f;
+                pz[p] = (zs[p] + oz) * f;
+            }
+
+            kernel.eval(px, pz, count, values);
+            for (int p = 0; p < count; p++) {
+                double v = values[p];
+                if (shape != null)
+                    v = shape.applyAsDouble(v);
+                out[p] += v * a;
+            }
+        }
+    }
+
+    private double evalFast(double x, double y) {
+        return evalPoint(perm, permMod12, x, y);
+    }
+
+    // Same arithmetic as eval(), using the mod-12 table and flat gradient arrays
+    static double evalPoint(short[] perm, byte[] permMod12, double x, double y) {
+        double s = (x + y) * F2;
+        int i = fastFloor(x + s);
+        int j = fastFloor(y + s);
+        double t = (i + j) * G2;
+        double x0 = x - (i - t), y0 = y - (j - t);
+
+        int i1, j1;
+        if (x0 > y0) {
+            i1 = 1;
+            j1 = 0;
+        } else {
+            i1 = 0;
+            j1 = 1;
+        }
+
+        double x1 = x0 - i1 + G2;
+        double y1 = y0 - j1 + G2;
+        double x2 = x0 - 1.0 + 2.0 * G2;
+        double y2 = y0 - 1.0 + 2.0 * G2;
+
+        int ii = i & (PSIZE - 1), jj = j & (PSIZE - 1);
+        double t0 = 0.5 - x0 * x0 - y0 * y0;
+        double n0 = 0.0, n1 = 0.0, n2 = 0.0;
+        if (t0 >= 0) {
+            int gi = permMod12[ii + perm[jj]];
+            n0 = t0 * t0 * t0 * t0 * (GRAD_X[gi] * x0 + GRAD_Y[gi] * y0);
+        }
+        double t1 = 0.5 - x1 * x1 - y1 * y1;
+        if (t1 >= 0) {
+            int gi = permMod12[ii + i1 + perm[jj + j1]];
+            n1 = t1 * t1 * t1 * t1 * (GRAD_X[gi] * x1 + GRAD_Y[gi] * y1);
+        }
+        double t2 = 0.5 - x2 * x2 - y2 * y2;
+        if (t2 >= 0) {
+            int gi = permMod12[ii + 1 + perm[jj + 1]];
+            n2 = t2 * t2 * t2 * t2 * (GRAD_X[gi] * x2 + GRAD_Y[gi] * y2);
+        }
+        return 70.0 * (n0 + n1 + n2);
+    }
+
     private static int fastFloor(double x) {
         return x > 0 ? (int) x : (int) x - 1;
     }
@@ -74,4 +253,6 @@ public class OpenSimplexNoise {
             { 1, 0 }, { -1, 0 }, { 1, 0 }, { -1, 0 },
             { 0, 1 }, { 0, -1 }, { 0, 1 }, { 0, -1 }
     };
+    static final double[] GRAD_X = { 1, -1, 1, -1, 1, -1, 1, -1, 0, 0, 0, 0 };
+    static final double[] GRAD_Y = { 1, 1, -1, -1, 0, 0, 0, 0, 1, -1, 1, -1 };
 }
@@ -140,6 +140,15 @@ public class Player {
             pitch = -89f;
     }
 
+    /** Horizontal view direction, matching the forward vector used for movement. */
+    public float getViewDirX() {
+        return -(float) Math.sin(Math.toRadians(yaw));
+    }
+
+    public float getViewDirZ() {
+        return -(float) Math.cos(Math.toRadians(yaw));
+    }
+
     // Getters for player position
     public float getX() {
         return x;
@@ -0,0 +1,89 @@
+package game;
+
+import static game.Chunk.*;
+
+/**
+ * Central-difference slope at every vertex of a chunk, computed once from the
+ * apron-padded heightfield, plus a summed-area table so the average slope over any
+ * box of vertices costs four lookups. Call {@link #recompute} after the heights change.
+ * At a coarser LOD only the lattice vertices have slopes, taken between their lattice
+ * neighbours, and {@link #average} is not meaningful. The height gradient behind each
+ * slope is kept too, for vertex normals.
+ */
+public class SlopeField {
+    private static final int SIDE = SIZE + 1;
+
+    private final float[][] heights;
+    private final int[] lattice;
+    private final float[] slopes = new float[SIDE * SIDE];
+    private final float[] gradX = new float[SIDE * SIDE];
+    private final float[] gradZ = new float[SIDE * SIDE];
+    // sums[(x + 1) * (SIDE + 1) + (z + 1)] = total slope over vertices [0..x] x [0..z]
+    private final double[] sums = new double[(SIDE + 1) * (SIDE + 1)];
+
+    public SlopeField(float[][] heights) {
+        this(heights, 0);
+    }
+
+    public SlopeField(float[][] heights, int lod) {
+        this.heights = heights;
+        this.lattice = lattice(lod);
+        recompute();
+    }
+
+    public void recompute() {
+        int last = lattice.length - APRON;
+        for (int i = APRON; i < last; i++) {
+            int x = lattice[i];
+            int xm = lattice[i - 1] + APRON, xp = lattice[i + 1] + APRON;
+            for (int j = APRON; j < last; j++) {
+                int z = lattice[j];
+                int zm = lattice[j - 1] + APRON, zp = lattice[j + 1] + APRON;
+                float dx = (heights[xp][z + APRON] - heights[xm][z + APRON]) / (xp - xm);
+                float dz = (heights[x + APRON][zp] - heights[x + APRON][zm]) / (zp - zm);
+                gradX[x * SIDE + z] = dx;
+                gradZ[x * SIDE + z] = dz;
+                slopes[x * SIDE + z] = (float) Math.sqrt(dx * dx + dz * dz);
+            }
+        }
+
+        int w = SIDE + 1;
+        for (int x = 0; x < SIDE; x++) {
+            double row = 0.0;
+            for (int z = 0; z < SIDE; z++) {
+                row += slopes[x * SIDE + z];
+                sums[(x + 1) * w + z + 1] = sums[x * w + z + 1] + row;
+            }
+        }
+    }
+
+    /** Slope at vertex (x, z), both in 0..SIZE. */
+    public float at(int x, int z) {
+        return slopes[x * SIDE + z];
+    }
+
+    /** Height change per vertex step along x at vertex (x, z). */
+    public float gradientX(int x, int z) {
+        return gradX[x * SIDE + z];
+    }
+
+    /** Height change per vertex step along z at vertex (x, z). */
+    public float gradientZ(int x, int z) {
+        return gradZ[x * SIDE + z];
+    }
+
+    /** Mean slope over the vertices in [x0..x1] x [z0..z1], clamped to the chunk. */
+    public float average(int x0, int z0, int x1, int z1) {
+        x0 = Math.max(0, x0);
+        z0 = Math.max(0, z0);
+        x1 = Math.min(SIZE, x1);
+        z1 = Math.min(SIZE, z1);
+        if (x1 < x0 || z1 < z0)
+            return 0f;
+
+        int w = SIDE + 1;
+        double total = sums[(x1 + 1) * w + z1 + 1] - sums[x0 * w + z1 + 1]
+                - sums[(x1 + 1) * w + z0] + sums[x0 * w + z0];
+        return (float) (total / ((x1 - x0 + 1) * (z1 - z0 + 1)));
+    }
+}
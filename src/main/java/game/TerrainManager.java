@@ -1,7 +1,9 @@
 package game;
 import objects.Feature;
+import renderers.ShadowRenderer;
 import renderers.SkyRenderer;
 import util.BoundingBox;
+import util.GlWorkScheduler;
 import util.TextureLoader;
 import static org.lwjgl.opengl.GL11.*;
 import org.lwjgl.BufferUtils;
@@ -11,11 +13,47 @@ import java.nio.FloatBuffer;
 import java.util.*;
 
 public class TerrainManager {
-    private final Map<Long, Chunk> chunks = new HashMap<>();
+    private final ChunkStore chunks;
     private final OpenSimplexNoise terrainNoise;
     private final OpenSimplexNoise biomeNoise;
     private final BiomeRegionGenerator regionGenerator;
+    private final BiomeBlender biomeBlender = new BiomeBlender();
+    private final BiomeField biomeField;
     private final SkyRenderer skyRenderer;
+    private final ChunkGenerator generator;
+    private final ChunkWorkerPool workers;
+    private final ChunkRequestQueue requests = new ChunkRequestQueue();
+    private final GlWorkScheduler glWork = new GlWorkScheduler(2f);
+    private final ChunkBuffers buffers = new ChunkBuffers();
+    private final ChunkResidency residency = new ChunkResidency(
+            DEFAULT_HEAP_BUDGET_BYTES, DEFAULT_GPU_BUDGET_BYTES, DEFAULT_UNLOAD_HYSTERESIS);
+    private Frustum frustum;
+
+    // State of the last rescan of the render square
+    private Frustum scanFrustum;
+    private int scan = 0;
+    private int scanPcx, scanPcz;
+    private float scanWx, scanWz;
+    private int scanRenderDist = -1;
+    private int scanFeatureRenderDist = -1;
+    private boolean residencyDirty = false;
+    // Failed generation attempts per chunk key; cleared once the chunk installs
+    private final Map<Long, Integer> failedAttempts = new HashMap<>();
+
+    private static final long DEFAULT_HEAP_BUDGET_BYTES = 192L * 1024 * 1024;
+    private static final long DEFAULT_GPU_BUDGET_BYTES = 384L * 1024 * 1024;
+    private static final int DEFAULT_UNLOAD_HYSTERESIS = 2;
+    // A chunk whose generation throws this many times is not requested again
+    private static final int MAX_GENERATION_ATTEMPTS = 3;
+    // Allowed error of the interpolated biome value; gives a lattice node every 10 units
+    private static final double BIOME_FIELD_MAX_DEVIATION = 5e-4;
+    // Trees and cacti stick out above the terrain bounding box
+    private static final float FEATURE_CULL_MARGIN = 15f;
+    // Camera change that triggers a rescan: about 3 degrees of rotation or a few units of movement
+    private static final float RESCAN_MIN_COS = 0.9986f;
+    private static final float RESCAN_MAX_SHIFT = 4f;
+    // Every terrain texture is resampled to this size to share one texture array
+    private static final int TERRAIN_TEXTURE_SIZE = 256;
 
 
     private final float scale;
@@ -23,10 +61,12 @@ public class TerrainManager {
     private int featureRenderDist;
     private final long seed;
 
-    private final Map<String, Integer> textureMap = new HashMap<>();
-    private final int snowTex;
-    private final int waterBottomTex;
-    private final int waterBottomAbsTex;
+    // Layers of the terrain texture array, by file name, in layer order
+    private final Map<String, Integer> terrainLayers = new LinkedHashMap<>();
+    private final int terrainTextures;
+    private final int snowLayer;
+    private final int waterBottomLayer;
+    private final int waterBottomAbsLayer;
 
     public TerrainManager(long seed, float scale, int renderDist, SkyRenderer skyRenderer) {
         this(seed, scale, renderDist, renderDist - 1,  skyRenderer);
@@ -36,50 +76,59 @@ public class TerrainManager {
         this.seed = seed;
         this.terrainNoise = new OpenSimplexNoise(seed);
         this.biomeNoise = new OpenSimplexNoise(seed + 12345);
+        this.biomeField = new BiomeField(biomeNoise, BIOME_FIELD_MAX_DEVIATION);
         this.scale = scale;
         this.renderDist = renderDist;
         this.featureRenderDist = featureRenderDist;
         this.regionGenerator = new BiomeRegionGenerator(seed);
+        this.chunks = new ChunkStore(renderDist + DEFAULT_UNLOAD_HYSTERESIS);
 
 
-        snowTex = TextureLoader.getOrLoad("snow.png");
-        waterBottomTex = TextureLoader.getOrLoad("sand.png");
-        waterBottomAbsTex = TextureLoader.getOrLoad("water_bottom.png");
-
-
+        snowLayer = addTerrainLayer("snow.png");
+        waterBottomLayer = addTerrainLayer("sand.png");
+        waterBottomAbsLayer = addTerrainLayer("water_bottom.png");
         for (Biome b : Biome.values()) {
-            textureMap.put(b.grassTex, TextureLoader.getOrLoad(b.grassTex));
-            textureMap.put(b.dirtTex, TextureLoader.getOrLoad(b.dirtTex));
-            textureMap.put(b.rockTex, TextureLoader.getOrLoad(b.rockTex));
+            addTerrainLayer(b.grassTex);
+            addTerrainLayer(b.dirtTex);
+            addTerrainLayer(b.rockTex);
         }
+        terrainTextures = TextureLoader.loadArray(new ArrayList<>(terrainLayers.keySet()), TERRAIN_TEXTURE_SIZE);
         this.skyRenderer = skyRenderer;
+        this.generator = new ChunkGenerator(this, terrainNoise, scale);
+        this.workers = new ChunkWorkerPool(generator, ChunkWorkerPool.defaultThreadCount());
     }
 
-    private long key(int cx, int cz) {
-        return (((long) cx) << 32) | (cz & 0xffffffffL);
+    private int addTerrainLayer(String file) {
+        return terrainLayers.computeIfAbsent(file, f -> terrainLayers.size());
+    }
+
+    private static long key(int cx, int cz) {
+        return ChunkStore.key(cx, cz);
     }
 /*EVEN BIOMES NOT FINNISHED
     private Biome pickBiome(int cx, int cz) {
         return regionGenerator.getBiomeAtChunk(cx, cz);
     }*/
+    private static final Biome[] BIOMES = Biome.values();
+    private static final double TOTAL_SPAWN_CHANCE = Arrays.stream(BIOMES).mapToDouble(b -> b.spawnChance).sum();
+
     private Biome pickBiome(int cx, int cz) {
         double nx = (cx * Chunk.SIZE + Chunk.SIZE / 2.0) * 0.002;
         double nz = (cz * Chunk.SIZE + Chunk.SIZE / 2.0) * 0.002;
         double value = (biomeNoise.eval(nx, nz) + 1) * 0.5;
 
         // Normalize all spawn chances
-        double totalChance = Arrays.stream(Biome.values()).mapToDouble(b -> b.spawnChance).sum();
-        double threshold = value * totalChance;
+        double threshold = value * TOTAL_SPAWN_CHANCE;
 
         double sum = 0;
-        for (Biome b : Biome.values()) {
+        for (Biome b : BIOMES) {
             sum += b.spawnChance;
             if (threshold <= sum)
                 return b;
         }
 
         // Force last biome (should never happen if normalized properly)
-        return Biome.values()[Biome.values().length - 1];
+        return BIOMES[BIOMES.length - 1];
     }
 
     public List<Feature> getNearbyFeatures(float wx, float wz, int chunkRadius) {
@@ -99,113 +148,324 @@ public class TerrainManager {
         return results;
     }
 
-    public void update(float wx, float wz, Frustum frustum) {
+    /**
+     * Per-frame entry point. The render square is only rescanned when the player enters
+     * another chunk, a distance setting changes or the camera moved noticeably; other
+     * frames just dispatch queued requests, install finished chunks and run GL work.
+     */
+    public void update(float wx, float wz, float viewX, float viewZ, Frustum frustum) {
+        this.frustum = frustum;
 
         int pcx = (int) Math.floor(wx / (Chunk.SIZE * scale));
         int pcz = (int) Math.floor(wz / (Chunk.SIZE * scale));
-        Set<Long> needed = new HashSet<>();
-
-        for (int dx = -renderDist; dx <= renderDist; dx++) {
-            for (int dz = -renderDist; dz <= renderDist; dz++) {
-                int cx = pcx + dx, cz = pcz + dz;
-                long k = key(cx, cz);
+        if (scanFrustum == null || pcx != scanPcx || pcz != scanPcz
+                || renderDist != scanRenderDist || featureRenderDist != scanFeatureRenderDist
+                || frustum.differsFrom(scanFrustum, RESCAN_MIN_COS, RESCAN_MAX_SHIFT)) {
+            rescan(wx, wz, viewX, viewZ, pcx, pcz, frustum);
+        }
 
-                Chunk existing = chunks.get(k);
+        ChunkRequestQueue.ChunkRequest request;
+        while (workers.hasCapacity() && (request = requests.poll()) != null) {
+            // Changing the LOD of a resident chunk reuses the heights it already sampled
+            Chunk existing = chunks.get(request.key);
+            Biome biome = pickBiome(request.cx, request.cz);
+            if (existing != null) {
+                workers.submit(request.key, request.cx, request.cz, biome, request.getLOD(),
+                        existing.getHeights(), existing.getLOD(), existing.getLakes());
+            } else {
+                workers.submit(request.key, request.cx, request.cz, biome, request.getLOD());
+            }
+        }
 
-                float chunkMinX = cx * Chunk.SIZE * scale;
-                float chunkMinZ = cz * Chunk.SIZE * scale;
-                float chunkMaxX = (cx + 1) * Chunk.SIZE * scale;
-                float chunkMaxZ = (cz + 1) * Chunk.SIZE * scale;
+        // The chunk under the player is needed for collision, so never wait a frame for it
+        if (!chunks.contains(key(pcx, pcz))) {
+            residency.recordMiss();
+            install(generator.generate(pcx, pcz, pickBiome(pcx, pcz), 0), pcx, pcz);
+        }
 
-// Use real Y bounds if chunk exists
-                float chunkMinY = -20f;
-                float chunkMaxY = 100f; // fallback default
+        // Upload chunks that finished generating on the worker threads. A chunk that
+        // went off-screen while it was being built is still worth keeping.
+        ChunkWorkerPool.Result result;
+        while ((result = workers.poll()) != null) {
+            if (result.failure() != null) {
+                generationFailed(result);
+            } else if (residency.isRetained(result.cx(), result.cz(), scanPcx, scanPcz, renderDist)) {
+                failedAttempts.remove(result.key());
+                install(result.data(), scanPcx, scanPcz);
+            }
+        }
 
-                /*if (existing != null) {
-                    BoundingBox box = existing.getBoundingBox();
-                    chunkMinY = box.minY;
-                    chunkMaxY = box.maxY;
-                }*/
+        if (residencyDirty) {
+            residency.evict(chunks, scanPcx, scanPcz, renderDist);
+            residencyDirty = false;
+        }
 
-// Now frustum cull properly
-                if (!frustum.isBoxVisible(chunkMinX, chunkMinY, chunkMinZ, chunkMaxX, chunkMaxY, chunkMaxZ))
-                    continue;
+        glWork.runFrame();
+        buffers.endFrame();
+    }
 
+    /**
+     * Retries a chunk whose generation threw by rescanning next frame, which offers it
+     * again, until it has failed {@link #MAX_GENERATION_ATTEMPTS} times. After that the
+     * cell is left empty.
+     */
+    private void generationFailed(ChunkWorkerPool.Result result) {
+        int attempts = failedAttempts.merge(result.key(), 1, Integer::sum);
+        System.err.println("Chunk generation failed for " + result.cx() + "," + result.cz()
+                + " (attempt " + attempts + "): " + result.failure());
+        if (attempts < MAX_GENERATION_ATTEMPTS) {
+            scanFrustum = null;
+        } else {
+            System.err.println("Giving up on chunk " + result.cx() + "," + result.cz());
+        }
+    }
 
-                needed.add(k);
+    /**
+     * Recomputes which cells of the render square are visible, re-offers the missing
+     * ones to the request queue and cancels work for cells that are no longer wanted.
+     * Also the only place features are loaded/unloaded for chunks that were already
+     * resident.
+     */
+    private void rescan(float wx, float wz, float viewX, float viewZ, int pcx, int pcz, Frustum frustum) {
+        scan++;
+        scanPcx = pcx;
+        scanPcz = pcz;
+        scanWx = wx;
+        scanWz = wz;
+        scanRenderDist = renderDist;
+        scanFeatureRenderDist = featureRenderDist;
+        scanFrustum = frustum;
+        requests.beginFrame();
+        workers.beginFrame();
 
+        for (int dx = -renderDist; dx <= renderDist; dx++) {
+            for (int dz = -renderDist; dz <= renderDist; dz++) {
+                int cx = pcx + dx, cz = pcz + dz;
+                if (!isCellVisible(cx, cz))
+                    continue;
 
+                long k = key(cx, cz);
+                Chunk existing = chunks.get(k);
                 int dist = Math.max(Math.abs(cx - pcx), Math.abs(cz - pcz));
-                int targetLOD = 0;
-                /*
-                 * if (dist >= 15)
-                 * targetLOD = 3;
-                 * else if (dist >= 10)
-                 * targetLOD = 2;
-                 * else if (dist >= 5)
-                 * targetLOD = 1;
-                 */
-
-                if (existing == null || targetLOD < existing.getLOD()) {
-                    Biome b = pickBiome(cx, cz);
-                    Chunk upgraded = new Chunk(cx, cz, terrainNoise, scale, b, this, false, targetLOD);
-                    if (existing != null)
-                        existing.dispose();
-                    chunks.put(k, upgraded);
+                int targetLOD = targetLOD(cx, cz, dist, existing);
+
+                if (existing != null) {
+                    existing.visibleScan = scan;
+                    residency.markVisible(existing);
                 }
 
+                if (workers.isPending(k)) {
+                    workers.touch(k);
+                } else if ((existing == null || targetLOD != existing.getLOD())
+                        && failedAttempts.getOrDefault(k, 0) < MAX_GENERATION_ATTEMPTS) {
+                    if (existing == null && !requests.contains(k)) {
+                        residency.recordMiss();
+                    }
+                    requests.offer(k, cx, cz, targetLOD, ChunkRequestQueue.priority(
+                            cx, cz, wx, wz, viewX, viewZ, pcx, pcz, Chunk.SIZE * scale, targetLOD));
+                }
             }
         }
 
-        // Generate/unload features based on featureRenderDist
-        for (Chunk c : chunks.values()) {
-            c.unloadFeaturesIfOutOfRange(pcx, pcz, featureRenderDist);
+        // Forget chunks that went out of view before they were built
+        requests.dropStale();
+        workers.cancelStale();
 
-            BoundingBox box = c.getBoundingBox();
-            if (frustum.isBoxVisible(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ)) {
+        Chunk playerChunk = chunks.get(pcx, pcz);
+        if (playerChunk != null) {
+            playerChunk.visibleScan = scan;
+            residency.markVisible(playerChunk);
+        }
+
+        // Chunks that are not visible stay resident off-screen until they fall outside
+        // the hysteresis ring or the memory budget runs out
+        for (Chunk c : chunks) {
+            c.unloadFeaturesIfOutOfRange(pcx, pcz, featureRenderDist);
+            if (c.visibleScan == scan) {
                 c.generateFeaturesIfNeeded(pcx, pcz, featureRenderDist);
+            } else {
+                residency.markOffscreen(c);
             }
+        }
+        residencyDirty = true;
+    }
 
+    /**
+     * Quadtree-style level selection from the last scan's camera position. LOD 0 covers
+     * the feature render distance, since lakes and features are only placed at LOD 0.
+     * Beyond it every level reaches twice as far as the one before, measured to the
+     * nearest point of the chunk. A resident chunk only coarsens once it is a chunk past
+     * the boundary, so moving along a boundary does not rebuild it back and forth.
+     */
+    private int targetLOD(int cx, int cz, int dist, Chunk existing) {
+        if (dist <= featureRenderDist)
+            return 0;
+
+        float size = Chunk.SIZE * scale;
+        float dx = Math.max(0f, Math.max(cx * size - scanWx, scanWx - (cx + 1) * size));
+        float dz = Math.max(0f, Math.max(cz * size - scanWz, scanWz - (cz + 1) * size));
+        float d = (float) Math.sqrt(dx * dx + dz * dz);
+        int lod = lodAtDistance(d, size);
+        if (existing != null && lod > existing.getLOD())
+            lod = Math.max(existing.getLOD(), lodAtDistance(d - size, size));
+        return lod;
+    }
+
+    private int lodAtDistance(float d, float size) {
+        float range = (featureRenderDist + 1) * size;
+        int lod = 1;
+        while (lod < Chunk.MAX_LOD && d >= range) {
+            range *= 2f;
+            lod++;
         }
+        return lod;
+    }
 
-        // Dispose chunks no longer needed
-        for (Iterator<Map.Entry<Long, Chunk>> it = chunks.entrySet().iterator(); it.hasNext();) {
-            Map.Entry<Long, Chunk> entry = it.next();
-            if (!needed.contains(entry.getKey())) {
-                entry.getValue().dispose();
-                it.remove();
-            }
+    private boolean isCellVisible(int cx, int cz) {
+        // Fixed Y range so the answer does not depend on whether the chunk exists yet
+        return scanFrustum.isBoxVisible(cx * Chunk.SIZE * scale, -20f, cz * Chunk.SIZE * scale,
+                (cx + 1) * Chunk.SIZE * scale, 100f, (cz + 1) * Chunk.SIZE * scale);
+    }
+
+    private void install(ChunkData data, int pcx, int pcz) {
+        long k = key(data.cx, data.cz);
+        Chunk existing = chunks.get(k);
+        if (existing != null && existing.getLOD() == data.lod)
+            return;
+
+        int dist = Math.max(Math.abs(data.cx - pcx), Math.abs(data.cz - pcz));
+        if (existing == null) {
+            Chunk chunk = new Chunk(data, scale, glWork, buffers);
+            boolean visible = (data.cx == pcx && data.cz == pcz) || isCellVisible(data.cx, data.cz);
+            chunks.put(chunk);
+            admit(chunk, visible, pcx, pcz);
+            glWork.submit(GlWorkScheduler.PRIORITY_UPLOAD + dist, chunk::upload);
+        } else {
+            // Keep drawing the current LOD until the new one's turn to upload comes up. A
+            // coarser LOD is dropped if the player came back while it was being built.
+            glWork.submit(GlWorkScheduler.PRIORITY_UPLOAD + dist, () -> {
+                if (chunks.get(k) != existing || existing.getLOD() == data.lod)
+                    return;
+                int ring = Math.max(Math.abs(data.cx - scanPcx), Math.abs(data.cz - scanPcz));
+                if (data.lod > existing.getLOD() && data.lod > targetLOD(data.cx, data.cz, ring, existing))
+                    return;
+                existing.applyLod(data);
+                admit(existing, existing.visibleScan == scan, scanPcx, scanPcz);
+            });
         }
     }
 
+    // Brings a newly resident chunk in line with the last scan
+    private void admit(Chunk chunk, boolean visible, int pcx, int pcz) {
+        if (visible) {
+            chunk.visibleScan = scan;
+            chunk.generateFeaturesIfNeeded(pcx, pcz, featureRenderDist);
+        } else {
+            residency.markOffscreen(chunk);
+        }
+        residencyDirty = true;
+    }
+
+    public void shutdown() {
+        requests.clear();
+        residency.clear();
+        for (Chunk c : chunks) {
+            c.retire();
+        }
+        chunks.clear();
+        workers.shutdown();
+        glWork.flush();
+        buffers.dispose();
+    }
+
+    public GlWorkScheduler getGlWorkScheduler() {
+        return glWork;
+    }
+
+    public ChunkResidency getResidency() {
+        return residency;
+    }
+
+    /** Occupancy and fragmentation of the shared chunk geometry arenas, one line each. */
+    public List<String> describeBuffers() {
+        return buffers.describe();
+    }
+
+    private boolean isVisible(Chunk c) {
+        if (frustum == null)
+            return true;
+        BoundingBox box = c.getBoundingBox();
+        return frustum.isBoxVisible(box.minX, box.minY, box.minZ, box.maxX, box.maxY + FEATURE_CULL_MARGIN, box.maxZ);
+    }
+
     public Chunk getChunk(int cx, int cz) {
-        return chunks.get(key(cx, cz));
+        return chunks.get(cx, cz);
     }
 
     public float getHeight(float wx, float wz) {
         int cx = (int) Math.floor(wx / (Chunk.SIZE * scale));
         int cz = (int) Math.floor(wz / (Chunk.SIZE * scale));
-        Chunk c = chunks.get(key(cx, cz));
+        Chunk c = chunks.get(cx, cz);
         return c != null ? c.getHeight(wx / scale, wz / scale) : 0f;
     }
 
     public void draw() {
         enableFogDynamic();
 
-        for (Chunk c : chunks.values()) {
-            c.drawTerrainAndFeatures();
+        List<Chunk> visible = new ArrayList<>();
+        for (Chunk c : chunks) {
+            if (isVisible(c)) {
+                visible.add(c);
+            }
+        }
+
+        // All terrain shares one heightmap arena, texture array and shader: one instanced draw per LOD
+        ShadowRenderer.beginTerrain(terrainTextures, snowLayer, waterBottomLayer, waterBottomAbsLayer, scale);
+        buffers.drawTerrain(visible, false);
+        ShadowRenderer.endTerrain();
+
+        ShadowRenderer.beginGrass();
+        buffers.drawGrass(visible, false);
+        ShadowRenderer.endGrass();
+
+        for (Chunk c : visible) {
+            c.drawFeatures();
         }
 
         disableFog();
 
-        for (Chunk c : chunks.values()) {
-            c.drawWater();
-        }
+        glEnable(GL_BLEND);
+        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+        glDisable(GL_TEXTURE_2D);
+        glDepthMask(false); // Disable depth writing for transparency
+        glEnable(GL_FOG);
+        glColor4f(0.2f, 0.5f, 0.8f, 0.6f); // Water color
+
+        buffers.drawWater(visible);
+
+        glDepthMask(true);
+        glDisable(GL_FOG);
+        glEnable(GL_TEXTURE_2D);
+        glDisable(GL_BLEND);
     }
 
     public void drawDepth() {
-        for (Chunk c : chunks.values()) {
-            c.renderDepth();
+        List<Chunk> visible = new ArrayList<>();
+        for (Chunk c : chunks) {
+            if (isVisible(c)) {
+                visible.add(c);
+            }
+        }
+
+        ShadowRenderer.beginTerrainDepth(scale);
+        buffers.drawTerrain(visible, true);
+        ShadowRenderer.endTerrainDepth();
+        ShadowRenderer.beginGrassDepth();
+        buffers.drawGrass(visible, true);
+        ShadowRenderer.endGrassDepth();
+
+        for (Chunk c : visible) {
+            c.renderFeatureDepth();
         }
     }
 
@@ -281,20 +541,28 @@ public class TerrainManager {
         return weights;
     }
 
+    public BiomeField getBiomeField() {
+        return biomeField;
+    }
+
+    BiomeBlender getBiomeBlender() {
+        return biomeBlender;
+    }
+
     public Biome getDominantBiome(double wx, double wz) {
         return getBiomeWeights(wx, wz).entrySet().stream()
                 .max(Map.Entry.comparingByValue())
                 .map(Map.Entry::getKey).orElse(Biome.PLAINS);
     }
 
-    public int getTexture(String name) {
-        return textureMap.getOrDefault(name, 0);
+    public int getTerrainLayer(String name) {
+        return terrainLayers.getOrDefault(name, 0);
     }
-    public int getWaterBottomTexture() {
-        return waterBottomTex;
+    public int getWaterBottomLayer() {
+        return waterBottomLayer;
     }
-    public int getWaterBottomAbsTexture() {
-        return waterBottomAbsTex;
+    public int getWaterBottomAbsLayer() {
+        return waterBottomAbsLayer;
     }
 
     public void setRenderDistance(int r) {
@@ -315,8 +583,8 @@ public class TerrainManager {
         return featureRenderDist;
     }
 
-    public int getSnowTexture() {
-        return snowTex;
+    public int getSnowLayer() {
+        return snowLayer;
     }
 
     public Biome getBiome(int wcx, int wcz) {
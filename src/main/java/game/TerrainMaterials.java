@@ -0,0 +1,39 @@
+package game;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * Terrain texture array layers of each biome, resolved from {@link TerrainManager} once,
+ * so that meshing reads a biome's layers from an array instead of looking them up by
+ * file name.
+ */
+final class TerrainMaterials {
+    // Indexed by Biome.ordinal()
+    private final int[] grass;
+    private final int[] dirt;
+    private final int[] rock;
+
+    TerrainMaterials(ToIntFunction<String> layers) {
+        Biome[] biomes = Biome.values();
+        grass = new int[biomes.length];
+        dirt = new int[biomes.length];
+        rock = new int[biomes.length];
+        for (Biome b : biomes) {
+            grass[b.ordinal()] = layers.applyAsInt(b.grassTex);
+            dirt[b.ordinal()] = layers.applyAsInt(b.dirtTex);
+            rock[b.ordinal()] = layers.applyAsInt(b.rockTex);
+        }
+    }
+
+    int grass(Biome biome) {
+        return grass[biome.ordinal()];
+    }
+
+    int dirt(Biome biome) {
+        return dirt[biome.ordinal()];
+    }
+
+    int rock(Biome biome) {
+        return rock[biome.ordinal()];
+    }
+}
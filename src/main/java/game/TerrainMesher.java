@@ -0,0 +1,182 @@
+package game;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static game.Chunk.*;
+
+/**
+ * Builds a chunk's terrain as a heightmap over the shared grid of its LOD. Each lattice
+ * vertex is one texel: its height, a smooth normal from the central-difference
+ * gradient and its slope. Four more texels hold how far each edge's skirt hangs. The
+ * grid itself, the same for every chunk at a LOD, is built once by {@link #grid}.
+ *
+ * <p>Materials are not chosen here. The chunk's biome names its grass, dirt and rock
+ * layers of the terrain texture array; the terrain shader blends those with the slope
+ * and height-based snow and lake-bed layers per fragment, so a chunk is one instance of
+ * its grid. The mesher holds no per-chunk state and allocates only the buffers it returns.
+ *
+ * <p>Texels are four shorts, read by the terrain shaders as an integer buffer texture:
+ * the height in 1/{@link #Y_STEPS} units, the normal octahedral-encoded as two
+ * normalised shorts, and the slope in 1/{@link #SLOPE_STEPS} units. Skirt texels hold
+ * only a height.
+ */
+final class TerrainMesher {
+    static final int TEXEL_BYTES = 8;
+    // Grid vertices: x and z in vertex steps, then the texel of their surface sample
+    // and the texel of their height, which is a skirt texel for skirt bottoms
+    static final int GRID_STRIDE_BYTES = 8;
+    static final int GRID_TEXELS_OFFSET_BYTES = 4;
+    // Height resolution; shorts cover heights of +-512
+    static final float Y_STEPS = 64f;
+    // Slope resolution
+    static final float SLOPE_STEPS = 64f;
+    // Quads per strip: the two vertex rows in use (16 vertices) fit a 16-entry FIFO cache
+    static final int STRIP_QUADS = 7;
+
+    private final TerrainMaterials materials;
+    private final float scale;
+
+    TerrainMesher(TerrainMaterials materials, float scale) {
+        this.materials = materials;
+        this.scale = scale;
+    }
+
+    /** Surface texels of a chunk at the given LOD, then its four skirt texels. */
+    static int texelCount(int lod) {
+        int n = lattice(lod).length - 2 * APRON;
+        return n * n + 4;
+    }
+
+    ChunkData.Heightmap build(Biome biome, int lod, float[][] heights, SlopeField slopes, float[] skirtBottoms) {
+        int[] lattice = lattice(lod);
+        int n = lattice.length - 2 * APRON;
+        int surface = n * n;
+
+        // Surface texel (i, j) is i * n + j; skirt texels follow, edge by edge
+        // A heap buffer: workers do not touch native memory, the upload copies it once into staging
+        ByteBuffer texels = ByteBuffer.allocate(texelCount(lod) * TEXEL_BYTES).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                int x = lattice[i + APRON], z = lattice[j + APRON];
+                putTexel(texels, i * n + j, x, z, heights[x + APRON][z + APRON], slopes);
+            }
+        }
+        for (int edge = 0; edge < 4; edge++) {
+            texels.putShort((surface + edge) * TEXEL_BYTES, toHeightSteps(skirtBottoms[edge]));
+        }
+        return new ChunkData.Heightmap(texels, materials.grass(biome), materials.dirt(biome), materials.rock(biome));
+    }
+
+    /**
+     * The grid every chunk at a LOD is drawn with: one vertex per lattice vertex and one
+     * per skirt bottom, and triangles in narrow column strips so a strip's previous row
+     * is still in the post-transform vertex cache.
+     */
+    static Grid grid(int lod) {
+        int[] lattice = lattice(lod);
+        int n = lattice.length - 2 * APRON;
+        int cells = n - 1;
+        int surface = n * n;
+        int vertexCount = surface + 4 * n;
+
+        // Surface vertex (i, j) is i * n + j; skirt bottoms follow, edge by edge
+        ByteBuffer vertices = ByteBuffer.allocate(vertexCount * GRID_STRIDE_BYTES).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                int texel = i * n + j;
+                putGridVertex(vertices, texel, lattice[i + APRON], lattice[j + APRON], texel, texel);
+            }
+        }
+        // Skirt bottoms share the normal and slope of the edge vertex above them
+        for (int k = 0; k < n; k++) {
+            int v = lattice[k + APRON];
+            putGridVertex(vertices, surface + k, v, 0, k * n, surface);
+            putGridVertex(vertices, surface + n + k, v, SIZE, k * n + cells, surface + 1);
+            putGridVertex(vertices, surface + 2 * n + k, 0, v, k, surface + 2);
+            putGridVertex(vertices, surface + 3 * n + k, SIZE, v, cells * n + k, surface + 3);
+        }
+
+        short[] indices = new short[(2 * cells * cells + 8 * cells) * 3];
+        int o = 0;
+        for (int strip = 0; strip < cells; strip += STRIP_QUADS) {
+            int end = Math.min(cells, strip + STRIP_QUADS);
+            for (int j = 0; j < cells; j++) {
+                for (int i = strip; i < end; i++) {
+                    int v00 = i * n + j, v10 = (i + 1) * n + j;
+                    int v01 = i * n + j + 1, v11 = (i + 1) * n + j + 1;
+                    o = putTriangle(indices, o, v00, v10, v01);
+                    o = putTriangle(indices, o, v10, v11, v01);
+                }
+            }
+        }
+
+        // Neighbours at another LOD do not share every edge vertex; skirts hide the cracks
+        for (int k = 0; k < cells; k++) {
+            o = putSkirt(indices, o, k * n, (k + 1) * n, surface + k);
+            o = putSkirt(indices, o, k * n + cells, (k + 1) * n + cells, surface + n + k);
+            o = putSkirt(indices, o, k, k + 1, surface + 2 * n + k);
+            o = putSkirt(indices, o, cells * n + k, cells * n + k + 1, surface + 3 * n + k);
+        }
+
+        return new Grid(vertices, vertexCount, indices);
+    }
+
+    // Smooth normal from the gradient, which is per vertex step and so divided by scale
+    private void putTexel(ByteBuffer texels, int index, int x, int z, float y, SlopeField slopes) {
+        float gx = slopes.gradientX(x, z) / scale;
+        float gz = slopes.gradientZ(x, z) / scale;
+
+        int o = index * TEXEL_BYTES;
+        texels.putShort(o, toHeightSteps(y));
+        putOctahedral(texels, o + 2, -gx, 1f, -gz);
+        texels.putShort(o + 6, (short) Math.min(Short.MAX_VALUE, Math.round(slopes.at(x, z) * SLOPE_STEPS)));
+    }
+
+    private static short toHeightSteps(float y) {
+        return (short) Math.round(y * Y_STEPS);
+    }
+
+    private static void putGridVertex(ByteBuffer vertices, int index, int x, int z, int texel, int heightTexel) {
+        int o = index * GRID_STRIDE_BYTES;
+        vertices.putShort(o, (short) x);
+        vertices.putShort(o + 2, (short) z);
+        vertices.putShort(o + GRID_TEXELS_OFFSET_BYTES, (short) texel);
+        vertices.putShort(o + GRID_TEXELS_OFFSET_BYTES + 2, (short) heightTexel);
+    }
+
+    /**
+     * Writes a direction (need not be unit length) as two normalised shorts: projected
+     * onto the octahedron |x| + |y| + |z| = 1 and unfolded onto the xz square, with the
+     * lower half folded over the diagonals.
+     */
+    static void putOctahedral(ByteBuffer buffer, int offset, float nx, float ny, float nz) {
+        float l1 = Math.abs(nx) + Math.abs(ny) + Math.abs(nz);
+        float u = nx / l1, v = nz / l1;
+        if (ny < 0f) {
+            float fu = (1f - Math.abs(v)) * (u >= 0f ? 1f : -1f);
+            v = (1f - Math.abs(u)) * (v >= 0f ? 1f : -1f);
+            u = fu;
+        }
+        buffer.putShort(offset, (short) Math.round(u * Short.MAX_VALUE));
+        buffer.putShort(offset + 2, (short) Math.round(v * Short.MAX_VALUE));
+    }
+
+    private static int putTriangle(short[] indices, int o, int a, int b, int c) {
+        indices[o] = (short) a;
+        indices[o + 1] = (short) b;
+        indices[o + 2] = (short) c;
+        return o + 3;
+    }
+
+    // Two triangles from an edge segment down to the skirt bottoms below it
+    private static int putSkirt(short[] indices, int o, int top1, int top2, int bottom1) {
+        int bottom2 = bottom1 + 1;
+        o = putTriangle(indices, o, top1, top2, bottom2);
+        return putTriangle(indices, o, top1, bottom2, bottom1);
+    }
+
+    /** The shared grid of one LOD: packed vertices (see {@link #GRID_STRIDE_BYTES}) and triangle indices. */
+    record Grid(ByteBuffer vertices, int vertexCount, short[] indices) {
+    }
+}
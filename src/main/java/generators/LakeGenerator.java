@@ -1,37 +1,40 @@
 package generators;
 
 import game.Biome;
-import game.TerrainManager;
 import game.Chunk;
+import game.SlopeField;
 import objects.Feature;
 import objects.Lake;
-import spawners.FeatureSpawner;
-import spawners.LakeSpawner;
-import util.FeatureUtil;
+import spawners.SpawnTable;
+import util.HashRandom;
 
 import java.util.List;
-import java.util.Map;
-import java.util.Random;
 
+/**
+ * Places lakes inside a chunk and carves them into its apron-padded heightfield.
+ * Carving never reaches the border vertices or the ring next to them, which are also
+ * part of the neighbours' aprons, so shared edges and their slopes stay pure noise.
+ */
 public class LakeGenerator {
+    // First and last vertex index that may be carved, counted from the chunk edge
+    private static final int CARVE_MARGIN = 2;
+
     public static void generateLakes(
-            Chunk chunk,
+            int cx,
+            int cz,
+            float scale,
             Biome biome,
             float[][] heights,
+            SlopeField slopes,
             boolean[][] featureMask,
             List<Feature> features,
-            TerrainManager manager) {
+            long worldSeed) {
 
-        if (biome.features == null || biome.features.isEmpty())
+        SpawnTable table = biome.spawnTable;
+        if (table.getLakeCount() == 0)
             return;
 
         int SIZE = Chunk.SIZE;
-        int cx = chunk.cx;
-        int cz = chunk.cz;
-        float scale = chunk.getScale();
-
-        long chunkSeed = FeatureUtil.hashSeed(cx, 0, cz, manager.getSeed());
-        Random rand = new Random(chunkSeed);
 
         for (int x = 0; x < SIZE; x++) {
             for (int z = 0; z < SIZE; z++) {
@@ -40,23 +43,20 @@ public class LakeGenerator {
 
                 float wx = (cx * SIZE + x + 0.5f) * scale;
                 float wz = (cz * SIZE + z + 0.5f) * scale;
-                float wy = heights[x][z];
+                float wy = heights[x + Chunk.APRON][z + Chunk.APRON];
 
-                float avgSlope = averageSurroundingSlope(heights, x, z, 2);
+                float avgSlope = averageSurroundingSlope(slopes, x, z, 2);
                 if (avgSlope > 0.7f)
                     continue;
 
-                for (Map.Entry<FeatureSpawner, Float> entry : biome.features.entrySet()) {
-                    if (!(entry.getKey() instanceof LakeSpawner))
-                        continue;
-
-                    if (rand.nextFloat() < entry.getValue()) {
-                        int ix = cx * SIZE + x;
-                        int iz = cz * SIZE + z;
-                        int iy = Math.round(wy * 1000);
-                        long seed = FeatureUtil.hashSeed(ix, iy, iz, manager.getSeed());
+                int ix = cx * SIZE + x;
+                int iz = cz * SIZE + z;
+                long cellKey = HashRandom.key(worldSeed, ix, iz, HashRandom.STREAM_LAKE);
+                for (int i = 0; i < table.getLakeCount(); i++) {
+                    if (HashRandom.nextFloat(cellKey, i) < table.getLakeChance(i)) {
+                        long seed = HashRandom.key(worldSeed, ix, iz, HashRandom.STREAM_FEATURE);
 
-                        Feature f = entry.getKey().spawn(wx, wy, wz, seed);
+                        Feature f = table.getLake(i).spawn(wx, wy, wz, seed);
                         if (!(f instanceof Lake lake))
                             continue;
                         if (!isLakeWithinChunk(lake, cx, cz, scale, SIZE))
@@ -65,7 +65,8 @@ public class LakeGenerator {
                             continue;
 
                         features.add(lake);
-                        carveLakeHole(lake, chunk, cx, cz, scale, heights, featureMask);
+                        carveLakeHole(lake, cx, cz, scale, heights, featureMask);
+                        slopes.recompute();
                         markLakeArea(lake, cx, cz, scale, SIZE, featureMask);
                     }
                 }
@@ -73,40 +74,11 @@ public class LakeGenerator {
         }
     }
 
-    private static float averageSurroundingSlope(float[][] heights, int centerX, int centerZ, int radius) {
-        int count = 0;
-        float totalSlope = 0;
-        int SIZE = Chunk.SIZE;
-
-        for (int dx = -radius; dx <= radius; dx++) {
-            for (int dz = -radius; dz <= radius; dz++) {
-                int x = centerX + dx;
-                int z = centerZ + dz;
-
-                if (x >= 0 && z >= 0 && x < SIZE && z < SIZE) {
-                    totalSlope += computeSlope(heights, x, z);
-                    count++;
-                }
-            }
-        }
-        return (count > 0) ? totalSlope / count : 1f;
-    }
-
-    private static float computeSlope(float[][] heights, int x, int z) {
-        int SIZE = Chunk.SIZE;
-        int x0 = Math.max(0, x - 1);
-        int x1 = Math.min(SIZE, x + 1);
-        int z0 = Math.max(0, z - 1);
-        int z1 = Math.min(SIZE, z + 1);
-
-        float hL = heights[x0][z];
-        float hR = heights[x1][z];
-        float hD = heights[x][z0];
-        float hU = heights[x][z1];
-
-        float dx = (hR - hL) * 0.5f;
-        float dz = (hU - hD) * 0.5f;
-        return (float) Math.sqrt(dx * dx + dz * dz);
+    // Mean slope of the cells within radius, not counting the far edge vertices
+    private static float averageSurroundingSlope(SlopeField slopes, int centerX, int centerZ, int radius) {
+        int last = Chunk.SIZE - 1;
+        return slopes.average(centerX - radius, centerZ - radius,
+                Math.min(last, centerX + radius), Math.min(last, centerZ + radius));
     }
 
     private static boolean isLakeWithinChunk(Lake lake, int cx, int cz, float scale, int SIZE) {
@@ -173,7 +145,7 @@ public class LakeGenerator {
         }
     }
 
-    private static void carveLakeHole(Lake lake, Chunk chunk, int cx, int cz, float scale, float[][] heights,
+    private static void carveLakeHole(Lake lake, int cx, int cz, float scale, float[][] heights,
                                       boolean[][] featureMask) {
         int SIZE = Chunk.SIZE;
         float wx = lake.x;
@@ -191,7 +163,7 @@ public class LakeGenerator {
 
         for (int ix = startX; ix <= endX; ix++) {
             for (int iz = startZ; iz <= endZ; iz++) {
-                if (ix < 0 || iz < 0 || ix >= SIZE || iz >= SIZE)
+                if (ix < CARVE_MARGIN || iz < CARVE_MARGIN || ix > SIZE - CARVE_MARGIN || iz > SIZE - CARVE_MARGIN)
                     continue;
 
                 float wxi = (cx * SIZE + ix + 0.5f) * scale;
@@ -209,7 +181,7 @@ public class LakeGenerator {
                 if (dist < 1f) {
                     float falloff = 1f - (float) Math.sqrt(dist);
                     float drop = depth * (float) Math.pow(falloff, 1.5f);
-                    float requiredY = heights[ix][iz] + drop;
+                    float requiredY = heights[ix + Chunk.APRON][iz + Chunk.APRON] + drop;
                     requiredLakeY = Math.min(requiredLakeY, requiredY);
                 }
             }
@@ -219,7 +191,7 @@ public class LakeGenerator {
 
         for (int ix = startX; ix <= endX; ix++) {
             for (int iz = startZ; iz <= endZ; iz++) {
-                if (ix < 0 || iz < 0 || ix >= SIZE || iz >= SIZE)
+                if (ix < CARVE_MARGIN || iz < CARVE_MARGIN || ix > SIZE - CARVE_MARGIN || iz > SIZE - CARVE_MARGIN)
                     continue;
 
                 float wxi = (cx * SIZE + ix + 0.5f) * scale;
@@ -238,7 +210,8 @@ public class LakeGenerator {
                     float falloff = 1f - (float) Math.sqrt(dist);
                     float drop = depth * (float) Math.pow(falloff, 1.5f);
                     float targetY = lake.y - drop;
-                    heights[ix][iz] = Math.min(heights[ix][iz], targetY);
+                    int ax = ix + Chunk.APRON, az = iz + Chunk.APRON;
+                    heights[ax][az] = Math.min(heights[ax][az], targetY);
                     featureMask[ix][iz] = true;
                 }
             }
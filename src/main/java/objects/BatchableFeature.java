@@ -1,8 +1,18 @@
 package objects;
 
-import util.VertexBatchBuilder;
+import java.nio.ByteBuffer;
 
+/** A feature drawn as an instance of a shared template, together with the rest of its chunk. */
 public interface BatchableFeature {
-    void appendToBatch(VertexBatchBuilder builder);
+    /** Which of the shared templates this is an instance of. */
+    int getVariant();
+
+    /** Appends this feature's instance data, with its position relative to the given origin. */
+    void putInstance(ByteBuffer buffer, float originX, float originZ);
+
+    /** Texture the template is drawn with, or -1 to draw it untextured. */
     int getBatchTextureId();
+
+    /** RGB colour the template is drawn in, multiplied with the texture if there is one. */
+    float[] getBatchColor();
 }
@@ -1,6 +1,6 @@
 package objects;
 
-import util.FeatureUtil;
+import util.HashRandom;
 import util.TextureLoader;
 
 import static org.lwjgl.opengl.GL11.*;
@@ -9,34 +9,32 @@ import java.util.*;
 public class Cactus extends Feature {
     private final List<Segment> segments = new ArrayList<>();
     private final int texture;
-    private final Random rand;
     private final float maxHeight;
 
     private static final int SEGMENTS = 16; // More sides for rounder cactus
 
-    public Cactus(float x, float y, float z, long globalSeed) {
+    public Cactus(float x, float y, float z, long seed) {
         super(x, y, z);
 
         this.texture = TextureLoader.getOrLoad("cactus.png");
 
-        long seed = FeatureUtil.hashSeed(x, y, z, globalSeed);
-        this.rand = new Random(seed);
+        int draw = 0;
 
-        float height = 2.5f + rand.nextFloat() * 2.5f; // Taller cactus
+        float height = 2.5f + HashRandom.nextFloat(seed, draw++) * 2.5f; // Taller cactus
         segments.add(new Segment(height, 0.3f, 0f, 0f)); // main trunk
 
         // Main arms
-        int arms = 1 + rand.nextInt(3); // More arms
+        int arms = 1 + HashRandom.nextInt(seed, draw++, 3); // More arms
         for (int i = 0; i < arms; i++) {
-            float armHeight = 1.0f + rand.nextFloat() * 0.8f;
-            float offsetY = 0.7f + rand.nextFloat() * (height - 1.5f);
-            float angle = rand.nextFloat() * 360f;
+            float armHeight = 1.0f + HashRandom.nextFloat(seed, draw++) * 0.8f;
+            float offsetY = 0.7f + HashRandom.nextFloat(seed, draw++) * (height - 1.5f);
+            float angle = HashRandom.nextFloat(seed, draw++) * 360f;
             segments.add(new Segment(armHeight, 0.15f, offsetY, angle));
 
             // Maybe split the arm!
-            if (rand.nextFloat() < 0.5f) {
-                float splitHeight = 0.5f + rand.nextFloat() * 0.5f;
-                segments.add(new Segment(splitHeight, 0.1f, offsetY + armHeight * 0.5f, angle + rand.nextFloat() * 60f - 30f));
+            if (HashRandom.nextFloat(seed, draw++) < 0.5f) {
+                float splitHeight = 0.5f + HashRandom.nextFloat(seed, draw++) * 0.5f;
+                segments.add(new Segment(splitHeight, 0.1f, offsetY + armHeight * 0.5f, angle + HashRandom.nextFloat(seed, draw++) * 60f - 30f));
             }
         }
 
@@ -1,9 +1,8 @@
 package objects;
 import renderers.ShadowRenderer;
-import util.FeatureUtil;
+import util.HashRandom;
 
 import static org.lwjgl.opengl.GL11.*;
-import java.util.Random;
 
 public class Flower extends Feature {
     private final FlowerType type;
@@ -11,32 +10,28 @@ public class Flower extends Feature {
     private final float[] petalScales;
     private final float[] leafAngles;
     private final float[] leafSizes;
-    private final Random rand;
 
     private int displayList = -1;
 
-    public Flower(float x, float y, float z, FlowerType type, long globalSeed) {
+    public Flower(float x, float y, float z, FlowerType type, long seed) {
         super(x, y, z);
         this.type = type;
 
-        long seed = FeatureUtil.hashSeed(x, y, z, globalSeed);
-        this.rand = new Random(seed);
-
         int petalCount = 6;
         petalAngles = new float[petalCount];
         petalScales = new float[petalCount];
         for (int i = 0; i < petalCount; i++) {
-            petalAngles[i] = rand.nextFloat() * 15f - 7.5f;
-            petalScales[i] = 0.9f + rand.nextFloat() * 0.2f;
+            petalAngles[i] = HashRandom.nextFloat(seed, 2 * i) * 15f - 7.5f;
+            petalScales[i] = 0.9f + HashRandom.nextFloat(seed, 2 * i + 1) * 0.2f;
         }
 
         leafAngles = new float[] {
-                rand.nextFloat() * 360f,
-                rand.nextFloat() * 360f
+                HashRandom.nextFloat(seed, 2 * petalCount) * 360f,
+                HashRandom.nextFloat(seed, 2 * petalCount + 1) * 360f
         };
         leafSizes = new float[] {
-                0.1f + rand.nextFloat() * 0.05f,
-                0.1f + rand.nextFloat() * 0.05f
+                0.1f + HashRandom.nextFloat(seed, 2 * petalCount + 2) * 0.05f,
+                0.1f + HashRandom.nextFloat(seed, 2 * petalCount + 3) * 0.05f
         };
 
         buildDisplayList();
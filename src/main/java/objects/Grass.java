@@ -1,16 +1,16 @@
 package objects;
 
-import util.FeatureUtil;
+import util.HashRandom;
 import util.TextureLoader;
-import org.lwjgl.BufferUtils;
-import util.VertexBatchBuilder;
 
-import static org.lwjgl.opengl.GL11.*;
-import static org.lwjgl.opengl.GL15.*;
-
-import java.nio.FloatBuffer;
-import java.util.Random;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
+/**
+ * A tuft of grass blades. Tufts own no geometry: each is an instance of one of
+ * {@link #VARIANTS} shared tufts, turned and scaled by its seed, and the chunk draws
+ * all of its tufts instanced from {@link #buildTufts()}.
+ */
 public class Grass extends Feature implements BatchableFeature {
     private static final int BLADE_COUNT = 32;
 
@@ -19,136 +19,94 @@ public class Grass extends Feature implements BatchableFeature {
     private static final float BLADE_BASE_HEIGHT = 1.2f;
     private static final float BLADE_HEIGHT_VARIATION = 0.6f;
     private static final float SPREAD = 1f; // Controls how wide blades spread out
+    private static final float MIN_SCALE = 0.8f;
+    private static final float MAX_SCALE = 1.2f;
+
+    public static final int VARIANTS = 8;
+    // Two crossed quads per blade
+    public static final int TUFT_VERTICES = BLADE_COUNT * 8;
+    // Shared tuft vertices: position and texture coordinate as floats
+    public static final int TUFT_STRIDE_BYTES = 5 * Float.BYTES;
+    public static final int TUFT_TEXCOORD_OFFSET_BYTES = 3 * Float.BYTES;
+    // Instances: position relative to the chunk's corner as floats, then the rotation
+    // in 1/256 turns and the scale in 1/SCALE_STEPS as unsigned bytes
+    public static final int INSTANCE_STRIDE_BYTES = 16;
+    public static final int INSTANCE_SHAPE_OFFSET_BYTES = 12;
+    public static final float SCALE_STEPS = 128f;
+
+    private static final float[] WHITE = { 1f, 1f, 1f };
+
+    private final int textureId;
+    private final float[] color;
+    private final int variant;
+    private final byte rotation;
+    private final byte scale;
+
+    public Grass(float x, float y, float z, String textureName, long seed) {
+        this(x, y, z, TextureLoader.getOrLoad(textureName), WHITE, seed);
+    }
 
-    private final int textureId; // <--- INSTANCE, not static!
-    private final Random rand;
-    private final int vboId;
-    private final boolean textured;
-    private final float r, g, b;
-    private final float[] verticesData;
-
-    private static final FloatBuffer verticesBuffer =
-            BufferUtils.createFloatBuffer(BLADE_COUNT * 8 * 5);
-
-    public Grass(float x, float y, float z, String textureName, long globalSeed) {
-        super(x, y, z);
-
-        long seed = FeatureUtil.hashSeed(x, y, z, globalSeed);
-        this.rand = new Random(seed);
-        this.textured = true;
-        this.r = 1f;
-        this.g = 1f;
-        this.b = 1f;
-
-        this.textureId = TextureLoader.getOrLoad(textureName); // always per-instance load
-
-        this.verticesData = new float[BLADE_COUNT * 8 * 5];
-        generateGrassVertices();
-        vboId = uploadToGPU();
+    /** An untextured tuft of the given RGB colour, which is shared, not copied. */
+    public Grass(float x, float y, float z, float[] color, long seed) {
+        this(x, y, z, -1, color, seed);
     }
 
-    public Grass(float x, float y, float z, float r, float g, float b, long globalSeed) {
+    private Grass(float x, float y, float z, int textureId, float[] color, long seed) {
         super(x, y, z);
-
-        long seed = FeatureUtil.hashSeed(x, y, z, globalSeed);
-        this.rand = new Random(seed);
-        this.textured = false;
-        this.r = r;
-        this.g = g;
-        this.b = b;
-        this.textureId = -1; // no texture if manually colored
-
-        this.verticesData = new float[BLADE_COUNT * 8 * 5];
-        generateGrassVertices();
-        vboId = uploadToGPU();
+        this.textureId = textureId;
+        this.color = color;
+        this.variant = HashRandom.nextInt(seed, 0, VARIANTS);
+        this.rotation = (byte) HashRandom.nextInt(seed, 1, 256);
+        float s = MIN_SCALE + HashRandom.nextFloat(seed, 2) * (MAX_SCALE - MIN_SCALE);
+        this.scale = (byte) Math.round(s * SCALE_STEPS);
     }
 
-    private int uploadToGPU() {
-        int id = glGenBuffers();
-        glBindBuffer(GL_ARRAY_BUFFER, id);
-        glBufferData(GL_ARRAY_BUFFER, verticesBuffer, GL_STATIC_DRAW);
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        return id;
+    /**
+     * The vertices of every shared tuft, variant after variant, {@link #TUFT_VERTICES}
+     * each, as quads in native byte order.
+     */
+    public static ByteBuffer buildTufts() {
+        ByteBuffer tufts = ByteBuffer.allocate(VARIANTS * TUFT_VERTICES * TUFT_STRIDE_BYTES)
+                .order(ByteOrder.nativeOrder());
+        for (int variant = 0; variant < VARIANTS; variant++) {
+            putTuft(tufts, variant);
+        }
+        return tufts.flip();
     }
 
-    private void generateGrassVertices() {
-        verticesBuffer.clear();
-
-        int index = 0;
+    private static void putTuft(ByteBuffer tufts, long seed) {
         for (int i = 0; i < BLADE_COUNT; i++) {
-            float offsetX = (rand.nextFloat() - 0.5f) * SPREAD;
-            float offsetZ = (rand.nextFloat() - 0.5f) * SPREAD;
-            float height = BLADE_BASE_HEIGHT + rand.nextFloat() * BLADE_HEIGHT_VARIATION;
-            float angle = rand.nextFloat() * 360f;
-            float lean = (rand.nextFloat() - 0.5f) * 0.4f;
+            int draw = i * 5;
+            float offsetX = (HashRandom.nextFloat(seed, draw) - 0.5f) * SPREAD;
+            float offsetZ = (HashRandom.nextFloat(seed, draw + 1) - 0.5f) * SPREAD;
+            float height = BLADE_BASE_HEIGHT + HashRandom.nextFloat(seed, draw + 2) * BLADE_HEIGHT_VARIATION;
+            float angle = HashRandom.nextFloat(seed, draw + 3) * 360f;
+            float lean = (HashRandom.nextFloat(seed, draw + 4) - 0.5f) * 0.4f;
 
             for (int q = 0; q < 2; q++) {
                 float a = (float) Math.toRadians(angle + q * 90f);
                 float cos = (float) Math.cos(a);
                 float sin = (float) Math.sin(a);
 
-                index = putRotated(offsetX, offsetZ, -BLADE_HALF_BASE, 0f, cos, sin, 0f, 0f, index);
-                index = putRotated(offsetX, offsetZ,  BLADE_HALF_BASE, 0f, cos, sin, 1f, 0f, index);
-                index = putRotated(offsetX, offsetZ,  BLADE_HALF_TOP + lean, height, cos, sin, 1f, 1f, index);
-                index = putRotated(offsetX, offsetZ, -BLADE_HALF_TOP + lean, height, cos, sin, 0f, 1f, index);
+                putRotated(tufts, offsetX, offsetZ, -BLADE_HALF_BASE, 0f, cos, sin, 0f, 0f);
+                putRotated(tufts, offsetX, offsetZ,  BLADE_HALF_BASE, 0f, cos, sin, 1f, 0f);
+                putRotated(tufts, offsetX, offsetZ,  BLADE_HALF_TOP + lean, height, cos, sin, 1f, 1f);
+                putRotated(tufts, offsetX, offsetZ, -BLADE_HALF_TOP + lean, height, cos, sin, 0f, 1f);
             }
         }
-
-        verticesBuffer.flip();
     }
 
-    private int putRotated(float offX, float offZ,
-                            float localX, float localY,
-                            float cos, float sin,
-                            float u, float v,
-                            int index) {
-        float x = offX + localX * cos;
-        float z = offZ + localX * sin;
-        verticesBuffer.put(x).put(localY).put(z).put(u).put(v);
-        verticesData[index++] = x;
-        verticesData[index++] = localY;
-        verticesData[index++] = z;
-        verticesData[index++] = u;
-        verticesData[index++] = v;
-        return index;
+    private static void putRotated(ByteBuffer tufts, float offX, float offZ,
+                                   float localX, float localY,
+                                   float cos, float sin,
+                                   float u, float v) {
+        tufts.putFloat(offX + localX * cos).putFloat(localY).putFloat(offZ + localX * sin);
+        tufts.putFloat(u).putFloat(v);
     }
 
+    /** Drawn with the rest of its chunk's grass; see {@link #putInstance}. */
     @Override
     public void draw() {
-        glPushMatrix();
-        glTranslatef(x, y, z);
-
-        if (textured && textureId != -1) {
-            glEnable(GL_TEXTURE_2D);
-            glBindTexture(GL_TEXTURE_2D, textureId);
-            glColor3f(1f, 1f, 1f);
-            glEnable(GL_BLEND);
-            glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
-        } else {
-            glDisable(GL_TEXTURE_2D);
-            glColor3f(r, g, b);
-            glDisable(GL_BLEND);
-        }
-
-        glBindBuffer(GL_ARRAY_BUFFER, vboId);
-        glEnableClientState(GL_VERTEX_ARRAY);
-        glEnableClientState(GL_TEXTURE_COORD_ARRAY);
-
-        glVertexPointer(3, GL_FLOAT, 5 * 4, 0);
-        glTexCoordPointer(2, GL_FLOAT, 5 * 4, 3 * 4);
-
-        glDrawArrays(GL_QUADS, 0, BLADE_COUNT * 8);
-
-        glDisableClientState(GL_TEXTURE_COORD_ARRAY);
-        glDisableClientState(GL_VERTEX_ARRAY);
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-
-        if (textured && textureId != -1) {
-            glDisable(GL_TEXTURE_2D);
-            glDisable(GL_BLEND);
-        }
-
-        glPopMatrix();
     }
 
     @Override
@@ -167,16 +125,23 @@ public class Grass extends Feature implements BatchableFeature {
     }
 
     @Override
-    public void dispose() {
-        glDeleteBuffers(vboId);
+    public int getVariant() {
+        return variant;
     }
 
-    public void appendToBatch(VertexBatchBuilder builder) {
-        builder.append(verticesData, x, y, z);
+    @Override
+    public void putInstance(ByteBuffer buffer, float originX, float originZ) {
+        buffer.putFloat(x - originX).putFloat(y).putFloat(z - originZ);
+        buffer.put(rotation).put(scale).putShort((short) 0);
     }
 
     @Override
     public int getBatchTextureId() {
         return textureId;
     }
+
+    @Override
+    public float[] getBatchColor() {
+        return color;
+    }
 }
@@ -1,34 +1,29 @@
 package objects;
 
-import util.FeatureUtil;
+import util.HashRandom;
 import static org.lwjgl.opengl.GL11.*;
-import java.util.Random;
 
 public class Lake extends Feature {
     private final float radiusX;
     private final float radiusZ;
     private final float depth;
-    private final Random rand;
     private final float baseHeight;
     private final int slices = 40;
     private final float[] shapeOffsets; // Precomputed wobble
 
-    public Lake(float x, float y, float z, long globalSeed) {
+    public Lake(float x, float y, float z, long seed) {
         super(x, y, z);
 
-        long seed = FeatureUtil.hashSeed(x, y, z, globalSeed);
-        this.rand = new Random(seed);
-
         // Completely random lake size between 5f and 40f
-        this.radiusX = 5f + rand.nextFloat() * 35f; // 5–40
-        this.radiusZ = 5f + rand.nextFloat() * 35f; // 5–40
+        this.radiusX = 5f + HashRandom.nextFloat(seed, 0) * 35f; // 5–40
+        this.radiusZ = 5f + HashRandom.nextFloat(seed, 1) * 35f; // 5–40
 
-        this.depth = 1.5f + rand.nextFloat() * 3.5f; // 1.5–5 depth range (optionally adjust this)
+        this.depth = 1.5f + HashRandom.nextFloat(seed, 2) * 3.5f; // 1.5–5 depth range (optionally adjust this)
         this.baseHeight = y - depth;
 
         this.shapeOffsets = new float[slices];
         for (int i = 0; i < slices; i++) {
-            shapeOffsets[i] = 0.9f + rand.nextFloat() * 0.2f; // slight wobble between 0.9–1.1
+            shapeOffsets[i] = 0.9f + HashRandom.nextFloat(seed, 3 + i) * 0.2f; // slight wobble between 0.9–1.1
         }
     }
     @Override
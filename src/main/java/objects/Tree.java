@@ -1,6 +1,6 @@
 package objects;
 
-import util.FeatureUtil;
+import util.HashRandom;
 import util.TextureLoader;
 
 import static org.lwjgl.opengl.GL11.*;
@@ -8,7 +8,8 @@ import java.util.*;
 
 public class Tree extends Feature {
     private final Branch root;
-    private final Random rand;
+    private final long seed;
+    private int draws; // Index of the next draw from seed
     private static final int SEGMENTS = 12;
 
     private final int barkTex;
@@ -21,18 +22,17 @@ public class Tree extends Feature {
     private static final Map<TreeType, Integer> spruceDisplayLists = new HashMap<>();
     private int displayList = -1; // Per-tree list (for normal trees)
 
-    public Tree(float x, float y, float z, TreeType type, boolean hasLeaves, long globalSeed) {
+    public Tree(float x, float y, float z, TreeType type, boolean hasLeaves, long seed) {
         super(x, y, z);
         this.type = type;
         this.hasLeaves = hasLeaves;
 
-        long seed = FeatureUtil.hashSeed(x, y, z, globalSeed);
-        this.rand = new Random(seed);
+        this.seed = seed;
 
         this.barkTex = TextureLoader.getOrLoad(type.trunkTex);
         this.leafTex = TextureLoader.getOrLoad(type.leafTex);
 
-        this.height = type.minHeight + rand.nextFloat() * (type.maxHeight - type.minHeight);
+        this.height = type.minHeight + nextFloat() * (type.maxHeight - type.minHeight);
 
         if (type.renderStyle == TreeRenderStyle.SPRUCE) {
             Branch template = getOrCreateSpruceTemplate(type, height);
@@ -44,8 +44,8 @@ public class Tree extends Feature {
         }
     }
 
-    public Tree(float x, float y, float z, TreeType type, long globalSeed) {
-        this(x, y, z, type, true, globalSeed);
+    public Tree(float x, float y, float z, TreeType type, long seed) {
+        this(x, y, z, type, true, seed);
     }
 
     @Override
@@ -186,6 +186,14 @@ public class Tree extends Feature {
         glEndList();
     }
 
+    private float nextFloat() {
+        return HashRandom.nextFloat(seed, draws++);
+    }
+
+    private int nextInt(int bound) {
+        return HashRandom.nextInt(seed, draws++, bound);
+    }
+
     private Branch generateTrunk(float totalHeight, float thickness) {
         if (type.trunkSegments <= 0) {
             Branch root = new Branch();
@@ -194,9 +202,9 @@ public class Tree extends Feature {
             root.rotX = 0f;
             root.rotZ = 0f;
 
-            int branchCount = type.minBranchCount + rand.nextInt(type.maxBranchCount - type.minBranchCount + 1);
+            int branchCount = type.minBranchCount + nextInt(type.maxBranchCount - type.minBranchCount + 1);
             for (int i = 0; i < branchCount; i++) {
-                float branchLength = totalHeight * (0.6f + rand.nextFloat() * 0.4f);
+                float branchLength = totalHeight * (0.6f + nextFloat() * 0.4f);
                 float branchThickness = thickness * 0.6f;
                 root.children.add(generateBranch(1, branchLength, branchThickness));
             }
@@ -204,8 +212,8 @@ public class Tree extends Feature {
         }
 
         float segmentHeight = totalHeight / type.trunkSegments;
-        float baseTiltX = (rand.nextFloat() * 2f - 1f) * type.trunkCurveFactor * 0.4f;
-        float baseTiltZ = (rand.nextFloat() * 2f - 1f) * type.trunkCurveFactor * 0.4f;
+        float baseTiltX = (nextFloat() * 2f - 1f) * type.trunkCurveFactor * 0.4f;
+        float baseTiltZ = (nextFloat() * 2f - 1f) * type.trunkCurveFactor * 0.4f;
 
         Branch root = new Branch();
         root.length = segmentHeight;
@@ -227,9 +235,9 @@ public class Tree extends Feature {
         }
 
         float lastSegmentLength = current.length;
-        int branchCount = type.minBranchCount + rand.nextInt(type.maxBranchCount - type.minBranchCount + 1);
+        int branchCount = type.minBranchCount + nextInt(type.maxBranchCount - type.minBranchCount + 1);
         for (int i = 0; i < branchCount; i++) {
-            float branchLength = lastSegmentLength * (0.6f + rand.nextFloat() * 0.4f);
+            float branchLength = lastSegmentLength * (0.6f + nextFloat() * 0.4f);
             float branchThickness = thickness * 0.6f;
             current.children.add(generateBranch(1, branchLength, branchThickness));
         }
@@ -242,14 +250,14 @@ public class Tree extends Feature {
         b.length = length;
         b.thickness = thickness;
         float maxSpreadAngle = 90f;
-        b.rotX = (depth == 0) ? 0 : rand.nextFloat() * maxSpreadAngle - maxSpreadAngle / 2f;
-        b.rotZ = (depth == 0) ? 0 : rand.nextFloat() * maxSpreadAngle - maxSpreadAngle / 2f;
+        b.rotX = (depth == 0) ? 0 : nextFloat() * maxSpreadAngle - maxSpreadAngle / 2f;
+        b.rotZ = (depth == 0) ? 0 : nextFloat() * maxSpreadAngle - maxSpreadAngle / 2f;
         b.applyOutwardTilt = true;
 
         if (depth < type.maxBranchDepth && thickness > 0.05f) {
-            int count = type.minBranchCount + rand.nextInt(type.maxBranchCount - type.minBranchCount + 1);
+            int count = type.minBranchCount + nextInt(type.maxBranchCount - type.minBranchCount + 1);
             for (int i = 0; i < count; i++) {
-                float newLength = length * (0.6f + rand.nextFloat() * 0.3f);
+                float newLength = length * (0.6f + nextFloat() * 0.3f);
                 float newThickness = thickness * 0.6f;
                 b.children.add(generateBranch(depth + 1, newLength, newThickness));
             }
@@ -1,5 +1,6 @@
 package renderers;
 
+import game.Chunk;
 import game.TerrainManager;
 import org.lwjgl.BufferUtils;
 import util.MatrixUtils;
@@ -7,27 +8,48 @@ import util.ShaderProgram;
 
 import java.io.IOException;
 import java.nio.FloatBuffer;
+import java.util.Map;
 
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL13.*;
 import static org.lwjgl.opengl.GL30.*;
 
 public class ShadowRenderer {
+    // Generic attributes for the terrain's per-instance layers and per-vertex heightmap texels;
+    // 6 and 7 are free of the legacy aliases
+    public static final int TERRAIN_LAYERS_ATTRIB = 6;
+    public static final int TERRAIN_TEXELS_ATTRIB = 7;
+    // The terrain instance's chunk and heightmap; 1 aliases only the vertex weight, which nothing uses
+    public static final int TERRAIN_CHUNK_ATTRIB = 1;
+    // Per-instance grass position and shape; the grass shader uses no legacy attribute these alias
+    public static final int GRASS_OFFSET_ATTRIB = 6;
+    public static final int GRASS_SHAPE_ATTRIB = 7;
+    // Texture unit of the terrain heightmap buffer texture; 0 and 1 hold the layers and the shadow map
+    public static final int TERRAIN_HEIGHTMAP_UNIT = 2;
+
     private static ShadowRenderer active;
+    private static ShadowRenderer depthActive;
 
     private final int shadowSize;
     private final int depthFbo;
     private final int depthTexture;
     private final ShaderProgram depthShader;
     private final ShaderProgram sceneShader;
-    private final int sceneLightMatrixLoc;
-    private final int sceneShadowMapLoc;
+    private final ShaderProgram terrainShader;
+    private final ShaderProgram terrainDepthShader;
+    private final ShaderProgram grassShader;
+    private final ShaderProgram grassDepthShader;
+    private final LightingUniforms sceneLighting;
+    private final LightingUniforms terrainLighting;
+    private final LightingUniforms grassLighting;
     private final int sceneDiffuseLoc;
     private final int sceneUseTextureLoc;
-    private final int sceneLightDirLoc;
-    private final int sceneLightStrengthLoc;
-    private final int sceneViewMatrixLoc;
-    private final int sceneViewInverseLoc;
+    private final int grassUseTextureLoc;
+    private final int terrainSnowLayerLoc;
+    private final int terrainWaterBottomLayerLoc;
+    private final int terrainWaterBottomAbsLayerLoc;
+    private final int terrainScaleLoc;
+    private final int terrainDepthScaleLoc;
     private float[] lastLightMatrix = MatrixUtils.identity();
 
     public ShadowRenderer(int shadowSize) {
@@ -56,14 +78,52 @@ public class ShadowRenderer {
                 loadShader("shaders/shadow_depth.frag"));
         sceneShader = new ShaderProgram(loadShader("shaders/shadow_main.vert"),
                 loadShader("shaders/shadow_main.frag"));
-        sceneLightMatrixLoc = sceneShader.getUniformLocation("uLightMatrix");
-        sceneShadowMapLoc = sceneShader.getUniformLocation("uShadowMap");
+        sceneLighting = new LightingUniforms(sceneShader);
         sceneDiffuseLoc = sceneShader.getUniformLocation("uDiffuse");
         sceneUseTextureLoc = sceneShader.getUniformLocation("uUseTexture");
-        sceneLightDirLoc = sceneShader.getUniformLocation("uLightDir");
-        sceneLightStrengthLoc = sceneShader.getUniformLocation("uLightStrength");
-        sceneViewMatrixLoc = sceneShader.getUniformLocation("uViewMatrix");
-        sceneViewInverseLoc = sceneShader.getUniformLocation("uViewInverse");
+
+        terrainShader = new ShaderProgram(loadShader("shaders/terrain_main.vert"),
+                loadShader("shaders/terrain_main.frag"),
+                Map.of("aLayers", TERRAIN_LAYERS_ATTRIB, "aTexels", TERRAIN_TEXELS_ATTRIB,
+                        "aChunk", TERRAIN_CHUNK_ATTRIB));
+        terrainLighting = new LightingUniforms(terrainShader);
+        terrainSnowLayerLoc = terrainShader.getUniformLocation("uSnowLayer");
+        terrainWaterBottomLayerLoc = terrainShader.getUniformLocation("uWaterBottomLayer");
+        terrainWaterBottomAbsLayerLoc = terrainShader.getUniformLocation("uWaterBottomAbsLayer");
+        terrainScaleLoc = terrainShader.getUniformLocation("uScale");
+        terrainDepthShader = new ShaderProgram(loadShader("shaders/terrain_depth.vert"),
+                loadShader("shaders/shadow_depth.frag"),
+                Map.of("aTexels", TERRAIN_TEXELS_ATTRIB, "aChunk", TERRAIN_CHUNK_ATTRIB));
+        terrainDepthScaleLoc = terrainDepthShader.getUniformLocation("uScale");
+        terrainDepthShader.use();
+        terrainDepthShader.setUniform1i(terrainDepthShader.getUniformLocation("uHeightmaps"), TERRAIN_HEIGHTMAP_UNIT);
+        terrainDepthShader.stop();
+
+        Map<String, Integer> grassAttributes = Map.of("aOffset", GRASS_OFFSET_ATTRIB, "aShape", GRASS_SHAPE_ATTRIB);
+        grassShader = new ShaderProgram(loadShader("shaders/grass_main.vert"),
+                loadShader("shaders/shadow_main.frag"), grassAttributes);
+        grassLighting = new LightingUniforms(grassShader);
+        grassShader.use();
+        grassShader.setUniform1i(grassShader.getUniformLocation("uDiffuse"), 0);
+        grassUseTextureLoc = grassShader.getUniformLocation("uUseTexture");
+        grassShader.setUniform1i(grassUseTextureLoc, 1);
+        grassShader.stop();
+        grassDepthShader = new ShaderProgram(loadShader("shaders/grass_depth.vert"),
+                loadShader("shaders/shadow_depth.frag"), grassAttributes);
+
+        // The material thresholds never change, so they are set once
+        terrainShader.use();
+        terrainShader.setUniform1i(terrainShader.getUniformLocation("uLayers"), 0);
+        terrainShader.setUniform1i(terrainShader.getUniformLocation("uHeightmaps"), TERRAIN_HEIGHTMAP_UNIT);
+        terrainShader.setUniform1f(terrainShader.getUniformLocation("uDirtSlope"), Chunk.DIRT_SLOPE_START);
+        terrainShader.setUniform1f(terrainShader.getUniformLocation("uRockSlope"), Chunk.ROCK_SLOPE_START);
+        terrainShader.setUniform1f(terrainShader.getUniformLocation("uSnowStart"), Chunk.SNOW_HEIGHT_START);
+        terrainShader.setUniform1f(terrainShader.getUniformLocation("uSnowFull"), Chunk.SNOW_HEIGHT_FULL);
+        terrainShader.setUniform1f(terrainShader.getUniformLocation("uWaterBottomHeight"),
+                Chunk.WATER_SURROUNDING_LEVEL);
+        terrainShader.setUniform1f(terrainShader.getUniformLocation("uWaterBottomAbsHeight"),
+                Chunk.ABSOLUTE_WATER_BOTTOM_HEIGHT);
+        terrainShader.stop();
     }
 
     public float[] renderShadowMap(TerrainManager terrain, float[] lightDir, float centerX, float centerY, float centerZ,
@@ -81,6 +141,7 @@ public class ShadowRenderer {
         glMatrixMode(GL_MODELVIEW);
         glLoadMatrixf(toBuffer(buildLightViewMatrix(lightDir, centerX, centerY, centerZ)));
 
+        depthActive = this;
         depthShader.use();
         glColorMask(false, false, false, false);
         glDisable(GL_BLEND);
@@ -94,6 +155,7 @@ public class ShadowRenderer {
         glDisable(GL_POLYGON_OFFSET_FILL);
         glColorMask(true, true, true, true);
         depthShader.stop();
+        depthActive = null;
         glBindFramebuffer(GL_FRAMEBUFFER, 0);
         glViewport(0, 0, screenWidth, screenHeight);
 
@@ -103,13 +165,12 @@ public class ShadowRenderer {
     public void beginScenePass(float[] lightMatrix, float[] lightDir, float lightStrength,
                                float[] viewMatrix, float[] viewInverse) {
         active = this;
+        terrainShader.use();
+        terrainLighting.set(lightMatrix, lightDir, lightStrength, viewMatrix, viewInverse);
+        grassShader.use();
+        grassLighting.set(lightMatrix, lightDir, lightStrength, viewMatrix, viewInverse);
         sceneShader.use();
-        sceneShader.setUniformMatrix4(sceneLightMatrixLoc, toBuffer(lightMatrix));
-        sceneShader.setUniformMatrix4(sceneViewMatrixLoc, toBuffer(viewMatrix));
-        sceneShader.setUniformMatrix4(sceneViewInverseLoc, toBuffer(viewInverse));
-        sceneShader.setUniform3f(sceneLightDirLoc, lightDir[0], lightDir[1], lightDir[2]);
-        sceneShader.setUniform1f(sceneLightStrengthLoc, lightStrength);
-        sceneShader.setUniform1i(sceneShadowMapLoc, 1);
+        sceneLighting.set(lightMatrix, lightDir, lightStrength, viewMatrix, viewInverse);
         sceneShader.setUniform1i(sceneDiffuseLoc, 0);
         sceneShader.setUniform1i(sceneUseTextureLoc, 1);
         glActiveTexture(GL_TEXTURE1);
@@ -131,6 +192,88 @@ public class ShadowRenderer {
         active.sceneShader.setUniform1i(active.sceneUseTextureLoc, useTexture ? 1 : 0);
     }
 
+    /**
+     * Switches the scene pass to the terrain shader, sampling the given texture array.
+     * The layers name the height-based materials that are the same in every biome.
+     * The terrain's heightmaps are bound by its draw to {@link #TERRAIN_HEIGHTMAP_UNIT}.
+     */
+    public static void beginTerrain(int textureArray, int snowLayer, int waterBottomLayer, int waterBottomAbsLayer,
+                                    float scale) {
+        if (active == null) {
+            return;
+        }
+        ShaderProgram shader = active.terrainShader;
+        shader.use();
+        shader.setUniform1f(active.terrainSnowLayerLoc, snowLayer);
+        shader.setUniform1f(active.terrainWaterBottomLayerLoc, waterBottomLayer);
+        shader.setUniform1f(active.terrainWaterBottomAbsLayerLoc, waterBottomAbsLayer);
+        shader.setUniform1f(active.terrainScaleLoc, scale);
+        glBindTexture(GL_TEXTURE_2D_ARRAY, textureArray);
+    }
+
+    public static void endTerrain() {
+        if (active == null) {
+            return;
+        }
+        glBindTexture(GL_TEXTURE_2D_ARRAY, 0);
+        active.sceneShader.use();
+    }
+
+    /** Switches the shadow pass to the terrain depth shader; see {@link #beginTerrain}. */
+    public static void beginTerrainDepth(float scale) {
+        if (depthActive == null) {
+            return;
+        }
+        ShaderProgram shader = depthActive.terrainDepthShader;
+        shader.use();
+        shader.setUniform1f(depthActive.terrainDepthScaleLoc, scale);
+    }
+
+    public static void endTerrainDepth() {
+        if (depthActive == null) {
+            return;
+        }
+        depthActive.depthShader.use();
+    }
+
+    /** Switches the scene pass to the instanced grass shader. */
+    public static void beginGrass() {
+        if (active == null) {
+            return;
+        }
+        active.grassShader.use();
+    }
+
+    public static void endGrass() {
+        if (active == null) {
+            return;
+        }
+        active.sceneShader.use();
+    }
+
+    /** Whether the grass shader samples its texture or uses the plain colour; it samples by default. */
+    public static void setGrassUseTexture(boolean useTexture) {
+        if (active == null) {
+            return;
+        }
+        active.grassShader.setUniform1i(active.grassUseTextureLoc, useTexture ? 1 : 0);
+    }
+
+    /** Switches the shadow pass to the instanced grass depth shader. */
+    public static void beginGrassDepth() {
+        if (depthActive == null) {
+            return;
+        }
+        depthActive.grassDepthShader.use();
+    }
+
+    public static void endGrassDepth() {
+        if (depthActive == null) {
+            return;
+        }
+        depthActive.depthShader.use();
+    }
+
     private float[] buildLightMatrix(float[] lightDir, float centerX, float centerY, float centerZ) {
         float[] view = buildLightViewMatrix(lightDir, centerX, centerY, centerZ);
         float[] proj = buildLightProjectionMatrix();
@@ -165,4 +308,36 @@ public class ShadowRenderer {
         buffer.put(matrix).flip();
         return buffer;
     }
+
+    /** Light, shadow and view uniforms shared by every lit program. */
+    private static final class LightingUniforms {
+        private final ShaderProgram shader;
+        private final int lightMatrixLoc;
+        private final int shadowMapLoc;
+        private final int lightDirLoc;
+        private final int lightStrengthLoc;
+        private final int viewMatrixLoc;
+        private final int viewInverseLoc;
+
+        private LightingUniforms(ShaderProgram shader) {
+            this.shader = shader;
+            lightMatrixLoc = shader.getUniformLocation("uLightMatrix");
+            shadowMapLoc = shader.getUniformLocation("uShadowMap");
+            lightDirLoc = shader.getUniformLocation("uLightDir");
+            lightStrengthLoc = shader.getUniformLocation("uLightStrength");
+            viewMatrixLoc = shader.getUniformLocation("uViewMatrix");
+            viewInverseLoc = shader.getUniformLocation("uViewInverse");
+        }
+
+        // The program must be in use
+        private void set(float[] lightMatrix, float[] lightDir, float lightStrength,
+                         float[] viewMatrix, float[] viewInverse) {
+            shader.setUniformMatrix4(lightMatrixLoc, toBuffer(lightMatrix));
+            shader.setUniformMatrix4(viewMatrixLoc, toBuffer(viewMatrix));
+            shader.setUniformMatrix4(viewInverseLoc, toBuffer(viewInverse));
+            shader.setUniform3f(lightDirLoc, lightDir[0], lightDir[1], lightDir[2]);
+            shader.setUniform1f(lightStrengthLoc, lightStrength);
+            shader.setUniform1i(shadowMapLoc, 1);
+        }
+    }
 }
@@ -5,13 +5,14 @@ import objects.Grass;
 
 public class DeadGrassSpawner implements FeatureSpawner {
     public static final DeadGrassSpawner INSTANCE = new DeadGrassSpawner();
+    private static final float[] COLOR = { 0.05f, 0.05f, 0.05f }; // Almost black
 
     private DeadGrassSpawner() {
     }
 
     @Override
     public Feature spawn(float x, float y, float z, long seed) {
-        return new Grass(x, y, z, 0.05f, 0.05f, 0.05f, seed); // Almost black, seeded
+        return new Grass(x, y, z, COLOR, seed); // Seeded
     }
 
     @Override
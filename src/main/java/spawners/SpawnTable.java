@@ -0,0 +1,142 @@
+package spawners;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A biome's feature spawners compiled into cumulative probability tables, so picking
+ * what grows on a cell takes one random draw. Lakes are kept apart because they are
+ * placed by their own pass.
+ *
+ * <p>The old placement tried each spawner with its own draw, in {@code Map.of} order,
+ * and took the first success. Each spawner's share here is its expected share under
+ * that scheme with the order uniformly random, so the spawn counts are unchanged on
+ * average. Cells above the tree line use a second table built without the tree spawners.
+ */
+public class SpawnTable {
+    public static final SpawnTable EMPTY = compile(Map.of());
+
+    private final FeatureSpawner[] spawners;
+    private final float[] cumulative;
+    private final float[] cumulativeNoTrees;
+    private final LakeSpawner[] lakes;
+    private final float[] lakeChances;
+
+    private SpawnTable(FeatureSpawner[] spawners, float[] cumulative, float[] cumulativeNoTrees,
+                       LakeSpawner[] lakes, float[] lakeChances) {
+        this.spawners = spawners;
+        this.cumulative = cumulative;
+        this.cumulativeNoTrees = cumulativeNoTrees;
+        this.lakes = lakes;
+        this.lakeChances = lakeChances;
+    }
+
+    /** Compiles spawners in the map's iteration order. */
+    public static SpawnTable compile(Map<FeatureSpawner, Float> features) {
+        List<FeatureSpawner> spawners = new ArrayList<>();
+        List<Float> chances = new ArrayList<>();
+        List<LakeSpawner> lakes = new ArrayList<>();
+        List<Float> lakeChances = new ArrayList<>();
+        for (Map.Entry<FeatureSpawner, Float> entry : features.entrySet()) {
+            if (entry.getKey() instanceof LakeSpawner lake) {
+                lakes.add(lake);
+                lakeChances.add(entry.getValue());
+            } else {
+                spawners.add(entry.getKey());
+                chances.add(entry.getValue());
+            }
+        }
+
+        int n = spawners.size();
+        float[] cumulative = new float[n];
+        float[] cumulativeNoTrees = new float[n];
+        fill(spawners, chances, true, cumulative);
+        fill(spawners, chances, false, cumulativeNoTrees);
+
+        float[] lakeArray = new float[lakeChances.size()];
+        for (int i = 0; i < lakeArray.length; i++) {
+            lakeArray[i] = lakeChances.get(i);
+        }
+        return new SpawnTable(spawners.toArray(new FeatureSpawner[0]), cumulative, cumulativeNoTrees,
+                lakes.toArray(new LakeSpawner[0]), lakeArray);
+    }
+
+    private static void fill(List<FeatureSpawner> spawners, List<Float> chances, boolean trees, float[] cumulative) {
+        double[] p = new double[cumulative.length];
+        int n = 0;
+        for (int i = 0; i < p.length; i++) {
+            if (trees || !isTree(spawners.get(i))) {
+                p[i] = Math.min(1.0, Math.max(0.0, chances.get(i)));
+                n++;
+            }
+        }
+
+        double total = 0.0;
+        for (int i = 0; i < p.length; i++) {
+            if (p[i] > 0.0)
+                total += p[i] * chanceOthersMissFirst(p, i, n);
+            cumulative[i] = (float) total;
+        }
+    }
+
+    /**
+     * Probability that every spawner ordered before spawner i fails, over a uniformly
+     * random order of the n candidates. With i at position k, its predecessors are a
+     * uniform k-subset of the others, so this averages e_k(1 - p) / C(n - 1, k) over k.
+     */
+    private static double chanceOthersMissFirst(double[] p, int i, int n) {
+        // Elementary symmetric polynomials of (1 - p_j) over the other candidates
+        double[] e = new double[n];
+        e[0] = 1.0;
+        int m = 0;
+        for (int j = 0; j < p.length; j++) {
+            if (j == i || p[j] == 0.0)
+                continue;
+            m++;
+            for (int k = m; k >= 1; k--) {
+                e[k] += e[k - 1] * (1.0 - p[j]);
+            }
+        }
+        // Spawners with a zero chance never succeed, so they change nothing and are skipped
+        double sum = 0.0, binomial = 1.0;
+        for (int k = 0; k <= m; k++) {
+            sum += e[k] / binomial;
+            binomial = binomial * (m - k) / (k + 1);
+        }
+        return sum / (m + 1);
+    }
+
+    private static boolean isTree(FeatureSpawner spawner) {
+        return spawner instanceof TreeSpawner || spawner instanceof DeadTreeSpawner;
+    }
+
+    /**
+     * The spawner picked by a uniform draw in [0, 1), or null if nothing spawns.
+     * Pass {@code treesAllowed = false} above the tree line.
+     */
+    public FeatureSpawner pick(float draw, boolean treesAllowed) {
+        float[] table = treesAllowed ? cumulative : cumulativeNoTrees;
+        for (int i = 0; i < table.length; i++) {
+            if (draw < table[i])
+                return spawners[i];
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return spawners.length == 0;
+    }
+
+    public int getLakeCount() {
+        return lakes.length;
+    }
+
+    public LakeSpawner getLake(int i) {
+        return lakes[i];
+    }
+
+    public float getLakeChance(int i) {
+        return lakeChances[i];
+    }
+}
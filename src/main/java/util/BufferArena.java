@@ -0,0 +1,103 @@
+package util;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL31.*;
+
+/**
+ * One buffer object shared by many owners, each holding a range of it. Ranges are
+ * counted in units of a fixed size, a vertex stride or an index, so an offset can be
+ * used directly as a first vertex or base vertex. When no free block fits, the buffer
+ * is replaced by one twice the size and the old contents copied over on the GPU;
+ * offsets stay valid, but the buffer id changes, so it must be read at draw time.
+ * Contents are written through an {@link UploadRing}. GL thread only.
+ */
+public final class BufferArena {
+    private final String name;
+    private final int unitBytes;
+    private final RangeAllocator ranges;
+    private int bufferId;
+
+    public BufferArena(String name, int unitBytes, int initialUnits) {
+        this.name = name;
+        this.unitBytes = unitBytes;
+        this.ranges = new RangeAllocator(initialUnits);
+        bufferId = createBuffer((long) initialUnits * unitBytes);
+    }
+
+    /** Reserves a range for the given number of bytes and returns its offset in units. */
+    public int allocate(int bytes) {
+        int units = (bytes + unitBytes - 1) / unitBytes;
+        int offset = ranges.allocate(units);
+        if (offset < 0) {
+            grow(units);
+            offset = ranges.allocate(units);
+        }
+        return offset;
+    }
+
+    public long byteOffset(int offset) {
+        return (long) offset * unitBytes;
+    }
+
+    public void free(int offset) {
+        ranges.free(offset);
+    }
+
+    public int getBufferId() {
+        return bufferId;
+    }
+
+    public int getUnitBytes() {
+        return unitBytes;
+    }
+
+    /** Occupancy and fragmentation of the arena's ranges. */
+    public RangeAllocator getRanges() {
+        return ranges;
+    }
+
+    public long getCapacityBytes() {
+        return (long) ranges.getCapacity() * unitBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d/%d KB in %d ranges, %d free blocks, %.0f%% fragmented", name,
+                (long) ranges.getUsed() * unitBytes / 1024, getCapacityBytes() / 1024, ranges.getRangeCount(),
+                ranges.getFreeBlockCount(), ranges.getFragmentation() * 100f);
+    }
+
+    public void dispose() {
+        if (bufferId != 0) {
+            glDeleteBuffers(bufferId);
+            bufferId = 0;
+        }
+    }
+
+    // Doubles until the request fits in the space past the current end
+    private void grow(int units) {
+        int capacity = Math.max(ranges.getCapacity(), 1);
+        int newCapacity = capacity * 2;
+        while (newCapacity - ranges.getCapacity() < units)
+            newCapacity *= 2;
+
+        int newBuffer = createBuffer((long) newCapacity * unitBytes);
+        glBindBuffer(GL_COPY_READ_BUFFER, bufferId);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, newBuffer);
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, 0, 0, getCapacityBytes());
+        glBindBuffer(GL_COPY_READ_BUFFER, 0);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+        glDeleteBuffers(bufferId);
+
+        bufferId = newBuffer;
+        ranges.grow(newCapacity);
+    }
+
+    private static int createBuffer(long bytes) {
+        int id = glGenBuffers();
+        glBindBuffer(GL_COPY_WRITE_BUFFER, id);
+        glBufferData(GL_COPY_WRITE_BUFFER, bytes, GL_STATIC_DRAW);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+        return id;
+    }
+}
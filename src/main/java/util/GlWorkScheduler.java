@@ -0,0 +1,94 @@
+package util;
+
+import java.util.PriorityQueue;
+
+/**
+ * Queue of GL work (buffer uploads, display list compiles, deletes) that is
+ * drained on the main thread a little at a time. Each frame runs tasks in
+ * priority order until the frame budget is spent; whatever is left carries
+ * over to the next frame.
+ */
+public class GlWorkScheduler {
+    // Lower values run first
+    public static final int PRIORITY_UPLOAD = 0;
+    public static final int PRIORITY_FEATURES = 1000;
+    public static final int PRIORITY_DISPOSE = 2000;
+
+    private final PriorityQueue<Task> queue = new PriorityQueue<>();
+    private long budgetNanos;
+    private long sequence = 0;
+
+    private long lastFrameNanos = 0;
+    private int lastFrameTasks = 0;
+
+    public GlWorkScheduler(float budgetMillis) {
+        setBudgetMillis(budgetMillis);
+    }
+
+    public void setBudgetMillis(float budgetMillis) {
+        this.budgetNanos = (long) (Math.max(0f, budgetMillis) * 1_000_000L);
+    }
+
+    public float getBudgetMillis() {
+        return budgetNanos / 1_000_000f;
+    }
+
+    public void submit(int priority, Runnable work) {
+        queue.add(new Task(priority, sequence++, work));
+    }
+
+    /**
+     * Runs queued work until the budget is used up. At least one task runs per
+     * call so a single task larger than the budget cannot stall the queue.
+     */
+    public void runFrame() {
+        long start = System.nanoTime();
+        int ran = 0;
+        while (!queue.isEmpty()) {
+            if (ran > 0 && System.nanoTime() - start >= budgetNanos)
+                break;
+            queue.poll().work.run();
+            ran++;
+        }
+        lastFrameNanos = System.nanoTime() - start;
+        lastFrameTasks = ran;
+    }
+
+    /** Runs everything that is queued, ignoring the budget. */
+    public void flush() {
+        while (!queue.isEmpty()) {
+            queue.poll().work.run();
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getLastFrameNanos() {
+        return lastFrameNanos;
+    }
+
+    public int getLastFrameTasks() {
+        return lastFrameTasks;
+    }
+
+    private static final class Task implements Comparable<Task> {
+        private final int priority;
+        private final long order;
+        private final Runnable work;
+
+        private Task(int priority, long order, Runnable work) {
+            this.priority = priority;
+            this.order = order;
+            this.work = work;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (priority != other.priority)
+                return Integer.compare(priority, other.priority);
+            return Long.compare(order, other.order);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package util;
+
+/**
+ * Stateless counter-based random numbers built on the SplitMix64 finaliser. A draw is a
+ * pure function of its key and index, so any cell or feature can be regenerated on its
+ * own, on any thread and in any order, without allocating a generator.
+ *
+ * <p>A key names one sequence of draws: a world seed, a grid cell and a stream. Streams
+ * keep the stages that draw for the same cell independent of each other.
+ */
+public final class HashRandom {
+    public static final int STREAM_PLACEMENT = 1;
+    public static final int STREAM_LAKE = 2;
+    public static final int STREAM_FEATURE = 3;
+    public static final int STREAM_REGION = 4;
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private HashRandom() {
+    }
+
+    /** The key for the draws of cell (x, z) in the given stream. */
+    public static long key(long seed, int x, int z, int stream) {
+        long cell = ((long) x << 32) | (z & 0xFFFFFFFFL);
+        return mix(mix(seed + GOLDEN_GAMMA * stream) ^ cell);
+    }
+
+    /** The index-th 64-bit draw of a key. */
+    public static long nextLong(long key, int index) {
+        return mix(key + GOLDEN_GAMMA * (index + 1L));
+    }
+
+    /** The index-th draw of a key as a float in [0, 1). */
+    public static float nextFloat(long key, int index) {
+        return (nextLong(key, index) >>> 40) * 0x1.0p-24f;
+    }
+
+    /** The index-th draw of a key as an int in [0, bound). */
+    public static int nextInt(long key, int index, int bound) {
+        return (int) (((nextLong(key, index) >>> 32) * bound) >>> 32);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
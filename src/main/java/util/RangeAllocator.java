@@ -0,0 +1,127 @@
+package util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * First-fit sub-allocator over a range of units. Free blocks are kept sorted by offset
+ * and merged with their neighbours when a range is freed, so the free list only holds
+ * real gaps. It knows nothing of GL: {@link BufferArena} sizes its buffer from it.
+ */
+public final class RangeAllocator {
+    // Offset to length, for free blocks and for live ranges
+    private final TreeMap<Integer, Integer> free = new TreeMap<>();
+    private final Map<Integer, Integer> allocated = new HashMap<>();
+    private int capacity;
+    private int used = 0;
+
+    public RangeAllocator(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+        this.capacity = capacity;
+        if (capacity > 0)
+            free.put(0, capacity);
+    }
+
+    /** Offset of a new range of the given length, or -1 if no free block is long enough. */
+    public int allocate(int length) {
+        return allocate(length, 1);
+    }
+
+    /**
+     * Offset, a multiple of {@code alignment}, of a new range of the given length, or -1
+     * if no free block holds it. Units skipped to reach the alignment stay free.
+     */
+    public int allocate(int length, int alignment) {
+        if (length <= 0)
+            throw new IllegalArgumentException("Range length must be positive: " + length);
+        if (alignment <= 0)
+            throw new IllegalArgumentException("Alignment must be positive: " + alignment);
+        for (Map.Entry<Integer, Integer> block : free.entrySet()) {
+            int blockStart = block.getKey(), blockLength = block.getValue();
+            int offset = (blockStart + alignment - 1) / alignment * alignment;
+            int padding = offset - blockStart;
+            if (blockLength - padding >= length) {
+                free.remove(blockStart);
+                if (padding > 0)
+                    free.put(blockStart, padding);
+                if (blockLength > padding + length)
+                    free.put(offset + length, blockLength - padding - length);
+                allocated.put(offset, length);
+                used += length;
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns a range to the free list, merging it with the free blocks on either side. */
+    public void free(int offset) {
+        Integer length = allocated.remove(offset);
+        if (length == null)
+            throw new IllegalArgumentException("No range at offset " + offset);
+        used -= length;
+
+        int start = offset, end = offset + length;
+        Map.Entry<Integer, Integer> before = free.floorEntry(start);
+        if (before != null && before.getKey() + before.getValue() == start) {
+            start = before.getKey();
+            free.remove(start);
+        }
+        Integer after = free.remove(end);
+        if (after != null)
+            end += after;
+        free.put(start, end - start);
+    }
+
+    /** Extends the range; the new units join the last free block if it reaches the old end. */
+    public void grow(int newCapacity) {
+        if (newCapacity <= capacity)
+            throw new IllegalArgumentException("Capacity " + newCapacity + " does not exceed " + capacity);
+        int start = capacity;
+        Map.Entry<Integer, Integer> last = free.lastEntry();
+        if (last != null && last.getKey() + last.getValue() == capacity) {
+            start = last.getKey();
+        }
+        free.put(start, newCapacity - start);
+        capacity = newCapacity;
+    }
+
+    /** Length of the range at an offset returned by {@link #allocate}. */
+    public int lengthOf(int offset) {
+        Integer length = allocated.get(offset);
+        if (length == null)
+            throw new IllegalArgumentException("No range at offset " + offset);
+        return length;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getUsed() {
+        return used;
+    }
+
+    public int getRangeCount() {
+        return allocated.size();
+    }
+
+    public int getFreeBlockCount() {
+        return free.size();
+    }
+
+    public int getLargestFreeBlock() {
+        int largest = 0;
+        for (int length : free.values())
+            largest = Math.max(largest, length);
+        return largest;
+    }
+
+    /** Share of the free units outside the largest free block: 0 when all free space is one gap. */
+    public float getFragmentation() {
+        int freeUnits = capacity - used;
+        return freeUnits == 0 ? 0f : 1f - (float) getLargestFreeBlock() / freeUnits;
+    }
+}
@@ -0,0 +1,77 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Offset and fence bookkeeping of {@link UploadRing}, kept apart from the GL calls. The
+ * ring is split into one segment per frame in flight; each frame's uploads are placed
+ * one after another in the current segment, and ending the frame stores the frame's
+ * fence with its segment and moves on to the next. A segment's fence is handed back
+ * when the ring comes round to it again, and must be waited on before writing there.
+ */
+final class RingSegments {
+    private final int segmentBytes;
+    private final int alignment;
+    private final long[] fences;
+    private int segment = 0;
+    private int head = 0;
+
+    /** {@code alignment} must be a power of two. */
+    RingSegments(int segments, int segmentBytes, int alignment) {
+        if (segments <= 0 || segmentBytes <= 0)
+            throw new IllegalArgumentException("Empty ring: " + segments + " segments of " + segmentBytes + " bytes");
+        if (Integer.bitCount(alignment) != 1)
+            throw new IllegalArgumentException("Alignment must be a power of two: " + alignment);
+        this.segmentBytes = segmentBytes;
+        this.alignment = alignment;
+        this.fences = new long[segments];
+    }
+
+    /**
+     * Offset in the whole ring of space for an upload in the current segment, or -1 if
+     * the rest of the segment is too small. The next upload starts at the next aligned offset.
+     */
+    int reserve(int bytes) {
+        if (head + bytes > segmentBytes)
+            return -1;
+        int offset = segment * segmentBytes + head;
+        head = (head + bytes + alignment - 1) & -alignment;
+        return offset;
+    }
+
+    /** Whether nothing has been reserved since the last {@link #advance}. */
+    boolean isEmpty() {
+        return head == 0;
+    }
+
+    int getSegment() {
+        return segment;
+    }
+
+    /**
+     * Stores the fence of the frame that used the current segment and moves to the next
+     * segment. Returns the fence stored there when the ring last passed it, which the
+     * caller now owns, or 0 if it has none.
+     */
+    long advance(long fence) {
+        fences[segment] = fence;
+        segment = (segment + 1) % fences.length;
+        head = 0;
+        long previous = fences[segment];
+        fences[segment] = 0;
+        return previous;
+    }
+
+    /** Every fence still held, which the caller now owns; the ring holds none afterwards. */
+    long[] drainFences() {
+        int count = 0;
+        long[] held = new long[fences.length];
+        for (int i = 0; i < fences.length; i++) {
+            if (fences[i] != 0) {
+                held[count++] = fences[i];
+                fences[i] = 0;
+            }
+        }
+        return Arrays.copyOf(held, count);
+    }
+}
@@ -3,6 +3,7 @@ package util;
 import org.lwjgl.opengl.GL20;
 
 import java.nio.FloatBuffer;
+import java.util.Map;
 
 import static org.lwjgl.opengl.GL20.*;
 
@@ -10,11 +11,21 @@ public class ShaderProgram {
     private final int programId;
 
     public ShaderProgram(String vertexSource, String fragmentSource) {
+        this(vertexSource, fragmentSource, Map.of());
+    }
+
+    /**
+     * Links the program with each named generic vertex attribute bound to the given location.
+     */
+    public ShaderProgram(String vertexSource, String fragmentSource, Map<String, Integer> attributes) {
         int vertexId = compileShader(vertexSource, GL_VERTEX_SHADER);
         int fragmentId = compileShader(fragmentSource, GL_FRAGMENT_SHADER);
         programId = glCreateProgram();
         glAttachShader(programId, vertexId);
         glAttachShader(programId, fragmentId);
+        for (Map.Entry<String, Integer> attribute : attributes.entrySet()) {
+            glBindAttribLocation(programId, attribute.getValue(), attribute.getKey());
+        }
         glLinkProgram(programId);
 
         if (glGetProgrami(programId, GL_LINK_STATUS) == GL_FALSE) {
@@ -51,6 +62,10 @@ public class ShaderProgram {
         glUniform1i(location, value);
     }
 
+    public void setUniform2i(int location, int x, int y) {
+        glUniform2i(location, x, y);
+    }
+
     public void setUniform3f(int location, float x, float y, float z) {
         glUniform3f(location, x, y, z);
     }
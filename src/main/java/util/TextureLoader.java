@@ -6,10 +6,12 @@ import org.lwjgl.system.MemoryStack;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.lwjgl.opengl.GL11.*;
-import static org.lwjgl.opengl.GL30.*; // glGenerateMipmap
+import static org.lwjgl.opengl.GL12.*; // glTexImage3D
+import static org.lwjgl.opengl.GL30.*; // glGenerateMipmap, GL_TEXTURE_2D_ARRAY
 import static org.lwjgl.system.MemoryUtil.*;
 
 public class TextureLoader {
@@ -38,65 +40,152 @@ public class TextureLoader {
             IntBuffer height = stack.mallocInt(1);
             IntBuffer comp = stack.mallocInt(1);
 
-            try (var stream = TextureLoader.class.getClassLoader().getResourceAsStream(path)) {
-                if (stream == null) {
-                    throw new RuntimeException("Texture not found in resources: " + path);
-                }
+            ByteBuffer image = decode(path, width, height, comp);
 
-                byte[] bytes = stream.readAllBytes();
-                ByteBuffer buffer = memAlloc(bytes.length);
-                buffer.put(bytes).flip();
+            int originalWidth = width.get(0);
+            int originalHeight = height.get(0);
 
-                STBImage.stbi_set_flip_vertically_on_load(true);
-                ByteBuffer image = STBImage.stbi_load_from_memory(buffer, width, height, comp, 4);
+            // Optional downscale
+            int scaledWidth = originalWidth / DOWNSCALE_FACTOR;
+            int scaledHeight = originalHeight / DOWNSCALE_FACTOR;
+            ByteBuffer finalImage = image;
 
-                memFree(buffer);
+            if (DOWNSCALE_FACTOR > 1 && scaledWidth > 0 && scaledHeight > 0) {
+                finalImage = downscaleImage(image, originalWidth, originalHeight, scaledWidth, scaledHeight);
+                STBImage.stbi_image_free(image); // free original
+                width.put(0, scaledWidth);
+                height.put(0, scaledHeight);
+            }
 
-                if (image == null) {
-                    throw new RuntimeException(
-                            "Failed to load texture: " + path + "\nReason: " + STBImage.stbi_failure_reason());
-                }
+            texID = glGenTextures();
+            glBindTexture(GL_TEXTURE_2D, texID);
 
-                int originalWidth = width.get(0);
-                int originalHeight = height.get(0);
+            glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA8,
+                    width.get(0), height.get(0), 0,
+                    GL_RGBA, GL_UNSIGNED_BYTE, finalImage);
 
-                // Optional downscale
-                int scaledWidth = originalWidth / DOWNSCALE_FACTOR;
-                int scaledHeight = originalHeight / DOWNSCALE_FACTOR;
-                ByteBuffer finalImage = image;
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR_MIPMAP_LINEAR);
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+            glGenerateMipmap(GL_TEXTURE_2D);
 
-                if (DOWNSCALE_FACTOR > 1 && scaledWidth > 0 && scaledHeight > 0) {
-                    finalImage = downscaleImage(image, originalWidth, originalHeight, scaledWidth, scaledHeight);
-                    STBImage.stbi_image_free(image); // free original
-                    width.put(0, scaledWidth);
-                    height.put(0, scaledHeight);
-                }
+            glTexParameterf(GL_TEXTURE_2D, GL_TEXTURE_LOD_BIAS, LOD_BIAS);
 
-                texID = glGenTextures();
-                glBindTexture(GL_TEXTURE_2D, texID);
+            float maxAniso = glGetFloat(0x84FF); // GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT
+            glTexParameterf(GL_TEXTURE_2D, 0x84FE, maxAniso); // GL_TEXTURE_MAX_ANISOTROPY_EXT
 
-                glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA8,
-                        width.get(0), height.get(0), 0,
-                        GL_RGBA, GL_UNSIGNED_BYTE, finalImage);
+            STBImage.stbi_image_free(finalImage);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load texture: " + path, e);
+        }
 
-                glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR_MIPMAP_LINEAR);
-                glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
-                glGenerateMipmap(GL_TEXTURE_2D);
+        return texID;
+    }
 
-                glTexParameterf(GL_TEXTURE_2D, GL_TEXTURE_LOD_BIAS, LOD_BIAS);
+    /**
+     * Loads textures into the layers of one GL_TEXTURE_2D_ARRAY, in the order given.
+     * Each image is resampled to size x size, so images of any size can share the array.
+     */
+    public static int loadArray(List<String> paths, int size) {
+        int texID = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D_ARRAY, texID);
+        glTexImage3D(GL_TEXTURE_2D_ARRAY, 0, GL_RGBA8, size, size, paths.size(), 0,
+                GL_RGBA, GL_UNSIGNED_BYTE, (ByteBuffer) null);
 
-                float maxAniso = glGetFloat(0x84FF); // GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT
-                glTexParameterf(GL_TEXTURE_2D, 0x84FE, maxAniso); // GL_TEXTURE_MAX_ANISOTROPY_EXT
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer width = stack.mallocInt(1);
+            IntBuffer height = stack.mallocInt(1);
+            IntBuffer comp = stack.mallocInt(1);
+
+            for (int layer = 0; layer < paths.size(); layer++) {
+                ByteBuffer image = decode("textures/" + paths.get(layer), width, height, comp);
+                ByteBuffer resized = resampleImage(image, width.get(0), height.get(0), size);
+                STBImage.stbi_image_free(image);
 
-                STBImage.stbi_image_free(finalImage);
+                glTexSubImage3D(GL_TEXTURE_2D_ARRAY, 0, 0, 0, layer, size, size, 1,
+                        GL_RGBA, GL_UNSIGNED_BYTE, resized);
+                memFree(resized);
             }
         } catch (Exception e) {
-            throw new RuntimeException("Failed to load texture: " + path, e);
+            throw new RuntimeException("Failed to load texture array: " + paths, e);
         }
 
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MIN_FILTER, GL_LINEAR_MIPMAP_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_S, GL_REPEAT);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_T, GL_REPEAT);
+        glGenerateMipmap(GL_TEXTURE_2D_ARRAY);
+
+        glTexParameterf(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_LOD_BIAS, LOD_BIAS);
+
+        float maxAniso = glGetFloat(0x84FF); // GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT
+        glTexParameterf(GL_TEXTURE_2D_ARRAY, 0x84FE, maxAniso); // GL_TEXTURE_MAX_ANISOTROPY_EXT
+        glBindTexture(GL_TEXTURE_2D_ARRAY, 0);
+
+        textureCache.put("array:" + paths, texID);
         return texID;
     }
 
+    /**
+     * Decodes an image resource to RGBA with STB. Free the result with stbi_image_free.
+     */
+    private static ByteBuffer decode(String path, IntBuffer width, IntBuffer height, IntBuffer comp)
+            throws java.io.IOException {
+        try (var stream = TextureLoader.class.getClassLoader().getResourceAsStream(path)) {
+            if (stream == null) {
+                throw new RuntimeException("Texture not found in resources: " + path);
+            }
+
+            byte[] bytes = stream.readAllBytes();
+            ByteBuffer buffer = memAlloc(bytes.length);
+            buffer.put(bytes).flip();
+
+            STBImage.stbi_set_flip_vertically_on_load(true);
+            ByteBuffer image = STBImage.stbi_load_from_memory(buffer, width, height, comp, 4);
+
+            memFree(buffer);
+
+            if (image == null) {
+                throw new RuntimeException(
+                        "Failed to load texture: " + path + "\nReason: " + STBImage.stbi_failure_reason());
+            }
+            return image;
+        }
+    }
+
+    /**
+     * Resamples an RGBA image to size x size with bilinear filtering, wrapping at the
+     * edges since terrain textures tile. Free the result with memFree.
+     */
+    private static ByteBuffer resampleImage(ByteBuffer original, int origW, int origH, int size) {
+        int channels = 4; // RGBA
+        ByteBuffer scaled = memAlloc(size * size * channels);
+
+        for (int y = 0; y < size; y++) {
+            float sy = (y + 0.5f) * origH / size - 0.5f;
+            int y0 = (int) Math.floor(sy);
+            float fy = sy - y0;
+            int row0 = Math.floorMod(y0, origH) * origW;
+            int row1 = Math.floorMod(y0 + 1, origH) * origW;
+            for (int x = 0; x < size; x++) {
+                float sx = (x + 0.5f) * origW / size - 0.5f;
+                int x0 = (int) Math.floor(sx);
+                float fx = sx - x0;
+                int col0 = Math.floorMod(x0, origW);
+                int col1 = Math.floorMod(x0 + 1, origW);
+
+                for (int c = 0; c < channels; c++) {
+                    float top = (original.get((row0 + col0) * channels + c) & 0xFF) * (1 - fx)
+                            + (original.get((row0 + col1) * channels + c) & 0xFF) * fx;
+                    float bottom = (original.get((row1 + col0) * channels + c) & 0xFF) * (1 - fx)
+                            + (original.get((row1 + col1) * channels + c) & 0xFF) * fx;
+                    scaled.put((byte) Math.round(top * (1 - fy) + bottom * fy));
+                }
+            }
+        }
+        scaled.flip();
+        return scaled;
+    }
+
     /**
      * Downscales a loaded image to a new width/height.
      * Simple box filtering (averages 2x2 pixels).
@@ -0,0 +1,152 @@
+package util;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.opengl.GL44.*;
+
+/**
+ * Staging memory for buffer uploads. With ARB_buffer_storage it is a persistently
+ * mapped, coherent buffer split into one segment per frame in flight: data is written
+ * straight into mapped memory and copied into place by the GPU, and a fence at the
+ * end of each frame tells when its segment may be written again. Without the
+ * extension, or for data larger than a segment, the data is staged in a reused
+ * direct buffer and handed to glBufferSubData.
+ *
+ * <p>Usage is {@link #stage}, fill the returned buffer from position 0, then
+ * {@link #commit}; {@link #endFrame} once per frame. GL thread only.
+ *
+ * <p>Open follow-up: chunk workers still build their data in heap buffers, which the GL
+ * thread then copies into the ring. Having workers write straight into a reserved
+ * segment would remove that copy, but a segment would then have to stay reserved
+ * across frames until its chunk is installed, which the per-frame fencing here does
+ * not support yet.
+ */
+public final class UploadRing {
+    private static final int FRAMES = 3;
+    // Keep copies aligned for the copy engine
+    private static final int COPY_ALIGNMENT = 16;
+
+    private final boolean persistent;
+    private final int bufferId;
+    private final ByteBuffer mapped;
+    private final RingSegments segments;
+
+    // The staged upload: a slice of the mapped buffer at stagedOffset, or the fallback scratch buffer
+    private ByteBuffer staged;
+    private int stagedOffset = -1;
+    private ByteBuffer scratch = BufferUtils.createByteBuffer(64 * 1024);
+
+    private long ringBytes = 0;
+    private long fallbackBytes = 0;
+    private long stalls = 0;
+
+    public UploadRing(int segmentBytes) {
+        this(segmentBytes, true);
+    }
+
+    /** With {@code allowPersistent} false every upload takes the glBufferSubData path, as without the extension. */
+    UploadRing(int segmentBytes, boolean allowPersistent) {
+        this.segments = new RingSegments(FRAMES, segmentBytes, COPY_ALIGNMENT);
+        GLCapabilities caps = GL.getCapabilities();
+        persistent = allowPersistent && (caps.OpenGL44 || caps.GL_ARB_buffer_storage);
+        if (persistent) {
+            int flags = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+            bufferId = glGenBuffers();
+            glBindBuffer(GL_COPY_READ_BUFFER, bufferId);
+            glBufferStorage(GL_COPY_READ_BUFFER, (long) segmentBytes * FRAMES, flags);
+            mapped = glMapBufferRange(GL_COPY_READ_BUFFER, 0, (long) segmentBytes * FRAMES, flags)
+                    .order(ByteOrder.nativeOrder());
+            glBindBuffer(GL_COPY_READ_BUFFER, 0);
+        } else {
+            bufferId = 0;
+            mapped = null;
+        }
+    }
+
+    /** Space for an upload of the given size, in native byte order, positioned at 0. */
+    public ByteBuffer stage(int bytes) {
+        stagedOffset = persistent ? segments.reserve(bytes) : -1;
+        if (stagedOffset >= 0) {
+            staged = mapped.slice(stagedOffset, bytes).order(ByteOrder.nativeOrder());
+        } else {
+            if (scratch.capacity() < bytes)
+                scratch = BufferUtils.createByteBuffer(Math.max(bytes, scratch.capacity() * 2));
+            staged = scratch.clear().limit(bytes);
+        }
+        return staged;
+    }
+
+    /** Copies the staged data into a buffer object at the given byte offset. */
+    public void commit(int bufferId, long offsetBytes) {
+        int bytes = staged.limit();
+        glBindBuffer(GL_COPY_WRITE_BUFFER, bufferId);
+        if (stagedOffset >= 0) {
+            glBindBuffer(GL_COPY_READ_BUFFER, this.bufferId);
+            glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, stagedOffset, offsetBytes, bytes);
+            glBindBuffer(GL_COPY_READ_BUFFER, 0);
+            ringBytes += bytes;
+        } else {
+            glBufferSubData(GL_COPY_WRITE_BUFFER, offsetBytes, staged.position(0));
+            fallbackBytes += bytes;
+        }
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+        staged = null;
+    }
+
+    /** Fences this frame's copies and moves to the next segment, waiting for the GPU if it is still in use. */
+    public void endFrame() {
+        if (!persistent || segments.isEmpty())
+            return;
+        long fence = segments.advance(glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0));
+        if (fence != 0) {
+            if (glClientWaitSync(fence, 0, 0) == GL_TIMEOUT_EXPIRED) {
+                stalls++;
+                glClientWaitSync(fence, GL_SYNC_FLUSH_COMMANDS_BIT, Long.MAX_VALUE);
+            }
+            glDeleteSync(fence);
+        }
+    }
+
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    long getRingBytes() {
+        return ringBytes;
+    }
+
+    long getFallbackBytes() {
+        return fallbackBytes;
+    }
+
+    long getStalls() {
+        return stalls;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("uploads: %s, %d KB mapped, %d KB via glBufferSubData, %d stalls",
+                persistent ? "persistent ring" : "glBufferSubData", ringBytes / 1024, fallbackBytes / 1024, stalls);
+    }
+
+    public void dispose() {
+        for (long fence : segments.drainFences()) {
+            glDeleteSync(fence);
+        }
+        if (persistent) {
+            glBindBuffer(GL_COPY_READ_BUFFER, bufferId);
+            glUnmapBuffer(GL_COPY_READ_BUFFER);
+            glBindBuffer(GL_COPY_READ_BUFFER, 0);
+            glDeleteBuffers(bufferId);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+// See grass_main.vert
+attribute vec3 aOffset;
+attribute vec2 aShape;
+
+const float SCALE_STEPS = 128.0;
+
+void main() {
+    float angle = aShape.x * (6.2831853 / 256.0);
+    float c = cos(angle), s = sin(angle);
+    vec3 p = gl_Vertex.xyz * (aShape.y / SCALE_STEPS);
+    gl_Position = gl_ModelViewProjectionMatrix * vec4(aOffset + vec3(p.x * c - p.z * s, p.y, p.x * s + p.z * c), 1.0);
+}
@@ -0,0 +1,33 @@
+varying vec4 vShadowCoord;
+varying vec2 vTexCoord;
+varying vec4 vColor;
+varying vec3 vNormal;
+
+// Per instance: position relative to the chunk's corner, then rotation in 1/256 turns and scale
+attribute vec3 aOffset;
+attribute vec2 aShape;
+
+uniform mat4 uLightMatrix;
+uniform mat4 uViewInverse;
+
+// Grass.SCALE_STEPS
+const float SCALE_STEPS = 128.0;
+
+// The shared tuft vertex turned, scaled and moved to the instance, in the chunk's frame
+vec4 tuftVertex() {
+    float angle = aShape.x * (6.2831853 / 256.0);
+    float c = cos(angle), s = sin(angle);
+    vec3 p = gl_Vertex.xyz * (aShape.y / SCALE_STEPS);
+    return vec4(aOffset + vec3(p.x * c - p.z * s, p.y, p.x * s + p.z * c), 1.0);
+}
+
+void main() {
+    vec4 vertex = tuftVertex();
+    vec4 eyePos = gl_ModelViewMatrix * vertex;
+    vec4 worldPos = uViewInverse * eyePos;
+    vShadowCoord = uLightMatrix * worldPos;
+    vTexCoord = gl_MultiTexCoord0.st;
+    vColor = gl_Color;
+    vNormal = normalize(gl_NormalMatrix * gl_Normal);
+    gl_Position = gl_ModelViewProjectionMatrix * vertex;
+}
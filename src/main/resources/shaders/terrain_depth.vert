@@ -0,0 +1,18 @@
+#version 140
+
+// See terrain_main.vert
+in uvec2 aTexels;
+in ivec3 aChunk;
+
+uniform isamplerBuffer uHeightmaps;
+uniform float uScale;
+
+const int CHUNK_SIZE = 30;
+const float Y_STEPS = 64.0;
+
+void main() {
+    float height = float(texelFetch(uHeightmaps, aChunk.x + int(aTexels.y)).x);
+    vec2 steps = vec2(aChunk.yz * CHUNK_SIZE) + gl_Vertex.xy;
+    vec4 worldPos = vec4(steps.x * uScale, height / Y_STEPS, steps.y * uScale, 1.0);
+    gl_Position = gl_ModelViewProjectionMatrix * worldPos;
+}
@@ -0,0 +1,88 @@
+#version 140
+
+in vec4 vShadowCoord;
+in vec2 vTexCoord;
+in vec3 vNormal;
+in float vHeight;
+in float vSlope;
+flat in vec3 vLayers;
+
+uniform sampler2DArray uLayers;
+uniform sampler2D uShadowMap;
+uniform vec3 uLightDir;
+uniform float uLightStrength;
+uniform mat4 uViewMatrix;
+
+uniform float uSnowLayer;
+uniform float uWaterBottomLayer;
+uniform float uWaterBottomAbsLayer;
+uniform float uDirtSlope;
+uniform float uRockSlope;
+uniform float uSnowStart;
+uniform float uSnowFull;
+uniform float uWaterBottomHeight;
+uniform float uWaterBottomAbsHeight;
+
+// Half-widths of the blends across material boundaries
+const float SLOPE_BLEND = 0.08;
+const float HEIGHT_BLEND = 0.4;
+
+float computeShadow(vec4 shadowCoord, vec3 normal, vec3 lightDir) {
+    vec3 proj = shadowCoord.xyz / shadowCoord.w;
+    if (proj.x < 0.0 || proj.x > 1.0 || proj.y < 0.0 || proj.y > 1.0) {
+        return 1.0;
+    }
+    if (proj.z < 0.0 || proj.z > 1.0) {
+        return 1.0;
+    }
+    float bias = max(0.0005, 0.0025 * (1.0 - dot(normal, -lightDir)));
+    float shadow = 0.0;
+    float texel = 1.0 / 2048.0;
+    for (int x = -1; x <= 1; x++) {
+        for (int y = -1; y <= 1; y++) {
+            vec2 offset = vec2(float(x), float(y)) * texel;
+            float depth = texture(uShadowMap, proj.xy + offset).r;
+            shadow += (proj.z - bias) > depth ? 0.0 : 1.0;
+        }
+    }
+    return shadow / 9.0;
+}
+
+void main() {
+    // Layers are only sampled where they show, so gradients come from outside the branches
+    vec2 dx = dFdx(vTexCoord);
+    vec2 dy = dFdy(vTexCoord);
+
+    vec4 baseColor = textureGrad(uLayers, vec3(vTexCoord, vLayers.x), dx, dy);
+    float dirt = smoothstep(uDirtSlope - SLOPE_BLEND, uDirtSlope + SLOPE_BLEND, vSlope);
+    if (dirt > 0.0) {
+        baseColor = mix(baseColor, textureGrad(uLayers, vec3(vTexCoord, vLayers.y), dx, dy), dirt);
+    }
+    float rock = smoothstep(uRockSlope - SLOPE_BLEND, uRockSlope + SLOPE_BLEND, vSlope);
+    if (rock > 0.0) {
+        baseColor = mix(baseColor, textureGrad(uLayers, vec3(vTexCoord, vLayers.z), dx, dy), rock);
+    }
+    float snow = clamp((vHeight - uSnowStart) / (uSnowFull - uSnowStart), 0.0, 1.0);
+    if (snow > 0.0) {
+        baseColor = mix(baseColor, textureGrad(uLayers, vec3(vTexCoord, uSnowLayer), dx, dy), snow);
+    }
+    float bed = 1.0 - smoothstep(uWaterBottomHeight - HEIGHT_BLEND, uWaterBottomHeight + HEIGHT_BLEND, vHeight);
+    if (bed > 0.0) {
+        baseColor = mix(baseColor, textureGrad(uLayers, vec3(vTexCoord, uWaterBottomLayer), dx, dy), bed);
+    }
+    float deep = 1.0 - smoothstep(uWaterBottomAbsHeight - HEIGHT_BLEND, uWaterBottomAbsHeight + HEIGHT_BLEND, vHeight);
+    if (deep > 0.0) {
+        baseColor = mix(baseColor, textureGrad(uLayers, vec3(vTexCoord, uWaterBottomAbsLayer), dx, dy), deep);
+    }
+
+    vec3 normal = normalize(vNormal);
+    vec3 lightDir = normalize((uViewMatrix * vec4(uLightDir, 0.0)).xyz);
+    float ndl = max(dot(normal, -lightDir), 0.0);
+    float ambient = mix(0.18, 0.6, uLightStrength);
+    float diffuse = ndl * mix(0.06, 0.75, uLightStrength);
+    float lighting = ambient + diffuse;
+    float shadow = computeShadow(vShadowCoord * 0.5 + 0.5, normal, lightDir);
+    float shadowStrength = mix(0.25, 0.8, uLightStrength);
+    float shadowed = mix(1.0, shadow, shadowStrength);
+    gl_FragColor = vec4(baseColor.rgb * lighting * shadowed, 1.0);
+}
@@ -0,0 +1,54 @@
+#version 140
+
+// Grid vertex: the texel of its surface sample and the texel of its height, a skirt texel for skirt bottoms
+in uvec2 aTexels;
+// Per instance: first texel of the chunk's heightmap, then the chunk's coordinates
+in ivec3 aChunk;
+// Per instance: grass, dirt and rock layers of the chunk's biome
+in vec3 aLayers;
+
+out vec4 vShadowCoord;
+out vec2 vTexCoord;
+out vec3 vNormal;
+out float vHeight;
+out float vSlope;
+flat out vec3 vLayers;
+
+uniform isamplerBuffer uHeightmaps;
+uniform mat4 uLightMatrix;
+uniform mat4 uViewMatrix;
+uniform mat4 uViewInverse;
+uniform float uScale;
+
+// Chunk.SIZE, and TerrainMesher's height steps, texture repeat per vertex step and slope steps
+const int CHUNK_SIZE = 30;
+const float Y_STEPS = 64.0;
+const float TEX_SCALE = 0.2;
+const float SLOPE_STEPS = 64.0;
+
+vec3 decodeNormal(vec2 e) {
+    vec3 n = vec3(e.x, 1.0 - abs(e.x) - abs(e.y), e.y);
+    if (n.y < 0.0) {
+        n.xz = (1.0 - abs(n.zx)) * vec2(n.x >= 0.0 ? 1.0 : -1.0, n.z >= 0.0 ? 1.0 : -1.0);
+    }
+    return normalize(n);
+}
+
+vec4 worldPosition() {
+    float height = float(texelFetch(uHeightmaps, aChunk.x + int(aTexels.y)).x);
+    vec2 steps = vec2(aChunk.yz * CHUNK_SIZE) + gl_Vertex.xy;
+    return vec4(steps.x * uScale, height / Y_STEPS, steps.y * uScale, 1.0);
+}
+
+void main() {
+    ivec4 texel = texelFetch(uHeightmaps, aChunk.x + int(aTexels.x));
+    vec4 worldPos = worldPosition();
+    vec4 eyePos = gl_ModelViewMatrix * worldPos;
+    vShadowCoord = uLightMatrix * worldPos;
+    vTexCoord = gl_Vertex.xy * TEX_SCALE;
+    vNormal = normalize(mat3(uViewMatrix) * decodeNormal(max(vec2(texel.yz) / 32767.0, -1.0)));
+    vHeight = worldPos.y;
+    vSlope = float(texel.w) / SLOPE_STEPS;
+    vLayers = aLayers;
+    gl_Position = gl_ProjectionMatrix * eyePos;
+}
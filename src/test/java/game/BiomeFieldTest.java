@@ -0,0 +1,38 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BiomeFieldTest {
+    private static final int POINTS = 50_000;
+    private static final double RANGE = 20_000;
+
+    @Test
+    void interpolationStaysWithinMaxDeviation() {
+        for (double maxDeviation : new double[] { 1e-3, 5e-4, 1e-4 }) {
+            BiomeField field = new BiomeField(new OpenSimplexNoise(4321L), maxDeviation);
+            Random random = new Random(99);
+            double[] wx = new double[POINTS], wz = new double[POINTS], out = new double[POINTS];
+            for (int i = 0; i < POINTS; i++) {
+                wx[i] = (random.nextDouble() * 2 - 1) * RANGE;
+                wz[i] = (random.nextDouble() * 2 - 1) * RANGE;
+            }
+            field.sample(wx, wz, POINTS, out);
+
+            double worst = 0;
+            for (int i = 0; i < POINTS; i++) {
+                worst = Math.max(worst, Math.abs(out[i] - field.exact(wx[i], wz[i])));
+            }
+            assertTrue(worst <= maxDeviation, "deviation " + worst + " exceeds " + maxDeviation);
+        }
+    }
+
+    @Test
+    void tighterDeviationGivesFinerLattice() {
+        assertTrue(BiomeField.spacingFor(1e-4) < BiomeField.spacingFor(1e-3));
+        assertTrue(BiomeField.spacingFor(1e-12) >= 1.0);
+    }
+}
@@ -0,0 +1,56 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BiomeRegionGeneratorTest {
+    private static final long SEED = 1234L;
+
+    @Test
+    void lookupsDoNotDependOnCacheState() {
+        BiomeRegionGenerator walked = new BiomeRegionGenerator(SEED);
+        // Fill the cache with chunks that share slots with the ones checked below
+        for (int cx = -64; cx < 64; cx++) {
+            for (int cz = -64; cz < 64; cz++) {
+                walked.getBiomeAtChunk(cx, cz);
+            }
+        }
+        for (int cx = -40; cx < 40; cx += 3) {
+            for (int cz = -40; cz < 40; cz += 7) {
+                assertEquals(new BiomeRegionGenerator(SEED).getBiomeAtChunk(cx, cz),
+                        walked.getBiomeAtChunk(cx, cz), "chunk " + cx + "," + cz);
+            }
+        }
+    }
+
+    @Test
+    void regionsContinuePastTheOldWorldEdge() {
+        BiomeRegionGenerator regions = new BiomeRegionGenerator(SEED);
+        Set<Biome> seen = EnumSet.noneOf(Biome.class);
+        int far = 1_000_000;
+        for (int cx = far; cx < far + 200; cx += 5) {
+            for (int cz = -far; cz < -far + 200; cz += 5) {
+                seen.add(regions.getBiomeAtChunk(cx, cz));
+            }
+        }
+        assertTrue(seen.size() > 1, "only " + seen + " far from the origin");
+    }
+
+    @Test
+    void neighbouringChunksMostlyShareARegion() {
+        BiomeRegionGenerator regions = new BiomeRegionGenerator(SEED);
+        int same = 0, total = 0;
+        for (int cx = -100; cx < 100; cx++) {
+            for (int cz = -100; cz < 100; cz++) {
+                if (regions.getBiomeAtChunk(cx, cz) == regions.getBiomeAtChunk(cx + 1, cz))
+                    same++;
+                total++;
+            }
+        }
+        assertTrue(same > total * 0.7, same + " of " + total + " neighbours match");
+    }
+}
@@ -0,0 +1,63 @@
+package game;
+
+import objects.Grass;
+import org.junit.jupiter.api.Test;
+import spawners.GrassSpawner;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static game.Chunk.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkFootprintTest {
+    // The float layouts the packed formats replaced: terrain as non-indexed triangles of
+    // position, normal and UV, and grass as world-space quads of position and UV
+    private static final int FLOAT_TERRAIN_VERTEX_BYTES = 8 * Float.BYTES;
+    private static final int FLOAT_TERRAIN_VERTICES = SIZE * SIZE * 6;
+    private static final int FLOAT_GRASS_VERTEX_BYTES = 5 * Float.BYTES;
+
+    @Test
+    void terrainBytesMatchTheBuiltTexels() {
+        ChunkGenerator generator = TestTerrain.generator();
+        for (int lod = 0; lod <= MAX_LOD; lod++) {
+            ChunkData data = generator.generate(3, -1, Biome.HILLS, lod);
+            int texels = TerrainMesher.texelCount(lod);
+            assertEquals(data.terrain.texels().capacity(), Chunk.gpuBytes(texels, 0, 0), "LOD " + lod);
+        }
+    }
+
+    @Test
+    void grassBytesMatchTheWrittenInstances() {
+        ByteBuffer instances = ByteBuffer.allocate(64 * Grass.INSTANCE_STRIDE_BYTES).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < 64; i++) {
+            new Grass(i, 10f, -i, new float[] { 0.5f, 0.5f, 0.5f }, i).putInstance(instances, 0f, 0f);
+        }
+        assertEquals(instances.position(), Chunk.gpuBytes(0, 64, 0));
+    }
+
+    @Test
+    void waterBytesFollowTheQuadCount() {
+        assertEquals(7 * 4 * 3 * Float.BYTES, Chunk.gpuBytes(0, 0, 7 * 4));
+    }
+
+    @Test
+    void packedFormatsAtLeastHalveGpuMemory() {
+        ChunkGenerator generator = TestTerrain.generator();
+        for (Biome biome : new Biome[] { Biome.PLAINS, Biome.SWAMP, Biome.SAND }) {
+            ChunkData data = generator.generate(0, 0, biome, 0);
+            int grass = 0;
+            for (ChunkData.FeaturePlacement p : data.placements) {
+                if (p.spawner() instanceof GrassSpawner)
+                    grass++;
+            }
+            int waterVertices = data.waterQuadCount * 4;
+
+            long packed = Chunk.gpuBytes(TerrainMesher.texelCount(0), grass, waterVertices);
+            long floats = (long) FLOAT_TERRAIN_VERTICES * FLOAT_TERRAIN_VERTEX_BYTES
+                    + (long) grass * Grass.TUFT_VERTICES * FLOAT_GRASS_VERTEX_BYTES
+                    + (long) waterVertices * ChunkBuffers.WATER_STRIDE_BYTES;
+            assertTrue(packed * 2 <= floats, biome + ": " + packed + " bytes packed, " + floats + " as floats");
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import static game.Chunk.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkGeneratorTest {
+    @Test
+    void sharedEdgesMatchWhicheverChunkIsGeneratedFirst() {
+        for (Biome biome : new Biome[] { Biome.PLAINS, Biome.MOUNTAINS, Biome.SWAMP }) {
+            for (int cx = -2; cx <= 2; cx++) {
+                for (int cz = -2; cz <= 2; cz++) {
+                    assertEdgesMatch(biome, cx, cz, cx + 1, cz);
+                    assertEdgesMatch(biome, cx, cz, cx, cz + 1);
+                }
+            }
+        }
+    }
+
+    // (bx, bz) is east or south of (ax, az); each order uses a fresh generator
+    private static void assertEdgesMatch(Biome biome, int ax, int az, int bx, int bz) {
+        ChunkGenerator first = TestTerrain.generator();
+        ChunkData a1 = first.generate(ax, az, biome, 0);
+        ChunkData b1 = first.generate(bx, bz, biome, 0);
+
+        ChunkGenerator second = TestTerrain.generator();
+        ChunkData b2 = second.generate(bx, bz, biome, 0);
+        ChunkData a2 = second.generate(ax, az, biome, 0);
+
+        String pair = ax + "," + az + " and " + bx + "," + bz + " (" + biome + ")";
+        for (int i = 0; i < HEIGHTS_SIDE; i++) {
+            assertArrayEquals(a1.heights[i], a2.heights[i], "order changed " + ax + "," + az);
+            assertArrayEquals(b1.heights[i], b2.heights[i], "order changed " + bx + "," + bz);
+        }
+
+        // The apron makes the slopes, and so the normals, along the edge agree too
+        SlopeField slopesA = new SlopeField(a1.heights), slopesB = new SlopeField(b1.heights);
+        boolean east = bx != ax;
+        for (int v = 0; v <= SIZE; v++) {
+            int xa = east ? SIZE : v, za = east ? v : SIZE;
+            int xb = east ? 0 : v, zb = east ? v : 0;
+            assertEquals(a1.heights[xa + APRON][za + APRON], b1.heights[xb + APRON][zb + APRON],
+                    "edge height of " + pair + " at " + v);
+            assertEquals(slopesA.gradientX(xa, za), slopesB.gradientX(xb, zb), "edge gradient of " + pair + " at " + v);
+            assertEquals(slopesA.gradientZ(xa, za), slopesB.gradientZ(xb, zb), "edge gradient of " + pair + " at " + v);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+import util.GlWorkScheduler;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkResidencyTest {
+    private static final long NO_LIMIT = Long.MAX_VALUE;
+
+    private final ChunkGenerator generator = TestTerrain.generator();
+    private final GlWorkScheduler gl = new GlWorkScheduler(2f);
+    private final ChunkStore store = new ChunkStore(4);
+
+    private Chunk chunk(int cx, int cz) {
+        Chunk c = new Chunk(generator.generate(cx, cz, Biome.PLAINS, Chunk.MAX_LOD), 1f, gl, null);
+        store.put(c);
+        return c;
+    }
+
+    @Test
+    void evictsLeastRecentlyVisibleFirst() {
+        Chunk a = chunk(0, 1), b = chunk(1, 0), c = chunk(1, 1), visible = chunk(0, 0);
+        ChunkResidency residency = new ChunkResidency(NO_LIMIT, NO_LIMIT, 1);
+        residency.markOffscreen(a);
+        residency.markOffscreen(b);
+        residency.markOffscreen(c);
+        // b comes back into view and leaves again, so it is now the newest
+        residency.markVisible(b);
+        residency.markOffscreen(b);
+        residency.markVisible(visible);
+        assertEquals(3, residency.getOffscreenCount());
+        assertEquals(1, residency.getHits());
+
+        long total = a.estimateHeapBytes() + b.estimateHeapBytes() + c.estimateHeapBytes()
+                + visible.estimateHeapBytes();
+        residency.setBudget(total - a.estimateHeapBytes() - c.estimateHeapBytes(), NO_LIMIT);
+        residency.evict(store, 0, 0, 2);
+
+        assertNull(store.get(0, 1));
+        assertNull(store.get(1, 1));
+        assertSame(b, store.get(1, 0));
+        assertSame(visible, store.get(0, 0));
+        assertEquals(2, residency.getEvictions());
+        assertEquals(1, residency.getOffscreenCount());
+        assertFalse(a.offscreen);
+        assertTrue(b.offscreen);
+    }
+
+    @Test
+    void unloadsOffscreenChunksOutsideTheHysteresisRing() {
+        Chunk near = chunk(3, 0), far = chunk(4, 0), visibleFar = chunk(0, 4);
+        ChunkResidency residency = new ChunkResidency(NO_LIMIT, NO_LIMIT, 1);
+        residency.markOffscreen(near);
+        residency.markOffscreen(far);
+        residency.markVisible(visibleFar);
+        residency.evict(store, 0, 0, 2);
+
+        assertSame(near, store.get(3, 0));
+        assertNull(store.get(4, 0));
+        // Only off-screen chunks are unloaded
+        assertSame(visibleFar, store.get(0, 4));
+        assertEquals(1, residency.getUnloads());
+        assertEquals(1, residency.getOffscreenCount());
+    }
+
+    @Test
+    void forgettingKeepsTheRestOfTheListInOrder() {
+        Chunk a = chunk(0, 1), b = chunk(1, 0), c = chunk(1, 1);
+        ChunkResidency residency = new ChunkResidency(NO_LIMIT, NO_LIMIT, 1);
+        residency.markOffscreen(a);
+        residency.markOffscreen(b);
+        residency.markOffscreen(c);
+        residency.forget(b);
+        residency.forget(b);
+        assertEquals(2, residency.getOffscreenCount());
+        store.remove(ChunkStore.key(1, 0));
+
+        // Evicting one chunk takes the oldest, a, and leaves c
+        residency.setBudget(a.estimateHeapBytes() + c.estimateHeapBytes() - 1, NO_LIMIT);
+        residency.evict(store, 0, 0, 2);
+        assertNull(store.get(0, 1));
+        assertSame(c, store.get(1, 1));
+
+        residency.clear();
+        assertEquals(0, residency.getOffscreenCount());
+        assertFalse(c.offscreen);
+    }
+}
@@ -0,0 +1,137 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkWorkerPoolTest {
+    private static final int RADIUS = 3;
+    private static final long TIMEOUT_NANOS = 60_000_000_000L;
+
+    /**
+     * CRC-32 of the heightfield the original synchronous {@code Chunk.generate} produced
+     * for chunk (cx, cz) of the given biome, seed {@link TestTerrain#SEED} and scale 1:
+     * the (SIZE + 1)^2 heights after lake carving and before edge stitching, x-major,
+     * each as its float bits, big-endian. None of these chunks carved a lake there.
+     * Captured by running the baseline {@code Chunk} headless.
+     */
+    private static final Object[][] SYNCHRONOUS_HEIGHTS = {
+            { 0, 0, Biome.PLAINS, 0x8CFC21FAL },
+            { 3, -2, Biome.HILLS, 0xDE120318L },
+            { -5, 7, Biome.SAND, 0x320922F3L },
+            { 12, 4, Biome.MOUNTAINS, 0xEE3ECF0BL },
+            { -9, -11, Biome.DEAD_FOREST, 0xF1A61CA9L },
+            { 40, -33, Biome.SPRUCE_FOREST, 0x782B25ADL },
+            { -17, 25, Biome.HIGH_MOUNTAINS, 0x043BCA24L },
+            { 6, 6, Biome.BLOOM, 0xF61C2124L },
+    };
+
+    @Test
+    void threadedHeightfieldsMatchTheSynchronousPath() throws InterruptedException {
+        ChunkWorkerPool pool = new ChunkWorkerPool(TestTerrain.exactGenerator(), 4);
+        Map<Long, ChunkData> threaded = new HashMap<>();
+        try {
+            for (Object[] golden : SYNCHRONOUS_HEIGHTS) {
+                int cx = (int) golden[0], cz = (int) golden[1];
+                pool.submit(ChunkStore.key(cx, cz), cx, cz, (Biome) golden[2], 0);
+            }
+            drain(pool, threaded);
+        } finally {
+            pool.shutdown();
+        }
+
+        for (Object[] golden : SYNCHRONOUS_HEIGHTS) {
+            int cx = (int) golden[0], cz = (int) golden[1];
+            ChunkData data = threaded.get(ChunkStore.key(cx, cz));
+            assertTrue(data.lakes.isEmpty(), "chunk " + cx + "," + cz + " carved a lake; pick another");
+            assertEquals((long) golden[3], heightsCrc(data.heights), "heights of chunk " + cx + "," + cz);
+        }
+    }
+
+    // CRC-32 of the heights within the chunk, laid out as SYNCHRONOUS_HEIGHTS describes
+    private static long heightsCrc(float[][] heights) {
+        CRC32 crc = new CRC32();
+        ByteBuffer bits = ByteBuffer.allocate(Float.BYTES);
+        for (int x = 0; x <= Chunk.SIZE; x++) {
+            for (int z = 0; z <= Chunk.SIZE; z++) {
+                crc.update(bits.clear().putFloat(0, heights[x + Chunk.APRON][z + Chunk.APRON]).array());
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void drain(ChunkWorkerPool pool, Map<Long, ChunkData> results) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (pool.getPendingCount() > 0) {
+            assertTrue(System.nanoTime() < deadline, "workers did not finish");
+            ChunkWorkerPool.Result result = pool.poll();
+            if (result == null) {
+                Thread.sleep(1);
+                continue;
+            }
+            assertNull(result.failure());
+            results.put(result.key(), result.data());
+        }
+    }
+
+    @Test
+    void threadedOutputIsBitIdenticalToSerial() throws InterruptedException {
+        ChunkGenerator generator = TestTerrain.generator();
+        ChunkWorkerPool pool = new ChunkWorkerPool(generator, 4);
+        Map<Long, ChunkData> threaded = new HashMap<>();
+        try {
+            for (int cx = -RADIUS; cx <= RADIUS; cx++) {
+                for (int cz = -RADIUS; cz <= RADIUS; cz++) {
+                    pool.submit(ChunkStore.key(cx, cz), cx, cz, Biome.SWAMP, 0);
+                }
+            }
+            drain(pool, threaded);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals((2 * RADIUS + 1) * (2 * RADIUS + 1), threaded.size());
+        for (int cx = -RADIUS; cx <= RADIUS; cx++) {
+            for (int cz = -RADIUS; cz <= RADIUS; cz++) {
+                ChunkData serial = generator.generate(cx, cz, Biome.SWAMP, 0);
+                ChunkData parallel = threaded.get(ChunkStore.key(cx, cz));
+                for (int x = 0; x < Chunk.HEIGHTS_SIDE; x++) {
+                    assertArrayEquals(serial.heights[x], parallel.heights[x],
+                            "heights of chunk " + cx + "," + cz + " differ at x " + x);
+                }
+                assertEquals(serial.lakes.size(), parallel.lakes.size());
+                assertEquals(serial.placements, parallel.placements);
+            }
+        }
+    }
+
+    @Test
+    void failedJobIsReportedThroughPoll() throws InterruptedException {
+        ChunkWorkerPool pool = new ChunkWorkerPool(TestTerrain.generator(), 1);
+        try {
+            long key = ChunkStore.key(2, -5);
+            // No biome, so generation throws
+            pool.submit(key, 2, -5, null, 0);
+
+            long deadline = System.nanoTime() + TIMEOUT_NANOS;
+            ChunkWorkerPool.Result result;
+            while ((result = pool.poll()) == null) {
+                assertTrue(System.nanoTime() < deadline, "worker did not finish");
+                Thread.sleep(1);
+            }
+            assertEquals(key, result.key());
+            assertEquals(2, result.cx());
+            assertEquals(-5, result.cz());
+            assertNull(result.data());
+            assertNotNull(result.failure());
+            assertFalse(pool.isPending(key), "a failed chunk must not stay pending");
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package game;
+
+import objects.BatchableFeature;
+import objects.Feature;
+import objects.Grass;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GrassBatchTest {
+    private static final float[] DARK = { 0.05f, 0.05f, 0.05f };
+
+    @Test
+    void mixedLooksGetTheirOwnRanges() {
+        List<Feature> features = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // Interleave textured tufts with two colours of untextured ones
+            switch (i % 3) {
+                case 0 -> features.add(new TexturedTuft(i, 7));
+                case 1 -> features.add(new Grass(i, 0f, 0f, DARK, i));
+                default -> features.add(new Grass(i, 0f, 0f, new float[] { 0.3f, 0.2f, 0.1f }, i));
+            }
+        }
+
+        List<Chunk.GrassLook> looks = new ArrayList<>();
+        assertEquals(300, Chunk.groupGrass(features, looks));
+        assertEquals(3, looks.size());
+        assertEquals(7, looks.get(0).texture);
+        assertEquals(-1, looks.get(1).texture);
+        assertArrayEquals(DARK, looks.get(1).color);
+        assertEquals(-1, looks.get(2).texture);
+
+        ByteBuffer instances = ByteBuffer.allocate(300 * Grass.INSTANCE_STRIDE_BYTES).order(ByteOrder.nativeOrder());
+        Chunk.putGrassInstances(features, looks, instances, 0f, 0f);
+
+        // Walking the ranges in draw order must meet every tuft of a look, variant by variant
+        int first = 0;
+        for (int look = 0; look < looks.size(); look++) {
+            for (int variant = 0; variant < Grass.VARIANTS; variant++) {
+                int count = looks.get(look).variantCounts[variant];
+                for (int k = first; k < first + count; k++) {
+                    int i = Math.round(instances.getFloat(k * Grass.INSTANCE_STRIDE_BYTES));
+                    assertEquals(look, i % 3, "instance " + k);
+                    assertEquals(variant, ((BatchableFeature) features.get(i)).getVariant(), "instance " + k);
+                }
+                first += count;
+            }
+        }
+        assertEquals(300, first);
+    }
+
+    @Test
+    void equalColoursShareALook() {
+        List<Feature> features = List.of(
+                new Grass(0f, 0f, 0f, new float[] { 0.5f, 0.5f, 0.5f }, 1),
+                new Grass(1f, 0f, 0f, new float[] { 0.5f, 0.5f, 0.5f }, 2));
+        List<Chunk.GrassLook> looks = new ArrayList<>();
+        assertEquals(2, Chunk.groupGrass(features, looks));
+        assertEquals(1, looks.size());
+    }
+
+    // A textured tuft without loading a texture, which needs GL
+    private static final class TexturedTuft extends Feature implements BatchableFeature {
+        private static final float[] WHITE = { 1f, 1f, 1f };
+        private final int texture;
+
+        TexturedTuft(float x, int texture) {
+            super(x, 0f, 0f);
+            this.texture = texture;
+        }
+
+        @Override
+        public void draw() {
+        }
+
+        @Override
+        public int getVariant() {
+            return (int) x % Grass.VARIANTS;
+        }
+
+        @Override
+        public void putInstance(ByteBuffer buffer, float originX, float originZ) {
+            buffer.putFloat(x - originX).putFloat(y).putFloat(z - originZ).putInt(0);
+        }
+
+        @Override
+        public int getBatchTextureId() {
+            return texture;
+        }
+
+        @Override
+        public float[] getBatchColor() {
+            return WHITE;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static game.Chunk.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Neighbouring chunks at different LODs, checked the way they are drawn: each edge is
+ * the polyline through its LOD's lattice vertices, at the heights in the chunk's texels,
+ * with a skirt hanging from it to the edge's skirt texel.
+ */
+class LodSeamTest {
+    private static final int[][] LOD_PAIRS = { { 0, 1 }, { 0, 3 }, { 1, 2 }, { 2, 5 }, { 4, 1 }, { 3, 0 } };
+    // Edges of ChunkGenerator.skirtBottoms and TerrainMesher's skirt texels
+    private static final int NORTH = 0, SOUTH = 1, WEST = 2, EAST = 3;
+
+    @Test
+    void sharedEdgeVerticesHaveEqualHeights() {
+        ChunkGenerator generator = TestTerrain.generator();
+        for (Biome biome : new Biome[] { Biome.HILLS, Biome.MOUNTAINS }) {
+            for (int[] lods : LOD_PAIRS) {
+                for (int c = -2; c <= 2; c++) {
+                    forEachNeighbourPair(generator, biome, c, lods, (a, b, edgeA, edgeB) -> {
+                        float[] ha = edgeHeights(a, edgeA), hb = edgeHeights(b, edgeB);
+                        for (int v = 0; v <= SIZE; v++) {
+                            if (onLattice(a.lod, v) && onLattice(b.lod, v))
+                                assertEquals(ha[v], hb[v], describe(a, b) + " at " + v);
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    @Test
+    void skirtsCoverEveryCrack() {
+        ChunkGenerator generator = TestTerrain.generator();
+        for (Biome biome : new Biome[] { Biome.HILLS, Biome.MOUNTAINS, Biome.SWAMP }) {
+            for (int[] lods : LOD_PAIRS) {
+                for (int c = -2; c <= 2; c++) {
+                    forEachNeighbourPair(generator, biome, c, lods, (a, b, edgeA, edgeB) -> {
+                        float[] ha = edgeHeights(a, edgeA), hb = edgeHeights(b, edgeB);
+                        float skirtA = skirtBottom(a, edgeA), skirtB = skirtBottom(b, edgeB);
+                        // The polylines only bend at vertices, so checking those covers the whole edge
+                        for (int v = 0; v <= SIZE; v++) {
+                            float upper = Math.max(ha[v], hb[v]), lower = Math.min(ha[v], hb[v]);
+                            float skirt = ha[v] >= hb[v] ? skirtA : skirtB;
+                            assertTrue(skirt <= lower, describe(a, b) + ": crack from " + lower + " to "
+                                    + upper + " at " + v + " not covered, skirt ends at " + skirt);
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    private interface PairCheck {
+        void check(ChunkData a, ChunkData b, int edgeA, int edgeB);
+    }
+
+    // Chunk (c, c) at lods[0] against its east and south neighbours at lods[1]
+    private static void forEachNeighbourPair(ChunkGenerator generator, Biome biome, int c, int[] lods, PairCheck check) {
+        ChunkData a = generator.generate(c, c, biome, lods[0]);
+        check.check(a, generator.generate(c + 1, c, biome, lods[1]), EAST, WEST);
+        check.check(a, generator.generate(c, c + 1, biome, lods[1]), SOUTH, NORTH);
+    }
+
+    private static boolean onLattice(int lod, int v) {
+        for (int w : lattice(lod)) {
+            if (w == v)
+                return true;
+        }
+        return false;
+    }
+
+    // Drawn height along an edge at every vertex, interpolated between lattice vertices
+    private static float[] edgeHeights(ChunkData data, int edge) {
+        int[] lattice = lattice(data.lod);
+        int n = lattice.length - 2 * APRON;
+        float[] heights = new float[SIZE + 1];
+        for (int k = 0; k + 1 < n; k++) {
+            int v0 = lattice[k + APRON], v1 = lattice[k + 1 + APRON];
+            float h0 = texelHeight(data, edgeTexel(edge, k, n)), h1 = texelHeight(data, edgeTexel(edge, k + 1, n));
+            for (int v = v0; v <= v1; v++) {
+                heights[v] = h0 + (h1 - h0) * (v - v0) / (v1 - v0);
+            }
+        }
+        return heights;
+    }
+
+    // Surface texel (i, j) is i * n + j, with i along x
+    private static int edgeTexel(int edge, int k, int n) {
+        switch (edge) {
+            case NORTH: return k * n;
+            case SOUTH: return k * n + n - 1;
+            case WEST: return k;
+            default: return (n - 1) * n + k;
+        }
+    }
+
+    private static float skirtBottom(ChunkData data, int edge) {
+        int n = lattice(data.lod).length - 2 * APRON;
+        return texelHeight(data, n * n + edge);
+    }
+
+    private static float texelHeight(ChunkData data, int texel) {
+        ByteBuffer texels = data.terrain.texels();
+        return texels.getShort(texel * TerrainMesher.TEXEL_BYTES) / TerrainMesher.Y_STEPS;
+    }
+
+    private static String describe(ChunkData a, ChunkData b) {
+        return a.biome + " " + a.cx + "," + a.cz + " at LOD " + a.lod + " and " + b.cx + "," + b.cz + " at LOD " + b.lod;
+    }
+}
@@ -0,0 +1,153 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.DoubleUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class OpenSimplexNoiseTest {
+    private static final long SEED = 1234L;
+    // Not a multiple of any lane count, so the scalar tail runs too
+    private static final int POINTS = 100_003;
+    private static final double RANGE = 1e5;
+    // Float lanes only see the offsets within a simplex cell; the observed error is below 1e-6
+    private static final double SIMD_FLOAT_MAX_ERROR = 1e-5;
+
+    // Grids over negative coordinates with non-unit steps
+    private static final double[][] GRIDS = {
+            { -7.5, -20, 0.37, 2.5 },
+            { -40, 3, 30, 30 },
+            { 123.25, -0.5, 0.01, 1.7 },
+    };
+    private static final int GRID_X = 33;
+    private static final int GRID_Z = 31;
+
+    @Test
+    void evalGridIsBitIdenticalToEval() {
+        for (OpenSimplexNoise noise : exactBackends()) {
+            double[] out = new double[GRID_X * GRID_Z];
+            for (double[] g : GRIDS) {
+                noise.evalGrid(g[0], g[1], g[2], g[3], GRID_X, GRID_Z, out);
+                for (int i = 0; i < GRID_X; i++) {
+                    for (int j = 0; j < GRID_Z; j++) {
+                        double expected = noise.eval((g[0] + i) * g[2], (g[1] + j) * g[3]);
+                        assertEquals(expected, out[i * GRID_Z + j], noise.getBackendName() + " at " + i + "," + j);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void evalFractalGridIsBitIdenticalToTheOctaveLoop() {
+        // The octaves ChunkGenerator sums per biome: offsets of 100 per octave, frequency
+        // up 1.7x and amplitude down by the persistence, each octave shaped by a cube
+        int octaves = 4;
+        double[] freq = new double[octaves], amp = new double[octaves];
+        double[] offsetX = new double[octaves], offsetZ = new double[octaves];
+        for (int o = 0; o < octaves; o++) {
+            freq[o] = o == 0 ? 0.013 : freq[o - 1] * 1.7;
+            amp[o] = o == 0 ? 6.5 : amp[o - 1] * 0.45;
+            offsetX[o] = o * 100.0;
+            offsetZ[o] = -o * 100.0;
+        }
+        DoubleUnaryOperator shape = v -> (v * v * v) * 1.2;
+
+        for (OpenSimplexNoise noise : exactBackends()) {
+            double[] out = new double[GRID_X * GRID_Z];
+            for (double[] g : GRIDS) {
+                noise.evalFractalGrid(g[0], g[1], g[2], g[3], GRID_X, GRID_Z,
+                        freq, amp, offsetX, offsetZ, shape, out);
+                for (int i = 0; i < GRID_X; i++) {
+                    for (int j = 0; j < GRID_Z; j++) {
+                        double wx = (g[0] + i) * g[2], wz = (g[1] + j) * g[3];
+                        double f = freq[0], a = amp[0], sum = 0;
+                        for (int o = 0; o < octaves; o++) {
+                            double offset = o * 100.0;
+                            double val = noise.eval((wx + offset) * f, (wz - offset) * f);
+                            val = (val * val * val) * 1.2;
+                            sum += val * a;
+                            f *= 1.7;
+                            a *= 0.45;
+                        }
+                        assertEquals(sum, out[i * GRID_Z + j], noise.getBackendName() + " at " + i + "," + j);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void evalFractalPointsIsBitIdenticalToEval() {
+        Random random = new Random(SEED);
+        int count = 1001;
+        double[] xs = new double[count], zs = new double[count], out = new double[count];
+        for (int p = 0; p < count; p++) {
+            xs[p] = (random.nextDouble() * 2 - 1) * RANGE;
+            zs[p] = (random.nextDouble() * 2 - 1) * RANGE;
+        }
+        double[] freq = { 0.5, 2 }, amp = { 1, 0.25 }, offsetX = { -3, 7 }, offsetZ = { 11, -13 };
+        for (OpenSimplexNoise noise : exactBackends()) {
+            noise.evalFractalPoints(xs, zs, count, freq, amp, offsetX, offsetZ, null, out);
+            for (int p = 0; p < count; p++) {
+                double expected = 0;
+                for (int o = 0; o < freq.length; o++) {
+                    expected += noise.eval((xs[p] + offsetX[o]) * freq[o], (zs[p] + offsetZ[o]) * freq[o]) * amp[o];
+                }
+                assertEquals(expected, out[p], noise.getBackendName() + " at " + xs[p] + "," + zs[p]);
+            }
+        }
+    }
+
+    // The backends that promise results bit-identical to eval(), where available
+    private static List<OpenSimplexNoise> exactBackends() {
+        List<OpenSimplexNoise> backends = new ArrayList<>();
+        backends.add(new OpenSimplexNoise(SEED, "scalar"));
+        OpenSimplexNoise simd = new OpenSimplexNoise(SEED, "simd");
+        if (simd.getBackendName().equals("simd"))
+            backends.add(simd);
+        return backends;
+    }
+
+    @Test
+    void simdIsBitIdenticalToScalar() {
+        assertEquals(0.0, maxErrorAgainstScalar("simd"));
+    }
+
+    @Test
+    void simdFloatStaysWithinErrorBound() {
+        double error = maxErrorAgainstScalar("simd-float");
+        assertTrue(error <= SIMD_FLOAT_MAX_ERROR, "max error " + error);
+    }
+
+    @Test
+    void unknownBackendFallsBackToScalar() {
+        assertEquals("scalar", new OpenSimplexNoise(SEED, "no-such-backend").getBackendName());
+    }
+
+    // Largest absolute difference from eval() over random points
+    private static double maxErrorAgainstScalar(String backend) {
+        OpenSimplexNoise noise = new OpenSimplexNoise(SEED, backend);
+        assumeTrue(noise.getBackendName().startsWith("simd"), "Vector API kernel not available");
+
+        Random random = new Random(SEED);
+        double[] xs = new double[POINTS], zs = new double[POINTS], out = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = (random.nextDouble() * 2 - 1) * RANGE;
+            zs[i] = (random.nextDouble() * 2 - 1) * RANGE;
+        }
+        noise.evalFractalPoints(xs, zs, POINTS, new double[] { 1 }, new double[] { 1 },
+                new double[] { 0 }, new double[] { 0 }, null, out);
+
+        double maxError = 0;
+        for (int i = 0; i < POINTS; i++) {
+            maxError = Math.max(maxError, Math.abs(out[i] - noise.eval(xs[i], zs[i])));
+        }
+        return maxError;
+    }
+}
@@ -0,0 +1,96 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static game.Chunk.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlopeFieldTest {
+    // Slopes of the random heightfield stay below ~45; the summed-area table sums in
+    // double and rounds once to float, so its error is a few float ulps of that
+    private static final double AVERAGE_TOLERANCE = 1e-5;
+
+    @Test
+    void slopesMatchBruteForceCentralDifferences() {
+        float[][] heights = randomHeights(1);
+        SlopeField field = new SlopeField(heights);
+
+        for (int x = 0; x <= SIZE; x++) {
+            for (int z = 0; z <= SIZE; z++) {
+                double dx = (heights[x + APRON + 1][z + APRON] - heights[x + APRON - 1][z + APRON]) / 2.0;
+                double dz = (heights[x + APRON][z + APRON + 1] - heights[x + APRON][z + APRON - 1]) / 2.0;
+                assertEquals(Math.sqrt(dx * dx + dz * dz), field.at(x, z), 1e-5, "slope at " + x + "," + z);
+                assertEquals(dx, field.gradientX(x, z), 1e-6);
+                assertEquals(dz, field.gradientZ(x, z), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    void averagesMatchBruteForceMeans() {
+        SlopeField field = new SlopeField(randomHeights(2));
+        Random random = new Random(3);
+
+        for (int n = 0; n < 2000; n++) {
+            // Boxes may stick out of the chunk, which average() clamps
+            int x0 = random.nextInt(SIZE + 9) - 4, z0 = random.nextInt(SIZE + 9) - 4;
+            int x1 = x0 + random.nextInt(12), z1 = z0 + random.nextInt(12);
+
+            double total = 0;
+            int count = 0;
+            for (int x = Math.max(0, x0); x <= Math.min(SIZE, x1); x++) {
+                for (int z = Math.max(0, z0); z <= Math.min(SIZE, z1); z++) {
+                    total += field.at(x, z);
+                    count++;
+                }
+            }
+            double expected = count == 0 ? 0 : total / count;
+            assertEquals(expected, field.average(x0, z0, x1, z1), AVERAGE_TOLERANCE,
+                    "box " + x0 + "," + z0 + " to " + x1 + "," + z1);
+        }
+    }
+
+    @Test
+    void averagesFollowRecompute() {
+        float[][] heights = randomHeights(4);
+        SlopeField field = new SlopeField(heights);
+        for (float[] column : heights) {
+            Arrays.fill(column, 7f);
+        }
+        field.recompute();
+        assertEquals(0f, field.average(0, 0, SIZE, SIZE));
+    }
+
+    @Test
+    void coarseLodSlopesUseLatticeNeighbours() {
+        int lod = 2;
+        float[][] heights = randomHeights(5);
+        SlopeField field = new SlopeField(heights, lod);
+        int[] lattice = lattice(lod);
+
+        for (int i = APRON; i < lattice.length - APRON; i++) {
+            for (int j = APRON; j < lattice.length - APRON; j++) {
+                int x = lattice[i], z = lattice[j];
+                int xm = lattice[i - 1], xp = lattice[i + 1];
+                int zm = lattice[j - 1], zp = lattice[j + 1];
+                double dx = (heights[xp + APRON][z + APRON] - heights[xm + APRON][z + APRON]) / (double) (xp - xm);
+                double dz = (heights[x + APRON][zp + APRON] - heights[x + APRON][zm + APRON]) / (double) (zp - zm);
+                assertEquals(Math.sqrt(dx * dx + dz * dz), field.at(x, z), 1e-5, "slope at " + x + "," + z);
+            }
+        }
+    }
+
+    private static float[][] randomHeights(long seed) {
+        Random random = new Random(seed);
+        float[][] heights = new float[HEIGHTS_SIDE][HEIGHTS_SIDE];
+        for (float[] column : heights) {
+            for (int z = 0; z < column.length; z++) {
+                column[z] = random.nextFloat() * 60f;
+            }
+        }
+        return heights;
+    }
+}
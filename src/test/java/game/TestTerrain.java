@@ -0,0 +1,51 @@
+package game;
+
+/** Builds a {@link ChunkGenerator} like {@link TerrainManager} does, without GL. */
+final class TestTerrain {
+    static final long SEED = 1234L;
+
+    private TestTerrain() {
+    }
+
+    static ChunkGenerator generator() {
+        OpenSimplexNoise biomeNoise = new OpenSimplexNoise(SEED + 12345);
+        return new ChunkGenerator(SEED, new BiomeField(biomeNoise, 5e-4), new BiomeBlender(),
+                new TerrainMaterials(name -> 0), new OpenSimplexNoise(SEED), 1f);
+    }
+
+    /**
+     * A generator whose biome weights are computed exactly per vertex, as the original
+     * {@code TerrainManager.getBiomeWeights} did, rather than interpolated from the
+     * biome lattice and weight table. Its heights can be compared bit for bit with
+     * heightfields from before those approximations.
+     */
+    static ChunkGenerator exactGenerator() {
+        BiomeField exactField = new BiomeField(new OpenSimplexNoise(SEED + 12345), 5e-4) {
+            @Override
+            public void sample(double[] wx, double[] wz, int count, double[] out) {
+                for (int p = 0; p < count; p++) {
+                    out[p] = exact(wx[p], wz[p]);
+                }
+            }
+        };
+        BiomeBlender exactBlender = new BiomeBlender() {
+            @Override
+            public int blend(double v, int[] ordinals, float[] weightsOut) {
+                // Called from every worker at once, so no shared scratch
+                float[] weights = new float[biomeCount()];
+                exactWeights(v, weights, 0);
+                int n = 0;
+                for (int b = 0; b < weights.length; b++) {
+                    if (weights[b] > 0f) {
+                        ordinals[n] = b;
+                        weightsOut[n] = weights[b];
+                        n++;
+                    }
+                }
+                return n;
+            }
+        };
+        return new ChunkGenerator(SEED, exactField, exactBlender, new TerrainMaterials(name -> 0),
+                new OpenSimplexNoise(SEED), 1f);
+    }
+}
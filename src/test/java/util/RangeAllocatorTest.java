@@ -0,0 +1,115 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangeAllocatorTest {
+    @Test
+    void allocatesFirstFitFromTheLowestOffset() {
+        RangeAllocator ranges = new RangeAllocator(100);
+        assertEquals(0, ranges.allocate(10));
+        assertEquals(10, ranges.allocate(20));
+        assertEquals(30, ranges.allocate(5));
+
+        // Gaps of 10 at 0 and 5 at 30; the first one long enough wins, even if a later one fits tighter
+        ranges.free(0);
+        ranges.free(30);
+        assertEquals(0, ranges.allocate(4));
+        assertEquals(4, ranges.allocate(6));
+        assertEquals(30, ranges.allocate(5));
+    }
+
+    @Test
+    void splitsBlocksAndTracksUsage() {
+        RangeAllocator ranges = new RangeAllocator(64);
+        int a = ranges.allocate(16);
+        assertEquals(1, ranges.getFreeBlockCount());
+        assertEquals(48, ranges.getLargestFreeBlock());
+        assertEquals(16, ranges.getUsed());
+        assertEquals(16, ranges.lengthOf(a));
+
+        ranges.allocate(48);
+        assertEquals(0, ranges.getFreeBlockCount());
+        assertEquals(64, ranges.getUsed());
+        assertEquals(2, ranges.getRangeCount());
+    }
+
+    @Test
+    void coalescesWithBothNeighboursOnFree() {
+        RangeAllocator ranges = new RangeAllocator(40);
+        int a = ranges.allocate(10), b = ranges.allocate(10), c = ranges.allocate(10), d = ranges.allocate(10);
+
+        ranges.free(a);
+        ranges.free(c);
+        assertEquals(2, ranges.getFreeBlockCount());
+        assertEquals(0.5f, ranges.getFragmentation());
+
+        // b joins the free blocks before and after it into one
+        ranges.free(b);
+        assertEquals(1, ranges.getFreeBlockCount());
+        assertEquals(30, ranges.getLargestFreeBlock());
+        assertEquals(0f, ranges.getFragmentation());
+
+        ranges.free(d);
+        assertEquals(1, ranges.getFreeBlockCount());
+        assertEquals(40, ranges.getLargestFreeBlock());
+        assertEquals(0, ranges.getUsed());
+        assertEquals(0, ranges.allocate(40));
+    }
+
+    @Test
+    void alignsOffsetsAndKeepsThePaddingFree() {
+        RangeAllocator ranges = new RangeAllocator(64);
+        assertEquals(0, ranges.allocate(3));
+        assertEquals(8, ranges.allocate(4, 8));
+        // Units 3..7 were skipped for alignment and are still free
+        assertEquals(3, ranges.allocate(5));
+        assertEquals(16, ranges.allocate(1, 16));
+        assertEquals(12, ranges.allocate(4, 4));
+        assertEquals(3 + 4 + 5 + 1 + 4, ranges.getUsed());
+
+        // No aligned offset leaves room for the range, although enough units are free
+        RangeAllocator tight = new RangeAllocator(12);
+        tight.allocate(1);
+        assertEquals(-1, tight.allocate(8, 8));
+        assertEquals(1, tight.allocate(8));
+    }
+
+    @Test
+    void reportsExhaustionAndRecoversAfterGrowing() {
+        RangeAllocator ranges = new RangeAllocator(32);
+        ranges.allocate(20);
+        assertEquals(-1, ranges.allocate(13));
+        assertEquals(20, ranges.getUsed());
+
+        // The new units join the free block at the old end
+        ranges.grow(64);
+        assertEquals(1, ranges.getFreeBlockCount());
+        assertEquals(20, ranges.allocate(13));
+        assertEquals(64, ranges.getCapacity());
+
+        assertEquals(-1, new RangeAllocator(0).allocate(1));
+    }
+
+    @Test
+    void rejectsDoubleFreeAndUnknownOffsets() {
+        RangeAllocator ranges = new RangeAllocator(16);
+        int a = ranges.allocate(4);
+        ranges.allocate(4);
+        ranges.free(a);
+        assertThrows(IllegalArgumentException.class, () -> ranges.free(a));
+        assertThrows(IllegalArgumentException.class, () -> ranges.free(2));
+        assertThrows(IllegalArgumentException.class, () -> ranges.lengthOf(a));
+        assertEquals(4, ranges.getUsed());
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        RangeAllocator ranges = new RangeAllocator(16);
+        assertThrows(IllegalArgumentException.class, () -> ranges.allocate(0));
+        assertThrows(IllegalArgumentException.class, () -> ranges.allocate(4, 0));
+        assertThrows(IllegalArgumentException.class, () -> ranges.grow(16));
+        assertThrows(IllegalArgumentException.class, () -> new RangeAllocator(-1));
+    }
+}
@@ -0,0 +1,79 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingSegmentsTest {
+    @Test
+    void placesUploadsAlignedWithinTheCurrentSegment() {
+        RingSegments ring = new RingSegments(3, 256, 16);
+        assertTrue(ring.isEmpty());
+        assertEquals(0, ring.reserve(10));
+        assertEquals(16, ring.reserve(16));
+        assertEquals(32, ring.reserve(1));
+        assertFalse(ring.isEmpty());
+    }
+
+    @Test
+    void refusesUploadsThatOverrunTheSegment() {
+        RingSegments ring = new RingSegments(3, 256, 16);
+        assertEquals(0, ring.reserve(200));
+        assertEquals(-1, ring.reserve(57));
+        // A refused upload takes no space; a smaller one still fits
+        assertEquals(208, ring.reserve(48));
+        assertEquals(-1, ring.reserve(1));
+        assertEquals(-1, new RingSegments(3, 256, 16).reserve(257));
+    }
+
+    @Test
+    void wrapsAroundAndReusesSegmentsInOrder() {
+        RingSegments ring = new RingSegments(3, 256, 16);
+        for (int frame = 0; frame < 7; frame++) {
+            int segment = frame % 3;
+            assertEquals(segment, ring.getSegment());
+            assertEquals(segment * 256, ring.reserve(100));
+            assertEquals(segment * 256 + 112, ring.reserve(100));
+            ring.advance(100 + frame);
+            assertTrue(ring.isEmpty());
+        }
+    }
+
+    @Test
+    void handsBackEachSegmentsFenceWhenTheRingReturnsToIt() {
+        RingSegments ring = new RingSegments(3, 256, 16);
+        // No fences yet for the first pass round the ring
+        assertEquals(0, ring.advance(11));
+        assertEquals(0, ring.advance(12));
+        // Back at segment 0: its fence must be waited on before writing there again
+        assertEquals(11, ring.advance(13));
+        assertEquals(12, ring.advance(14));
+        assertEquals(13, ring.advance(15));
+        assertEquals(14, ring.advance(16));
+    }
+
+    @Test
+    void drainsTheFencesStillHeld() {
+        RingSegments ring = new RingSegments(3, 256, 16);
+        ring.advance(21);
+        ring.advance(22);
+        ring.advance(23); // returns 21, which the caller now owns
+        assertArrayEquals(new long[] { 22, 23 }, sorted(ring.drainFences()));
+        assertEquals(0, ring.drainFences().length);
+        assertEquals(0, ring.advance(24));
+    }
+
+    @Test
+    void rejectsBadGeometry() {
+        assertThrows(IllegalArgumentException.class, () -> new RingSegments(0, 256, 16));
+        assertThrows(IllegalArgumentException.class, () -> new RingSegments(3, 0, 16));
+        assertThrows(IllegalArgumentException.class, () -> new RingSegments(3, 256, 12));
+    }
+
+    private static long[] sorted(long[] values) {
+        Arrays.sort(values);
+        return values;
+    }
+}
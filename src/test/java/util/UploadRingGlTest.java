@@ -0,0 +1,204 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.system.Configuration;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.lwjgl.glfw.GLFW.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * {@link UploadRing} end to end on Mesa's software rasteriser, in a context without a
+ * display: GLFW's null platform with an OSMesa context, or with
+ * {@code -Dgl.tests.api=egl} an EGL (llvmpipe) one. Opt-in with
+ * {@code -Dgl.tests=true}; skipped when no such context can be created.
+ * {@code -Dgl.tests.library} names the GL library LWJGL loads, {@code OSMesa} by default.
+ *
+ * <p>Running with {@code MESA_EXTENSION_OVERRIDE=-GL_ARB_buffer_storage} and
+ * {@code MESA_GL_VERSION_OVERRIDE=3.3COMPAT} hides the extension from the whole run:
+ * the persistent tests skip and the default ring must fall back on its own.
+ */
+class UploadRingGlTest {
+    // Matches UploadRing's frames in flight
+    private static final int FRAMES = 3;
+    private static final int SEGMENT_BYTES = 4096;
+    // Keeps the GPU behind the CPU so copies are still queued when their segment comes round
+    private static final int BUSY_BYTES = 32 << 20;
+
+    @Test
+    void persistentRingWrapsAroundAndKeepsEveryUpload() {
+        long window = openContext();
+        try {
+            UploadRing ring = new UploadRing(SEGMENT_BYTES);
+            assumeTrue(ring.isPersistent(), "ARB_buffer_storage not available");
+            int uploads = 3, bytes = 1000, frames = 4 * FRAMES;
+            int target = createBuffer(frames * uploads * bytes + 2 * SEGMENT_BYTES);
+
+            for (int frame = 0; frame < frames; frame++) {
+                for (int i = 0; i < uploads; i++) {
+                    int n = frame * uploads + i;
+                    fill(ring.stage(bytes), n, bytes);
+                    ring.commit(target, (long) n * bytes);
+                }
+                ring.endFrame();
+            }
+            // Larger than a segment, so staged for glBufferSubData even with the ring
+            int large = 2 * SEGMENT_BYTES, largeTag = frames * uploads;
+            fill(ring.stage(large), largeTag, large);
+            ring.commit(target, (long) frames * uploads * bytes);
+            ring.endFrame();
+
+            ByteBuffer contents = readBack(target, frames * uploads * bytes + large);
+            for (int n = 0; n < frames * uploads; n++) {
+                assertFilled(contents, n * bytes, bytes, n);
+            }
+            assertFilled(contents, frames * uploads * bytes, large, largeTag);
+            assertEquals((long) frames * uploads * bytes, ring.getRingBytes());
+            assertEquals(large, ring.getFallbackBytes());
+            ring.dispose();
+            glDeleteBuffers(target);
+        } finally {
+            closeContext(window);
+        }
+    }
+
+    @Test
+    void segmentsAreNotRewrittenBeforeTheirCopiesRan() {
+        long window = openContext();
+        try {
+            UploadRing ring = new UploadRing(SEGMENT_BYTES);
+            assumeTrue(ring.isPersistent(), "ARB_buffer_storage not available");
+            int frames = 4 * FRAMES;
+            int target = createBuffer(frames * SEGMENT_BYTES);
+            int busySource = createBuffer(BUSY_BYTES), busyTarget = createBuffer(BUSY_BYTES);
+
+            // Every frame fills its whole segment, so the ring rewrites the staging memory
+            // of the frame FRAMES back; that frame's copy must have run by then
+            for (int frame = 0; frame < frames; frame++) {
+                glBindBuffer(GL_COPY_READ_BUFFER, busySource);
+                glBindBuffer(GL_COPY_WRITE_BUFFER, busyTarget);
+                glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, 0, 0, BUSY_BYTES);
+                glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+                glBindBuffer(GL_COPY_READ_BUFFER, 0);
+
+                fill(ring.stage(SEGMENT_BYTES), frame, SEGMENT_BYTES);
+                ring.commit(target, (long) frame * SEGMENT_BYTES);
+                ring.endFrame();
+            }
+
+            ByteBuffer contents = readBack(target, frames * SEGMENT_BYTES);
+            for (int frame = 0; frame < frames; frame++) {
+                assertFilled(contents, frame * SEGMENT_BYTES, SEGMENT_BYTES, frame);
+            }
+            assertEquals(0, ring.getFallbackBytes());
+            System.out.println("UploadRingGlTest: " + ring.getStalls() + " stalls in " + frames + " frames");
+            ring.dispose();
+            glDeleteBuffers(new int[] { target, busySource, busyTarget });
+        } finally {
+            closeContext(window);
+        }
+    }
+
+    @Test
+    void fallsBackToBufferSubDataWithoutBufferStorage() {
+        long window = openContext();
+        try {
+            // The ring as it runs where the extension is missing
+            UploadRing ring = new UploadRing(SEGMENT_BYTES, false);
+            assertFalse(ring.isPersistent());
+            if (!GL.getCapabilities().OpenGL44 && !GL.getCapabilities().GL_ARB_buffer_storage)
+                assertFalse(new UploadRing(SEGMENT_BYTES).isPersistent());
+
+            int uploads = 10, bytes = 700;
+            int target = createBuffer(uploads * bytes);
+            for (int n = 0; n < uploads; n++) {
+                fill(ring.stage(bytes), n, bytes);
+                ring.commit(target, (long) n * bytes);
+                if (n % 3 == 2)
+                    ring.endFrame();
+            }
+
+            ByteBuffer contents = readBack(target, uploads * bytes);
+            for (int n = 0; n < uploads; n++) {
+                assertFilled(contents, n * bytes, bytes, n);
+            }
+            assertEquals(0, ring.getRingBytes());
+            assertEquals((long) uploads * bytes, ring.getFallbackBytes());
+            ring.dispose();
+            glDeleteBuffers(target);
+        } finally {
+            closeContext(window);
+        }
+    }
+
+    // Byte k of upload n, so misplaced or stale bytes are told apart
+    private static byte pattern(int n, int k) {
+        return (byte) (n * 31 + k * 7 + 1);
+    }
+
+    private static void fill(ByteBuffer staged, int n, int bytes) {
+        for (int k = 0; k < bytes; k++) {
+            staged.put(pattern(n, k));
+        }
+    }
+
+    private static void assertFilled(ByteBuffer contents, int offset, int bytes, int n) {
+        for (int k = 0; k < bytes; k++) {
+            if (contents.get(offset + k) != pattern(n, k))
+                fail("upload " + n + " differs at byte " + k);
+        }
+    }
+
+    private static int createBuffer(int bytes) {
+        int buffer = glGenBuffers();
+        glBindBuffer(GL_COPY_WRITE_BUFFER, buffer);
+        glBufferData(GL_COPY_WRITE_BUFFER, bytes, GL_STATIC_DRAW);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+        return buffer;
+    }
+
+    private static ByteBuffer readBack(int buffer, int bytes) {
+        ByteBuffer contents = ByteBuffer.allocateDirect(bytes);
+        glFinish();
+        glBindBuffer(GL_COPY_READ_BUFFER, buffer);
+        glGetBufferSubData(GL_COPY_READ_BUFFER, 0, contents);
+        glBindBuffer(GL_COPY_READ_BUFFER, 0);
+        return contents;
+    }
+
+    private static long openContext() {
+        assumeTrue(Boolean.getBoolean("gl.tests"), "GL tests are opt-in: -Dgl.tests=true");
+        boolean egl = "egl".equals(System.getProperty("gl.tests.api"));
+        String library = System.getProperty("gl.tests.library", egl ? null : "OSMesa");
+        if (library != null)
+            Configuration.OPENGL_LIBRARY_NAME.set(library);
+
+        glfwInitHint(GLFW_PLATFORM, GLFW_PLATFORM_NULL);
+        assumeTrue(glfwInit(), "GLFW could not initialise");
+        glfwDefaultWindowHints();
+        glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
+        glfwWindowHint(GLFW_CONTEXT_CREATION_API, egl ? GLFW_EGL_CONTEXT_API : GLFW_OSMESA_CONTEXT_API);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 3);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 3);
+        long window = glfwCreateWindow(16, 16, "UploadRingGlTest", NULL, NULL);
+        if (window == NULL) {
+            glfwTerminate();
+            assumeTrue(false, "no headless " + (egl ? "EGL" : "OSMesa") + " context");
+        }
+        glfwMakeContextCurrent(window);
+        GL.createCapabilities();
+        return window;
+    }
+
+    private static void closeContext(long window) {
+        GL.setCapabilities(null);
+        glfwDestroyWindow(window);
+        glfwTerminate();
+    }
+}
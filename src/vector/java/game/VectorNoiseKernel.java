@@ -0,0 +1,197 @@
+package game;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static game.OpenSimplexNoise.*;
+
+/**
+ * OpenSimplex noise on Vector API lanes. Kept out of {@code src/main/java} so the game
+ * builds without the incubator module: compile this source root against the main
+ * classes with {@code --add-modules jdk.incubator.vector} and put its output on the
+ * classpath. {@link OpenSimplexNoise} loads it reflectively.
+ * Flooring and gradient hashing stay scalar per lane; the falloff and gradient
+ * products run on the lanes. The double mode repeats the scalar arithmetic exactly
+ * and gives identical results. The float mode does the cell lookup in double and
+ * only the cell-local contributions in float, which keeps the error around 1e-6.
+ */
+final class VectorNoiseKernel implements NoiseKernel {
+    private static final VectorSpecies<Double> D = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> F = FloatVector.SPECIES_PREFERRED;
+
+    private static final float[] GRAD_X_F = toFloat(GRAD_X);
+    private static final float[] GRAD_Y_F = toFloat(GRAD_Y);
+
+    private final short[] perm;
+    private final byte[] permMod12;
+    private final boolean singlePrecision;
+
+    VectorNoiseKernel(short[] perm, byte[] permMod12, boolean singlePrecision) {
+        this.perm = perm;
+        this.permMod12 = permMod12;
+        this.singlePrecision = singlePrecision;
+    }
+
+    private static float[] toFloat(double[] values) {
+        float[] out = new float[values.length];
+        for (int i = 0; i < values.length; i++)
+            out[i] = (float) values[i];
+        return out;
+    }
+
+    @Override
+    public String name() {
+        return singlePrecision ? "simd-float x" + F.length() : "simd x" + D.length();
+    }
+
+    @Override
+    public void eval(double[] xs, double[] ys, int count, double[] out) {
+        if (singlePrecision) {
+            evalFloat(xs, ys, count, out);
+        } else {
+            evalDouble(xs, ys, count, out);
+        }
+    }
+
+    private void evalDouble(double[] xs, double[] ys, int count, double[] out) {
+        int lanes = D.length();
+        double[] cell = new double[lanes * 2], i1s = new double[lanes];
+        int[] ii = new int[lanes], jj = new int[lanes];
+        double[] gx = new double[lanes * 3], gy = new double[lanes * 3];
+        DoubleVector zero = DoubleVector.zero(D);
+        DoubleVector one = DoubleVector.broadcast(D, 1.0);
+
+        int k = 0;
+        for (int bound = D.loopBound(count); k < bound; k += lanes) {
+            DoubleVector x = DoubleVector.fromArray(D, xs, k);
+            DoubleVector y = DoubleVector.fromArray(D, ys, k);
+
+            DoubleVector s = x.add(y).mul(F2);
+            // Floor per lane (fastFloor semantics); the integer cells are needed for hashing anyway
+            x.add(s).intoArray(cell, 0);
+            y.add(s).intoArray(cell, lanes);
+            for (int l = 0; l < lanes; l++) {
+                int ci = fastFloor(cell[l]), cj = fastFloor(cell[lanes + l]);
+                cell[l] = ci;
+                cell[lanes + l] = cj;
+                ii[l] = ci & (PSIZE - 1);
+                jj[l] = cj & (PSIZE - 1);
+            }
+            DoubleVector i = DoubleVector.fromArray(D, cell, 0);
+            DoubleVector j = DoubleVector.fromArray(D, cell, lanes);
+            DoubleVector t = i.add(j).mul(G2);
+            DoubleVector x0 = x.sub(i.sub(t));
+            DoubleVector y0 = y.sub(j.sub(t));
+
+            VectorMask<Double> lower = x0.compare(VectorOperators.GT, y0);
+            DoubleVector i1 = zero.blend(one, lower);
+            DoubleVector j1 = one.blend(zero, lower);
+            DoubleVector x1 = x0.sub(i1).add(G2);
+            DoubleVector y1 = y0.sub(j1).add(G2);
+            DoubleVector x2 = x0.sub(1.0).add(2.0 * G2);
+            DoubleVector y2 = y0.sub(1.0).add(2.0 * G2);
+
+            i1.intoArray(i1s, 0);
+            for (int l = 0; l < lanes; l++) {
+                int a = ii[l], b = jj[l], a1 = (int) i1s[l];
+                int q0 = permMod12[a + perm[b]];
+                int q1 = permMod12[a + a1 + perm[b + 1 - a1]];
+                int q2 = permMod12[a + 1 + perm[b + 1]];
+                gx[l] = GRAD_X[q0];
+                gy[l] = GRAD_Y[q0];
+                gx[lanes + l] = GRAD_X[q1];
+                gy[lanes + l] = GRAD_Y[q1];
+                gx[2 * lanes + l] = GRAD_X[q2];
+                gy[2 * lanes + l] = GRAD_Y[q2];
+            }
+
+            DoubleVector n = contrib(x0, y0, gx, gy, 0, zero)
+                    .add(contrib(x1, y1, gx, gy, lanes, zero))
+                    .add(contrib(x2, y2, gx, gy, 2 * lanes, zero));
+            n.mul(70.0).intoArray(out, k);
+        }
+        for (; k < count; k++) {
+            out[k] = evalPoint(perm, permMod12, xs[k], ys[k]);
+        }
+    }
+
+    private static int fastFloor(double x) {
+        return x > 0 ? (int) x : (int) x - 1;
+    }
+
+    private static DoubleVector contrib(DoubleVector x, DoubleVector y, double[] gxs, double[] gys,
+                                        int offset, DoubleVector zero) {
+        DoubleVector t = DoubleVector.broadcast(D, 0.5).sub(x.mul(x)).sub(y.mul(y));
+        DoubleVector gx = DoubleVector.fromArray(D, gxs, offset);
+        DoubleVector gy = DoubleVector.fromArray(D, gys, offset);
+        DoubleVector n = t.mul(t).mul(t).mul(t).mul(gx.mul(x).add(gy.mul(y)));
+        return zero.blend(n, t.compare(VectorOperators.GE, 0.0));
+    }
+
+    private void evalFloat(double[] xs, double[] ys, int count, double[] out) {
+        int lanes = F.length();
+        float[] fx = new float[lanes], fy = new float[lanes], fi1 = new float[lanes], fo = new float[lanes];
+        float[] gx = new float[lanes * 3], gy = new float[lanes * 3];
+        float g2f = (float) G2;
+
+        int k = 0;
+        for (int bound = F.loopBound(count); k < bound; k += lanes) {
+            // Skew, floor and hash per lane in double, so large coordinates only lose
+            // precision in the cell-local offsets that the lanes work on
+            for (int l = 0; l < lanes; l++) {
+                double x = xs[k + l], y = ys[k + l];
+                double s = (x + y) * F2;
+                int i = fastFloor(x + s), j = fastFloor(y + s);
+                double t = (i + j) * G2;
+                double x0 = x - (i - t), y0 = y - (j - t);
+                int a1 = x0 > y0 ? 1 : 0;
+                fx[l] = (float) x0;
+                fy[l] = (float) y0;
+                fi1[l] = a1;
+
+                int a = i & (PSIZE - 1), b = j & (PSIZE - 1);
+                int q0 = permMod12[a + perm[b]];
+                int q1 = permMod12[a + a1 + perm[b + 1 - a1]];
+                int q2 = permMod12[a + 1 + perm[b + 1]];
+                gx[l] = GRAD_X_F[q0];
+                gy[l] = GRAD_Y_F[q0];
+                gx[lanes + l] = GRAD_X_F[q1];
+                gy[lanes + l] = GRAD_Y_F[q1];
+                gx[2 * lanes + l] = GRAD_X_F[q2];
+                gy[2 * lanes + l] = GRAD_Y_F[q2];
+            }
+
+            FloatVector x0 = FloatVector.fromArray(F, fx, 0);
+            FloatVector y0 = FloatVector.fromArray(F, fy, 0);
+            FloatVector i1 = FloatVector.fromArray(F, fi1, 0);
+            FloatVector x1 = x0.sub(i1).add(g2f);
+            FloatVector y1 = y0.sub(FloatVector.broadcast(F, 1f).sub(i1)).add(g2f);
+            FloatVector x2 = x0.sub(1f).add(2f * g2f);
+            FloatVector y2 = y0.sub(1f).add(2f * g2f);
+
+            FloatVector zero = FloatVector.zero(F);
+            FloatVector n = contrib(x0, y0, gx, gy, 0, zero)
+                    .add(contrib(x1, y1, gx, gy, lanes, zero))
+                    .add(contrib(x2, y2, gx, gy, 2 * lanes, zero));
+            n.mul(70f).intoArray(fo, 0);
+            for (int l = 0; l < lanes; l++) {
+                out[k + l] = fo[l];
+            }
+        }
+        for (; k < count; k++) {
+            out[k] = evalPoint(perm, permMod12, xs[k], ys[k]);
+        }
+    }
+
+    private static FloatVector contrib(FloatVector x, FloatVector y, float[] gxs, float[] gys,
+                                       int offset, FloatVector zero) {
+        FloatVector t = FloatVector.broadcast(F, 0.5f).sub(x.mul(x)).sub(y.mul(y));
+        FloatVector gx = FloatVector.fromArray(F, gxs, offset);
+        FloatVector gy = FloatVector.fromArray(F, gys, offset);
+        FloatVector n = t.mul(t).mul(t).mul(t).mul(gx.mul(x).add(gy.mul(y)));
+        return zero.blend(n, t.compare(VectorOperators.GE, 0f));
+    }
+}